@@ -0,0 +1,88 @@
+package com.infobelt.differentia.benchmarks;
+
+import com.infobelt.differentia.AuditBuilder;
+import com.infobelt.differentia.AuditChange;
+import com.infobelt.differentia.AuditPair;
+import com.infobelt.differentia.models.Boss;
+import com.infobelt.differentia.models.Employee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the changes for a batch of bosses, one pair after another and through the batch API with
+ * a growing number of workers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"GENERATED"})
+    private Engine engine;
+
+    @Param({"10000"})
+    private int pairs;
+
+    @Param({"1", "2", "4", "8"})
+    private int workers;
+
+    private AuditBuilder auditBuilder;
+
+    private ForkJoinPool pool;
+
+    private List<AuditPair> batch;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(workers);
+        auditBuilder = engine.create();
+        auditBuilder.setBatchExecutor(pool);
+
+        batch = new ArrayList<>(pairs);
+        for (int i = 0; i < pairs; i++) {
+            List<Employee> employees = Models.employees(10);
+            batch.add(AuditPair.of(Models.boss("Boss " + i, employees), Models.boss("Boss " + i, Models.rename(employees, 0.1))));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void sequential(Blackhole blackhole) {
+        for (AuditPair pair : batch) {
+            blackhole.consume(auditBuilder.buildChanges(pair));
+        }
+    }
+
+    @Benchmark
+    public List<List<AuditChange>> ordered() {
+        return auditBuilder.buildChanges(batch);
+    }
+
+    @Benchmark
+    public void streamed(Blackhole blackhole) {
+        auditBuilder.buildChanges(batch.stream(), (pair, changes) -> blackhole.consume(changes));
+    }
+}
@@ -0,0 +1,87 @@
+package com.infobelt.differentia.benchmarks;
+
+import com.infobelt.differentia.AuditBuilder;
+import com.infobelt.differentia.AuditChange;
+import com.infobelt.differentia.models.Boss;
+import com.infobelt.differentia.models.Employee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffs of a boss whose traversed employees collection grows, with a share of the employees renamed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionBenchmark {
+
+    @Param({"REFLECTIVE", "LAMBDA", "GENERATED"})
+    private Engine engine;
+
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    @Param({"0.0", "0.1", "1.0"})
+    private double changeRatio;
+
+    private AuditBuilder auditBuilder;
+
+    private Boss oldBoss;
+
+    private Boss newBoss;
+
+    private Boss reshuffledBoss;
+
+    @Setup
+    public void setup() {
+        auditBuilder = engine.create();
+
+        List<Employee> employees = Models.employees(size);
+        oldBoss = Models.boss("Alice", employees);
+        newBoss = Models.boss("Alice", Models.rename(employees, changeRatio));
+
+        // Drop the first half of the employees and hire as many new ones
+        List<Employee> reshuffled = new ArrayList<>(employees.subList(size / 2, size));
+        for (int i = 0; i < size / 2; i++) {
+            reshuffled.add(new Employee(null, "N" + i, "New employee " + i));
+        }
+        reshuffledBoss = Models.boss("Alice", reshuffled);
+    }
+
+    @Benchmark
+    public List<AuditChange> modified() {
+        return auditBuilder.buildChanges(oldBoss, newBoss);
+    }
+
+    @Benchmark
+    public void modifiedToSink(Blackhole blackhole) {
+        auditBuilder.buildChanges(oldBoss, newBoss, blackhole::consume);
+    }
+
+    @Benchmark
+    public boolean isChanged() {
+        return auditBuilder.isChanged(oldBoss, newBoss);
+    }
+
+    @Benchmark
+    public List<AuditChange> addedAndRemoved() {
+        return auditBuilder.buildChanges(oldBoss, reshuffledBoss);
+    }
+}
@@ -0,0 +1,48 @@
+package com.infobelt.differentia.benchmarks;
+
+import com.infobelt.differentia.AuditBuilder;
+import com.infobelt.differentia.LambdaDifferFactory;
+
+/**
+ * The ways the audit builder can diff a tracked object, the benchmarks take one of these as a
+ * parameter so that the engines can be compared on the same object graphs
+ */
+public enum Engine {
+
+    /**
+     * Walk the fields with reflection
+     */
+    REFLECTIVE {
+        @Override
+        public AuditBuilder create() {
+            AuditBuilder auditBuilder = new AuditBuilder();
+            auditBuilder.setUseGeneratedDiffers(false);
+            return auditBuilder;
+        }
+    },
+
+    /**
+     * Differs compiled at runtime with the {@link LambdaDifferFactory}
+     */
+    LAMBDA {
+        @Override
+        public AuditBuilder create() {
+            AuditBuilder auditBuilder = new AuditBuilder();
+            auditBuilder.setUseGeneratedDiffers(false);
+            auditBuilder.setDifferFactory(new LambdaDifferFactory());
+            return auditBuilder;
+        }
+    },
+
+    /**
+     * Differs generated by the annotation processor when the models were compiled
+     */
+    GENERATED {
+        @Override
+        public AuditBuilder create() {
+            return new AuditBuilder();
+        }
+    };
+
+    public abstract AuditBuilder create();
+}
@@ -0,0 +1,112 @@
+package com.infobelt.differentia.benchmarks;
+
+import com.infobelt.differentia.AuditBuilder;
+import com.infobelt.differentia.AuditChange;
+import com.infobelt.differentia.models.Gauge;
+import com.infobelt.differentia.models.SimpleExampleObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffs of a single object with no relationships, this is the per-field cost of each engine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlatObjectBenchmark {
+
+    @Param({"REFLECTIVE", "LAMBDA", "GENERATED"})
+    private Engine engine;
+
+    private AuditBuilder auditBuilder;
+
+    private SimpleExampleObject simple;
+
+    private SimpleExampleObject simpleCopy;
+
+    private SimpleExampleObject simpleChanged;
+
+    private Gauge gauge;
+
+    private Gauge gaugeCopy;
+
+    private Gauge gaugeChanged;
+
+    @Setup
+    public void setup() {
+        auditBuilder = engine.create();
+
+        simple = simple("Bob", "The first one");
+        simpleCopy = simple("Bob", "The first one");
+        simpleChanged = simple("Robert", "The second one");
+
+        gauge = gauge(10, 1.5);
+        gaugeCopy = gauge(10, 1.5);
+        gaugeChanged = gauge(11, 2.5);
+    }
+
+    @Benchmark
+    public List<AuditChange> simpleUnchanged() {
+        return auditBuilder.buildChanges(simple, simpleCopy);
+    }
+
+    @Benchmark
+    public List<AuditChange> simpleChanged() {
+        return auditBuilder.buildChanges(simple, simpleChanged);
+    }
+
+    @Benchmark
+    public List<AuditChange> simpleAdded() {
+        return auditBuilder.buildChanges(null, simple);
+    }
+
+    @Benchmark
+    public List<AuditChange> simpleDeleted() {
+        return auditBuilder.buildChanges(simple, null);
+    }
+
+    @Benchmark
+    public List<AuditChange> primitivesUnchanged() {
+        return auditBuilder.buildChanges(gauge, gaugeCopy);
+    }
+
+    @Benchmark
+    public List<AuditChange> primitivesChanged() {
+        return auditBuilder.buildChanges(gauge, gaugeChanged);
+    }
+
+    private static SimpleExampleObject simple(String name, String description) {
+        SimpleExampleObject simple = new SimpleExampleObject();
+        simple.setName(name);
+        simple.setDescription(description);
+        simple.setAmount(10);
+        return simple;
+    }
+
+    private static Gauge gauge(int count, double ratio) {
+        Gauge gauge = new Gauge();
+        gauge.setLabel("Pressure");
+        gauge.setCount(count);
+        gauge.setTotal(count * 100L);
+        gauge.setRatio(ratio);
+        gauge.setWeight(0.5f);
+        gauge.setActive(true);
+        gauge.setGrade('A');
+        return gauge;
+    }
+}
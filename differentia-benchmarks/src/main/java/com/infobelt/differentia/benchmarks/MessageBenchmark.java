@@ -0,0 +1,74 @@
+package com.infobelt.differentia.benchmarks;
+
+import com.infobelt.differentia.AuditBuilder;
+import com.infobelt.differentia.AuditChange;
+import com.infobelt.differentia.AuditEventType;
+import com.infobelt.differentia.DefaultMessageBuilder;
+import com.infobelt.differentia.MessageBuilder;
+import com.infobelt.differentia.ObjectMetadata;
+import com.infobelt.differentia.models.Boss;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the message for a single change, to a new string and into a reused buffer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark {
+
+    @Param({"ADD", "CHANGE", "ASSOCIATE"})
+    private AuditEventType eventType;
+
+    private final MessageBuilder messageBuilder = new DefaultMessageBuilder();
+
+    private final AuditBuilder auditBuilder = new AuditBuilder(messageBuilder);
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    private ObjectMetadata om;
+
+    private AuditChange change;
+
+    @Setup
+    public void setup() {
+        om = ObjectMetadata.forClass(Boss.class);
+        change = new AuditChange();
+        change.setEntity("Bossing");
+        change.setEntityDescriptiveName("Alice");
+        change.setRelatedEntity("Employee Bob");
+        change.setEventType(eventType);
+        change.setProperty("name");
+        change.setDescriptiveName("name");
+        change.setOldValue("Alice");
+        change.setNewValue("Alicia");
+    }
+
+    @Benchmark
+    public String render() {
+        return messageBuilder.buildChangeMessage(auditBuilder, om, change);
+    }
+
+    @Benchmark
+    public int renderToBuffer() throws IOException {
+        buffer.setLength(0);
+        messageBuilder.appendChangeMessage(auditBuilder, om, change, buffer);
+        return buffer.length();
+    }
+}
@@ -0,0 +1,83 @@
+package com.infobelt.differentia.benchmarks;
+
+import com.infobelt.differentia.models.AssociatedBoss;
+import com.infobelt.differentia.models.Boss;
+import com.infobelt.differentia.models.Bun;
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.HotDog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the object graphs used by the benchmarks
+ */
+final class Models {
+
+    private Models() {
+    }
+
+    static List<Employee> employees(int size) {
+        List<Employee> employees = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            employees.add(new Employee(null, "E" + i, "Employee " + i));
+        }
+        return employees;
+    }
+
+    /**
+     * Copy the employees renaming a share of them, the renamed employees are spread evenly through
+     * the list so that the matching doesn't get to see them all at one end
+     *
+     * @param employees   the employees to copy
+     * @param changeRatio the share of the employees to rename, between 0 and 1
+     * @return the copies
+     */
+    static List<Employee> rename(List<Employee> employees, double changeRatio) {
+        List<Employee> copies = new ArrayList<>(employees.size());
+        int changes = (int) Math.round(employees.size() * changeRatio);
+        int changed = 0;
+        for (int i = 0; i < employees.size(); i++) {
+            Employee employee = employees.get(i);
+            boolean rename = changed < changes && (long) i * changes / employees.size() >= changed;
+            if (rename) {
+                changed++;
+            }
+            copies.add(new Employee(employee.getBoss(), employee.getId(), rename ? employee.getName() + " (renamed)" : employee.getName()));
+        }
+        return copies;
+    }
+
+    static Boss boss(String name, List<Employee> employees) {
+        Boss boss = new Boss();
+        boss.setName(name);
+        boss.setEmployees(employees);
+        return boss;
+    }
+
+    static AssociatedBoss associatedBoss(String name, List<Employee> employees) {
+        AssociatedBoss boss = new AssociatedBoss();
+        boss.setName(name);
+        boss.setEmployees(employees);
+        for (Employee employee : employees) {
+            employee.setBoss(boss);
+        }
+        return boss;
+    }
+
+    static Bun bun(long id, int size) {
+        Bun bun = new Bun();
+        bun.setId(id);
+        for (int i = 0; i < size; i++) {
+            bun.getHotDogs().add(hotDog(i, bun));
+        }
+        return bun;
+    }
+
+    static HotDog hotDog(long id, Bun bun) {
+        HotDog hotDog = new HotDog();
+        hotDog.setId(id);
+        hotDog.setBun(bun);
+        return hotDog;
+    }
+}
@@ -0,0 +1,107 @@
+package com.infobelt.differentia.benchmarks;
+
+import com.infobelt.differentia.AuditBuilder;
+import com.infobelt.differentia.AuditChange;
+import com.infobelt.differentia.models.AssociatedBoss;
+import com.infobelt.differentia.models.Bun;
+import com.infobelt.differentia.models.Course;
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Enrollment;
+import com.infobelt.differentia.models.HotDog;
+import com.infobelt.differentia.models.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffs that go through the relationships of an object, its parent (employee to boss, hot dog to bun)
+ * and the join entities (student to course through an enrollment)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelationshipBenchmark {
+
+    @Param({"REFLECTIVE", "LAMBDA", "GENERATED"})
+    private Engine engine;
+
+    /**
+     * The number of siblings the changed object has in its parent
+     */
+    @Param({"10", "1000"})
+    private int siblings;
+
+    private AuditBuilder auditBuilder;
+
+    private Employee oldEmployee;
+
+    private Employee newEmployee;
+
+    private HotDog oldHotDog;
+
+    private HotDog movedHotDog;
+
+    private Enrollment enrollment;
+
+    @Setup
+    public void setup() {
+        auditBuilder = engine.create();
+
+        AssociatedBoss boss = Models.associatedBoss("Alice", Models.employees(siblings));
+        oldEmployee = boss.getEmployees().get(siblings - 1);
+        newEmployee = new Employee(boss, oldEmployee.getId(), oldEmployee.getName() + " (renamed)");
+
+        Bun bun = Models.bun(1L, siblings);
+        Bun otherBun = Models.bun(2L, siblings);
+        oldHotDog = bun.getHotDogs().get(siblings - 1);
+        movedHotDog = Models.hotDog(oldHotDog.getId(), otherBun);
+
+        Student student = new Student();
+        student.setName("Carol");
+        Course course = new Course();
+        course.setName("Algebra");
+        enrollment = new Enrollment();
+        enrollment.setStudent(student);
+        enrollment.setCourse(course);
+        student.getEnrollments().add(enrollment);
+    }
+
+    @Benchmark
+    public List<AuditChange> childChanged() {
+        return auditBuilder.buildChanges(oldEmployee, newEmployee);
+    }
+
+    @Benchmark
+    public List<AuditChange> childAdded() {
+        return auditBuilder.buildChanges(null, oldEmployee);
+    }
+
+    @Benchmark
+    public List<AuditChange> childMoved() {
+        return auditBuilder.buildChanges(oldHotDog, movedHotDog);
+    }
+
+    @Benchmark
+    public List<AuditChange> associated() {
+        return auditBuilder.buildChanges(null, enrollment);
+    }
+
+    @Benchmark
+    public List<AuditChange> disassociated() {
+        return auditBuilder.buildChanges(enrollment, null);
+    }
+}
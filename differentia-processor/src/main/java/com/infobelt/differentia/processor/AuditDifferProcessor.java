@@ -0,0 +1,357 @@
+package com.infobelt.differentia.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a differ for each class annotated with AuditMetadata.
+ * <p>
+ * The generated differ calls the getters of the tracked fields directly, and it is registered in
+ * <code>META-INF/services/com.infobelt.differentia.Differ</code> so that the audit builder can pick it up.
+ * It only replaces the compare loop over the fields of a modified object, the audit builder still builds
+ * the plan for the class with reflection and uses it for everything else. Classes that we can't generate a differ for (for example a tracked field
+ * doesn't have a getter) are skipped and will be handled by reflection at runtime.
+ * <p>
+ * Note that we only ever refer to the differentia classes by name, so the processor doesn't need the
+ * library on its own class path
+ */
+@SupportedAnnotationTypes(AuditDifferProcessor.AUDIT_METADATA)
+public class AuditDifferProcessor extends AbstractProcessor {
+
+    static final String AUDIT_METADATA = "com.infobelt.differentia.AuditMetadata";
+    static final String DIFFER = "com.infobelt.differentia.Differ";
+    static final String DIFF_VISITOR = "com.infobelt.differentia.DiffVisitor";
+    static final String DIFFER_SUPPORT = "com.infobelt.differentia.DifferSupport";
+    static final String PROPERTY_PATH = "com.infobelt.differentia.PropertyPath";
+    static final String DIRTY_FIELDS = "com.infobelt.differentia.DirtyFields";
+    static final String SERVICE_FILE = "META-INF/services/" + DIFFER;
+    static final String SUFFIX = "_AuditDiffer";
+
+    private final Set<String> generated = new LinkedHashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+
+        TypeElement auditMetadata = processingEnv.getElementUtils().getTypeElement(AUDIT_METADATA);
+        if (auditMetadata == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(auditMetadata)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                generate((TypeElement) element);
+            }
+        }
+
+        // We never claim the annotation, other processors (like lombok) might want it
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        Map<String, Object> classAnnotation = getAuditMetadata(type);
+        if (Boolean.TRUE.equals(classAnnotation.get("ignore"))) {
+            return;
+        }
+        if (!isAccessible(type) || !type.getTypeParameters().isEmpty()) {
+            note(type, "is not accessible or is generic");
+            return;
+        }
+        boolean onlyAnnotated = Boolean.TRUE.equals(classAnnotation.get("onlyAnnotated"));
+        String typeName = type.getQualifiedName().toString();
+
+        StringBuilder constants = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            // The dirty fields of an entity are never audited
+            if (field.getModifiers().contains(Modifier.STATIC) || DIRTY_FIELDS.equals(field.asType().toString())) {
+                continue;
+            }
+
+            Map<String, Object> fieldAnnotation = getAuditMetadata(field);
+            if (fieldAnnotation == null ? onlyAnnotated : Boolean.TRUE.equals(fieldAnnotation.get("ignore"))) {
+                continue;
+            }
+
+            String property = field.getSimpleName().toString();
+            if (fieldAnnotation != null && Boolean.TRUE.equals(fieldAnnotation.get("traverse"))) {
+                body.append("        visitor.traverse(\"").append(property).append("\");\n");
+                continue;
+            }
+
+            ExecutableElement getter = findGetter(type, field);
+            String getterName = getter != null ? getter.getSimpleName().toString() : lombokGetter(type, field);
+            if (getterName == null) {
+                note(type, "has no getter for " + property);
+                return;
+            }
+            TypeMirror valueType = getter != null ? getter.getReturnType() : field.asType();
+
+            String oldValue = "oldInstance." + getterName + "()";
+            String newValue = "newInstance." + getterName + "()";
+            String descriptiveProperty = fieldAnnotation != null ? (String) fieldAnnotation.get("descriptiveProperty") : "";
+            if (descriptiveProperty != null && !descriptiveProperty.isEmpty()) {
+                String describer = describer(valueType, descriptiveProperty);
+                if (describer == null) {
+                    String constant = property.toUpperCase() + "_DESCRIPTIVE_PATH";
+                    constants.append("    private static final ").append(PROPERTY_PATH).append(" ").append(constant)
+                            .append(" = ").append(PROPERTY_PATH).append(".compile(\"").append(escape(descriptiveProperty)).append("\");\n\n");
+                    describer = constant;
+                }
+                oldValue = DIFFER_SUPPORT + ".describe(" + oldValue + ", " + describer + ")";
+                newValue = DIFFER_SUPPORT + ".describe(" + newValue + ", " + describer + ")";
+            }
+            body.append("        ").append(DIFFER_SUPPORT).append(".diff(\"").append(property).append("\", ")
+                    .append(oldValue).append(", ").append(newValue).append(", visitor);\n");
+        }
+
+        String packageName = getPackage(type).getQualifiedName().toString();
+        String differName = differName(type);
+        String qualifiedDifferName = packageName.isEmpty() ? differName : packageName + "." + differName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedDifferName, type).openWriter()) {
+            if (!packageName.isEmpty()) {
+                writer.write("package " + packageName + ";\n\n");
+            }
+            writer.write("/**\n * Generated by the differentia-processor from the audit metadata on {@link " + typeName + "}\n */\n");
+            writer.write("public final class " + differName + " implements " + DIFFER + "<" + typeName + "> {\n\n");
+            writer.write(constants.toString());
+            writer.write("    @Override\n");
+            writer.write("    public Class<" + typeName + "> getType() {\n");
+            writer.write("        return " + typeName + ".class;\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public void diff(" + typeName + " oldInstance, " + typeName + " newInstance, " + DIFF_VISITOR + " visitor) {\n");
+            writer.write(body.toString());
+            writer.write("    }\n");
+            writer.write("}\n");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write differ " + qualifiedDifferName + ": " + e.getMessage(), type);
+            return;
+        }
+        generated.add(qualifiedDifferName);
+    }
+
+    /**
+     * Work out how to read the descriptive property from the field value directly, this is only possible
+     * if it is a simple property and we can find the getter
+     *
+     * @return a method reference or null if we need to use a property path at runtime
+     */
+    private String describer(TypeMirror valueType, String descriptiveProperty) {
+        if (valueType.getKind() != TypeKind.DECLARED || descriptiveProperty.contains(".") || !SourceVersion.isIdentifier(descriptiveProperty)) {
+            return null;
+        }
+        TypeElement valueElement = (TypeElement) ((DeclaredType) valueType).asElement();
+        if (!isAccessible(valueElement)) {
+            return null;
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(valueElement.getEnclosedElements())) {
+            if (field.getSimpleName().contentEquals(descriptiveProperty)) {
+                ExecutableElement getter = findGetter(valueElement, field);
+                String getterName = getter != null ? getter.getSimpleName().toString() : lombokGetter(valueElement, field);
+                if (getterName != null) {
+                    return processingEnv.getTypeUtils().erasure(valueType) + "::" + getterName;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ExecutableElement findGetter(TypeElement type, VariableElement field) {
+        String capitalized = capitalize(field.getSimpleName().toString());
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            String name = method.getSimpleName().toString();
+            if (method.getParameters().isEmpty() && !method.getModifiers().contains(Modifier.STATIC)
+                    && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && (method.getModifiers().contains(Modifier.PUBLIC) || getPackage(method).equals(getPackage(type)))
+                    && (name.equals("get" + capitalized) || (name.equals("is" + capitalized) && method.getReturnType().getKind() == TypeKind.BOOLEAN))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * If lombok is going to generate the getter then it might not be there yet, so work out what it will be called.
+     * <p>
+     * We only do this when we know the getter will be public or package-private (the differ is in the same package)
+     * and named the usual way, anything else (for example fluent accessors) uses reflection
+     */
+    private String lombokGetter(TypeElement type, VariableElement field) {
+        if (getAnnotation(field, "lombok.experimental.Accessors") != null || getAnnotation(type, "lombok.experimental.Accessors") != null) {
+            return null;
+        }
+        AnnotationMirror fieldGetter = getAnnotation(field, "lombok.Getter");
+        AnnotationMirror typeGetter = getAnnotation(type, "lombok.Getter");
+        if (fieldGetter != null) {
+            if (!isAccessibleGetter(fieldGetter)) {
+                return null;
+            }
+        } else if (typeGetter != null) {
+            if (!isAccessibleGetter(typeGetter)) {
+                return null;
+            }
+        } else if (getAnnotation(type, "lombok.Data") == null && getAnnotation(type, "lombok.Value") == null) {
+            return null;
+        }
+
+        String name = field.getSimpleName().toString();
+        if (field.asType().getKind() == TypeKind.BOOLEAN) {
+            if (name.startsWith("is") && name.length() > 2 && Character.isUpperCase(name.charAt(2))) {
+                return name;
+            }
+            return "is" + capitalize(name);
+        }
+        return "get" + capitalize(name);
+    }
+
+    // The access level of a lombok getter, it defaults to public
+    private boolean isAccessibleGetter(AnnotationMirror getter) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : getter.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                String level = entry.getValue().getValue().toString();
+                return level.endsWith("PUBLIC") || level.endsWith("PACKAGE");
+            }
+        }
+        return true;
+    }
+
+    private void writeServiceFile() {
+        if (generated.isEmpty()) {
+            return;
+        }
+        Filer filer = processingEnv.getFiler();
+        Set<String> services = new LinkedHashSet<>();
+
+        // Keep anything registered by an earlier (incremental) compilation
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        services.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Nothing there yet
+        }
+        services.addAll(generated);
+
+        try (Writer writer = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE).openWriter()) {
+            for (String service : services) {
+                writer.write(service + "\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the values of the AuditMetadata annotation on an element (including the defaults)
+     *
+     * @return the values by name or null if the element isn't annotated
+     */
+    private Map<String, Object> getAuditMetadata(Element element) {
+        AnnotationMirror mirror = getAnnotation(element, AUDIT_METADATA);
+        if (mirror == null) {
+            return null;
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+        }
+        return values;
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The generated differ is in the same package, so we can see anything that isn't private
+     * (as long as the classes it is nested in aren't private either)
+     */
+    private boolean isAccessible(TypeElement type) {
+        for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+            TypeElement currentType = (TypeElement) current;
+            if (currentType.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (currentType.getNestingKind() == NestingKind.MEMBER && !currentType.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+            if (currentType.getNestingKind() == NestingKind.LOCAL || currentType.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private PackageElement getPackage(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    private String differName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element current = type.getEnclosingElement(); current instanceof TypeElement; current = current.getEnclosingElement()) {
+            name.insert(0, current.getSimpleName() + "_");
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    private void note(TypeElement type, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "No differ generated for " + type.getQualifiedName() + " as it " + reason + ", it will use reflection", type);
+    }
+
+    private static String capitalize(String name) {
+        return name.isEmpty() ? name : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
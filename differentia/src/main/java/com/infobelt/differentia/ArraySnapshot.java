@@ -0,0 +1,176 @@
+package com.infobelt.differentia;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A snapshot held in two flat arrays, one for the primitive fields and one for everything else
+ */
+final class ArraySnapshot extends Snapshot {
+
+    private final ObjectMetadata plan;
+    private final Object affectedId;
+    private final String entityDescriptiveName;
+    private final long[] primitives;
+    private final Object[] objects;
+
+    private ArraySnapshot(ObjectMetadata plan, Object affectedId, String entityDescriptiveName, SnapshotLayout layout) {
+        this.plan = plan;
+        this.affectedId = affectedId;
+        this.entityDescriptiveName = entityDescriptiveName;
+        this.primitives = layout.getPrimitiveSlots() > 0 ? new long[layout.getPrimitiveSlots()] : null;
+        this.objects = layout.getObjectSlots() > 0 ? new Object[layout.getObjectSlots()] : null;
+    }
+
+    /**
+     * Capture an object, anything we reach more than once (including through a cycle) is only captured once
+     *
+     * @param builder  the audit builder, used for the values of the items in collections
+     * @param instance the object
+     * @param captured the snapshots we have captured so far, by identity
+     * @return the snapshot
+     */
+    static ArraySnapshot capture(AuditBuilder builder, Object instance, Map<Object, ArraySnapshot> captured) {
+        ArraySnapshot snapshot = captured.get(instance);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        ObjectMetadata om = ObjectMetadata.of(instance);
+        SnapshotLayout layout = SnapshotLayout.forPlan(om);
+        snapshot = new ArraySnapshot(om, om.getAffectedId(instance), om.getEntityDescriptiveName(instance), layout);
+        captured.put(instance, snapshot);
+
+        List<FieldMetadata> fields = om.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            FieldMetadata fieldMetadata = fields.get(i);
+            SnapshotLayout.Kind kind = layout.getKind(i);
+            int slot = layout.getSlot(i);
+            switch (kind) {
+                case NONE:
+                    break;
+                case OBJECT:
+                    snapshot.objects[slot] = copy(builder.getAuditValue(instance, fieldMetadata.getFieldName(), fieldMetadata));
+                    break;
+                case CHILD:
+                    Object child = fieldMetadata.getValue(instance);
+                    snapshot.objects[slot] = child != null && ObjectMetadata.of(child).isTracked() ? capture(builder, child, captured) : null;
+                    break;
+                case ITEMS:
+                    Collection<?> values = (Collection<?>) fieldMetadata.getValue(instance);
+                    if (values != null) {
+                        List<Item> items = new ArrayList<>(values.size());
+                        for (Object o : values) {
+                            items.add(builder.snapshotItem(fieldMetadata, o, builder.isScalar(o) ? null : capture(builder, o, captured)));
+                        }
+                        snapshot.objects[slot] = Collections.unmodifiableList(items);
+                    }
+                    break;
+                default:
+                    snapshot.primitives[slot] = SnapshotLayout.toBits(kind, fieldMetadata.getValue(instance));
+            }
+        }
+
+        // The dirty fields are from here on
+        if (instance instanceof DirtyTracking && ((DirtyTracking) instance).getDirtyFields() != null) {
+            ((DirtyTracking) instance).getDirtyFields().clear();
+        }
+        return snapshot;
+    }
+
+    // Dates, maps, collections and arrays can be changed in place, so we keep our own copy of them (and what is in
+    // them). Anything else in them is held as it is, this includes any audited objects in a map or array
+    @SuppressWarnings("unchecked")
+    private static Object copy(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = value instanceof SortedMap ? new TreeMap<>(((SortedMap<Object, ?>) value).comparator()) : new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Collection) {
+            Collection<Object> copy = value instanceof SortedSet ? new TreeSet<>(((SortedSet<Object>) value).comparator())
+                    : value instanceof Set ? new LinkedHashSet<>() : new ArrayList<>();
+            for (Object item : (Collection<?>) value) {
+                copy.add(copy(item));
+            }
+            return copy;
+        }
+        if (value instanceof Object[]) {
+            Object[] copy = ((Object[]) value).clone();
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = copy(copy[i]);
+            }
+            return copy;
+        }
+        if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        }
+        return value;
+    }
+
+    @Override
+    public ObjectMetadata getPlan() {
+        return plan;
+    }
+
+    @Override
+    public Object getAffectedId() {
+        return affectedId;
+    }
+
+    @Override
+    public String getEntityDescriptiveName() {
+        return entityDescriptiveName;
+    }
+
+    @Override
+    public Object getValue(int field) {
+        SnapshotLayout layout = getLayout();
+        SnapshotLayout.Kind kind = layout.getKind(field);
+        if (kind.isPrimitive()) {
+            return SnapshotLayout.fromBits(kind, primitives[layout.getSlot(field)]);
+        }
+        return kind == SnapshotLayout.Kind.NONE ? null : objects[layout.getSlot(field)];
+    }
+
+    @Override
+    public long getLong(int field) {
+        return primitives[getLayout().getSlot(field)];
+    }
+
+    @Override
+    public double getDouble(int field) {
+        return Double.longBitsToDouble(primitives[getLayout().getSlot(field)]);
+    }
+
+    @Override
+    public Snapshot getChild(int field) {
+        return (Snapshot) objects[getLayout().getSlot(field)];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Item> getItems(int field) {
+        return (List<Item>) objects[getLayout().getSlot(field)];
+    }
+}
@@ -0,0 +1,1788 @@
+package com.infobelt.differentia;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A change builder can look at two objects of the same
+ * type and based on the annotations it can build a reasonably
+ * meaningful message to describe the change
+ */
+@Slf4j
+@NoArgsConstructor
+public class AuditBuilder {
+
+    private static final Object NO_MATCH = new Object();
+
+    private MessageBuilder messageBuilder = new DefaultMessageBuilder();
+
+    private static final DifferFactory GENERATED_DIFFERS = new ServiceLoaderDifferFactory();
+
+    /**
+     * An optional factory for compiled differs, if there isn't one (or it can't provide
+     * a differ for a class) we compare the fields using reflection
+     */
+    @Getter
+    @Setter
+    private DifferFactory differFactory;
+
+    /**
+     * Should we use the differs generated at compile time (by the differentia-processor) when they are available
+     */
+    @Getter
+    @Setter
+    private boolean useGeneratedDiffers = true;
+
+    /**
+     * The executor used to build the changes for a batch of pairs, if there isn't one we use the
+     * common fork join pool
+     */
+    @Getter
+    @Setter
+    private Executor batchExecutor;
+
+    /**
+     * The number of pairs each task in a batch works through, smaller batches are built on the
+     * calling thread
+     */
+    @Getter
+    @Setter
+    private int batchSize = 128;
+
+    /**
+     * When a traversed collection has at least this many matched items we diff them in slices of
+     * {@link #getBatchSize()} across the batch executor, the changes are still passed on in the order of the
+     * collection. Zero (the default) always diffs them on the calling thread.
+     * <p>
+     * The changes are the same as diffing them on one thread. Each slice works with a fork of the diff context, and
+     * if a slice diffed an object that an earlier slice had already diffed (it is shared between their items) we
+     * throw away that slice and the ones after it and diff them again on the calling thread. The metrics will still
+     * have counted the objects in the slices we threw away
+     */
+    @Getter
+    @Setter
+    private int parallelTraversalThreshold = 0;
+
+    /**
+     * Should the messages on the changes be rendered the first time they are read rather than when
+     * the changes are built, this saves the work for anything that only uses the other fields
+     * <p>
+     * A change holds on to the values it needs to render its message until then, the messages for new and
+     * deleted entities are still rendered up front as they are built from the entity itself
+     */
+    @Getter
+    @Setter
+    private boolean lazyMessages = false;
+
+    /**
+     * The comparators and formatters used for the values of the fields
+     */
+    @Getter
+    @Setter
+    private ValueTypes valueTypes = ValueTypes.standard();
+
+    /**
+     * Where we report how long the diffs and messages took, by default nothing is measured
+     */
+    @Getter
+    @Setter
+    private AuditMetrics metrics = AuditMetrics.NONE;
+
+    /**
+     * The plans for the entities we render stored changes for, by entity name (see {@link #registerEntities(Class[])})
+     */
+    private final Map<String, ObjectMetadata> entities = new ConcurrentHashMap<>();
+
+    public AuditBuilder(MessageBuilder messageBuilder) {
+        this.messageBuilder = messageBuilder;
+    }
+
+    /**
+     * Build a message to describe what happened between the two objects
+     *
+     * @param oldInstance The old instance (or null if it is new)
+     * @param newInstance The new instance (or null if it has been deleted)
+     * @return A text message described what happen
+     */
+    public String buildMessage(Object oldInstance, Object newInstance) {
+        if (oldInstance == null)
+            return messageBuilder.buildNewMessage(this, newInstance);
+        else if (newInstance == null)
+            return messageBuilder.buildDeleteMessage(this, oldInstance);
+        else
+            return changeMessage(oldInstance, newInstance);
+    }
+
+    public String changeMessage(Object oldInstance, Object newInstance) {
+        List<AuditChange> changes = buildChanges(oldInstance, newInstance);
+        return messageBuilder.buildChangesMessage(this, newInstance, oldInstance, changes);
+    }
+
+    /**
+     * Build the changes for a pair, if we have the fingerprint of the old instance and the new instance still has
+     * it we skip the diff (see {@link #fingerprint(Object)}).
+     * <p>
+     * The fingerprint only covers the tracked fields of the object and what it traverses into, so a pair is always
+     * diffed when its class has a parent or is a join, as those changes come from the objects it points to
+     *
+     * @param pair the pair
+     * @return the changes
+     */
+    public List<AuditChange> buildChanges(AuditPair pair) {
+        if (pair.getOldFingerprint() != null && pair.getOldInstance() != null && pair.getNewInstance() != null
+                && isFingerprinted(ObjectMetadata.of(pair.getNewInstance()))
+                && pair.getOldFingerprint() == fingerprint(pair.getNewInstance())) {
+            return new ArrayList<>();
+        }
+        return buildChanges(pair.getOldInstance(), pair.getNewInstance());
+    }
+
+    private boolean isFingerprinted(ObjectMetadata om) {
+        return om.isTracked() && !om.isJoin() && om.getParents().isEmpty();
+    }
+
+    /**
+     * Work out the structural fingerprint of an object, a 64 bit hash of its tracked fields and what it
+     * traverses into. This is stable from one run to the next, so it can be stored with the object and
+     * handed back in an {@link AuditPair} to skip the diff when nothing has changed.
+     * <p>
+     * The same fingerprint almost always means there are no changes, a different one doesn't always mean
+     * there are (for example a value with a custom comparator)
+     *
+     * @param instance the object, which must be audited
+     * @return the fingerprint
+     */
+    public long fingerprint(Object instance) {
+        if (instance == null || !ObjectMetadata.of(instance).isTracked()) {
+            throw new IllegalArgumentException("Only an audited object has a fingerprint, not " + instance);
+        }
+        return Fingerprint.of(new LiveSnapshot(this, instance));
+    }
+
+    /**
+     * @param snapshot the snapshot
+     * @return the fingerprint of the object as it was when the snapshot was captured, see {@link #fingerprint(Object)}
+     */
+    public long fingerprint(Snapshot snapshot) {
+        return Fingerprint.of(snapshot);
+    }
+
+    /**
+     * Build the changes for a batch of pairs, spreading the work across the batch executor
+     *
+     * @param pairs the pairs to build the changes for
+     * @return the changes for each pair, in the same order as the pairs
+     */
+    public List<List<AuditChange>> buildChanges(List<AuditPair> pairs) {
+        List<AuditPair> batch = pairs instanceof RandomAccess ? pairs : new ArrayList<>(pairs);
+        List<List<AuditChange>> results = new ArrayList<>(Collections.nCopies(batch.size(), null));
+        if (batch.size() <= batchSize) {
+            for (int i = 0; i < batch.size(); i++) {
+                results.set(i, buildChanges(batch.get(i)));
+            }
+            return results;
+        }
+
+        // Each task fills its own slice of the results, joining the tasks publishes them
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            int start = from;
+            int end = Math.min(from + batchSize, batch.size());
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int i = start; i < end; i++) {
+                    results.set(i, buildChanges(batch.get(i)));
+                }
+            }, getBatchExecutorOrDefault()));
+        }
+        join(tasks);
+        return results;
+    }
+
+    /**
+     * Build the changes for a stream of pairs, spreading the work across the batch executor and
+     * passing the changes for each pair to the consumer as soon as they are built.
+     * <p>
+     * The consumer is called from the worker threads, so it needs to be thread-safe, and the pairs
+     * will not be seen in the order of the stream. We only read ahead of the workers by a few batches,
+     * so the stream doesn't need to fit in memory
+     *
+     * @param pairs    the pairs to build the changes for
+     * @param consumer receives each pair with its changes
+     */
+    public void buildChanges(Stream<AuditPair> pairs, BiConsumer<AuditPair, List<AuditChange>> consumer) {
+        Executor executor = getBatchExecutorOrDefault();
+        int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        Semaphore inFlight = new Semaphore(Math.max(1, parallelism) * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+
+        Iterator<AuditPair> iterator = pairs.iterator();
+        while (iterator.hasNext() && failure.get() == null) {
+            List<AuditPair> batch = new ArrayList<>(batchSize);
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+            }
+
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while building the changes for a batch", e);
+            }
+            tasks.add(CompletableFuture.runAsync(() -> {
+                try {
+                    for (AuditPair pair : batch) {
+                        if (failure.get() != null) {
+                            return;
+                        }
+                        consumer.accept(pair, buildChanges(pair));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    throw t;
+                } finally {
+                    inFlight.release();
+                }
+            }, executor));
+        }
+        join(tasks);
+    }
+
+    private Executor getBatchExecutorOrDefault() {
+        return batchExecutor != null ? batchExecutor : ForkJoinPool.commonPool();
+    }
+
+    private void join(List<CompletableFuture<Void>> tasks) {
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException("Unable to build the changes for a batch", e.getCause());
+        }
+    }
+
+    public List<AuditChange> buildChanges(Object oldInstance, Object newInstance) {
+        List<AuditChange> changes = new ArrayList<>();
+        buildChanges(oldInstance, newInstance, changes::add);
+        return changes;
+    }
+
+    /**
+     * Build the changes between the two objects, passing each change to the sink as soon as it
+     * is built rather than collecting them into a list
+     *
+     * @param oldInstance The old instance (or null if it is new)
+     * @param newInstance The new instance (or null if it has been deleted)
+     * @param sink        receives the changes, in the same order as {@link #buildChanges(Object, Object)}
+     */
+    public void buildChanges(Object oldInstance, Object newInstance, Consumer<? super AuditChange> sink) {
+        buildChanges(oldInstance, newInstance, sink, new DiffContext());
+    }
+
+    /**
+     * Build the changes between the two objects as part of a larger diff, any pair of objects the context
+     * has already seen is skipped
+     *
+     * @param oldInstance The old instance (or null if it is new)
+     * @param newInstance The new instance (or null if it has been deleted)
+     * @param sink        receives the changes
+     * @param context     the context of the diff
+     */
+    public void buildChanges(Object oldInstance, Object newInstance, Consumer<? super AuditChange> sink, DiffContext context) {
+        checkNotSnapshots(oldInstance, newInstance);
+        diffObjects(oldInstance, newInstance, countChanges(sink), context);
+    }
+
+    /**
+     * Explain a diff, this builds the changes between the two objects and records which fields and
+     * objects were looked at on the way and how long each took. Explaining a diff is slower than
+     * building the changes, it is meant for working out why a diff is slow or what it reported
+     *
+     * @param oldInstance The old instance (or null if it is new)
+     * @param newInstance The new instance (or null if it has been deleted)
+     * @return the trace, with the changes that were built
+     */
+    public AuditTrace explain(Object oldInstance, Object newInstance) {
+        AuditTrace trace = new AuditTrace();
+        long start = System.nanoTime();
+        buildChanges(oldInstance, newInstance, trace::addChange, new DiffContext(trace));
+        trace.setNanos(System.nanoTime() - start);
+        return trace;
+    }
+
+    // A snapshot has no audit metadata of its own, so it would just look like an object with nothing to diff
+    private static void checkNotSnapshots(Object oldInstance, Object newInstance) {
+        if (oldInstance instanceof Snapshot || newInstance instanceof Snapshot) {
+            throw new IllegalArgumentException("Snapshots are diffed with buildSnapshotChanges, not as objects");
+        }
+    }
+
+    // Diff a pair within a diff, only timing it when someone is listening
+    private void diffObjects(Object oldInstance, Object newInstance, Consumer<? super AuditChange> sink, DiffContext context) {
+        if (!context.enter(oldInstance, newInstance)) {
+            return;
+        }
+        AuditTrace trace = context.getTrace();
+        if (metrics == AuditMetrics.NONE && trace == null) {
+            try {
+                buildObjectChanges(oldInstance, newInstance, sink, context);
+            } finally {
+                context.exit(oldInstance, newInstance);
+            }
+            return;
+        }
+
+        ObjectMetadata om = ObjectMetadata.of(oldInstance != null ? oldInstance : newInstance);
+        int depth = context.getDepth();
+        if (trace != null) {
+            trace.enterObject(om.getEntityName());
+        }
+        long start = System.nanoTime();
+        int fieldsVisited;
+        try {
+            fieldsVisited = buildObjectChanges(oldInstance, newInstance, sink, context);
+        } finally {
+            context.exit(oldInstance, newInstance);
+            if (trace != null) {
+                trace.exitObject(System.nanoTime() - start);
+            }
+        }
+        metrics.objectDiffed(om, System.nanoTime() - start, fieldsVisited, depth);
+    }
+
+    // Let the metrics see each change on its way to the sink
+    private Consumer<? super AuditChange> countChanges(Consumer<? super AuditChange> sink) {
+        if (metrics == AuditMetrics.NONE) {
+            return sink;
+        }
+        AuditMetrics changeMetrics = metrics;
+        return auditChange -> {
+            changeMetrics.changeEmitted(auditChange);
+            sink.accept(auditChange);
+        };
+    }
+
+    /**
+     * @return the number of fields we visited
+     */
+    private int buildObjectChanges(Object oldInstance, Object newInstance, Consumer<? super AuditChange> sink, DiffContext context) {
+        // Grab an object as reference and then go through the properties
+        Object referenceObject = oldInstance != null ? oldInstance : newInstance;
+        ObjectMetadata om = ObjectMetadata.of(referenceObject);
+
+        // Whats the top level event that is going on
+        AuditEventType event = AuditEventType.CHANGE;
+        if (oldInstance == null) {
+            event = AuditEventType.ADD;
+        } else if (newInstance == null) {
+            event = AuditEventType.REMOVE;
+        }
+
+        // Do we have a join
+        if (om.isJoin()) {
+
+            // We need to construct either an add or an associate based on the left and right
+            Object leftObject = context.getLeftObject(om, referenceObject);
+            Object rightObject = context.getRightObject(om, referenceObject);
+            ObjectMetadata left = ObjectMetadata.of(leftObject);
+            ObjectMetadata right = ObjectMetadata.of(rightObject);
+
+            // First add a change first to second
+            AuditChange leftChange = new AuditChange();
+            leftChange.setEntity(left.getEntityName());
+            leftChange.setEntityDescriptiveName(context.getEntityDescriptiveName(left, leftObject));
+
+            FieldMetadata rightFieldTarget = om.getField(om.getRight());
+
+            leftChange.setAffectedId(context.getAffectedId(left, leftObject));
+
+            leftChange.setEventType(rightFieldTarget.getEvent(event));
+            leftChange.setProperty(rightFieldTarget.getFieldName());
+            leftChange.setDescriptiveName(rightFieldTarget.getPropertyDescriptiveName());
+            leftChange.setDescriptive(rightFieldTarget.isDescriptiveField());
+            leftChange.setRelatedEntity(right.getEntityName());
+
+            if (event == AuditEventType.ADD) {
+                leftChange.setOldValue("");
+                leftChange.setNewValue(context.getEntityDescriptiveName(right, rightObject));
+            } else {
+                leftChange.setNewValue("");
+                leftChange.setOldValue(context.getEntityDescriptiveName(right, rightObject));
+            }
+
+            setChangeMessage(om, leftChange);
+
+            sink.accept(leftChange);
+
+            AuditChange rightChange = new AuditChange();
+            rightChange.setEntity(right.getEntityName());
+            rightChange.setEntityDescriptiveName(context.getEntityDescriptiveName(right, rightObject));
+
+            FieldMetadata leftFieldTarget = om.getField(om.getLeft());
+
+            rightChange.setAffectedId(context.getAffectedId(right, rightObject));
+
+            rightChange.setEventType(leftFieldTarget.getEvent(event));
+            rightChange.setProperty(leftFieldTarget.getFieldName());
+            rightChange.setDescriptiveName(leftFieldTarget.getPropertyDescriptiveName());
+            rightChange.setDescriptive(leftFieldTarget.isDescriptiveField());
+            rightChange.setRelatedEntity(left.getEntityName());
+
+            if (event == AuditEventType.ADD) {
+                rightChange.setOldValue("");
+                rightChange.setNewValue(context.getEntityDescriptiveName(left, leftObject));
+            } else {
+                rightChange.setNewValue("");
+                rightChange.setOldValue(context.getEntityDescriptiveName(left, leftObject));
+            }
+
+            setChangeMessage(om, rightChange);
+
+            sink.accept(rightChange);
+        }
+
+        // Do we have a parent, then we need to make sure we have a change for it
+        for (String parentProperty : om.getParents()) {
+            Object parentObject = context.getParentObject(om, parentProperty, referenceObject);
+            if (parentObject == null) {
+                continue;
+            }
+
+            ObjectMetadata parent = ObjectMetadata.of(parentObject);
+            AuditChange auditChange = new AuditChange();
+            auditChange.setEntity(parent.getEntityName());
+            auditChange.setEntityDescriptiveName(context.getEntityDescriptiveName(parent, parentObject));
+
+            FieldMetadata fieldMetadata = parent.getField(om.getMappedBy());
+
+            auditChange.setAffectedId(context.getAffectedId(parent, parentObject));
+            auditChange.setEventType(fieldMetadata.getEvent(event));
+            auditChange.setProperty(fieldMetadata.getFieldName());
+            auditChange.setDescriptiveName(fieldMetadata.getPropertyDescriptiveName());
+            auditChange.setDescriptive(fieldMetadata.isDescriptiveField());
+            auditChange.setRelatedEntity(om.getEntityName());
+
+            if (event == AuditEventType.ADD) {
+                auditChange.setOldValue("");
+                auditChange.setNewValue(context.getEntityDescriptiveName(om, newInstance));
+            } else {
+                auditChange.setNewValue("");
+                auditChange.setOldValue(context.getEntityDescriptiveName(om, oldInstance));
+            }
+
+            setChangeMessage(parent, auditChange);
+
+            if (event == AuditEventType.CHANGE) {
+                try {
+                    Object oldParent = context.getParentObject(om, parentProperty, oldInstance);
+                    Object oldParentValue = fieldMetadata.getValue(oldParent);
+                    if (oldParentValue instanceof Collection) {
+                        if (!((Collection) oldParentValue).contains(oldInstance)) {
+                            sink.accept(auditChange);
+                        }
+                    } else {
+                        if (!oldParentValue.equals(oldInstance)) {
+                            sink.accept(auditChange);
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException("Unable to get mappedBy field " + fieldMetadata.getFieldName() + " on " + oldInstance, e);
+                }
+            } else {
+                sink.accept(auditChange);
+            }
+        }
+
+        int fieldsVisited = 0;
+        if (om.isTracked() && !om.isIgnoreSelf()) {
+
+            switch (event) {
+                case ADD:
+                    AuditChange newAudit = createAuditChange(event, om.getSelfField(), referenceObject, context);
+                    // Rendered now even when messages are lazy, the message comes from the object as it is now and
+                    // we don't want to hold on to it (or see any later changes to it)
+                    newAudit.setMessage(measureMessage(newAudit, () -> messageBuilder.buildNewMessage(this, referenceObject)).get());
+                    sink.accept(newAudit);
+                    break;
+                case REMOVE:
+                    AuditChange deleteAudit = createAuditChange(event, om.getSelfField(), referenceObject, context);
+                    deleteAudit.setMessage(measureMessage(deleteAudit, () -> messageBuilder.buildDeleteMessage(this, referenceObject)).get());
+                    sink.accept(deleteAudit);
+                    break;
+            }
+
+            // When we know which fields have been set we only visit those, a differ would visit them all (and
+            // an explained diff needs to see each field)
+            AuditTrace trace = context.getTrace();
+            BitSet visited = event == AuditEventType.CHANGE ? getVisitedFields(om, newInstance) : null;
+            Differ<Object> differ = event == AuditEventType.CHANGE && visited == null && trace == null ? getDiffer(om) : null;
+            if (differ != null) {
+                differ.diff(oldInstance, newInstance, new DiffVisitor() {
+                    @Override
+                    public void changed(String property, String oldValue, String newValue) {
+                        FieldMetadata fieldMetadata = om.getField(property);
+                        if (isKeyedType(fieldMetadata)) {
+                            Object oldMapOrArray = getAuditValue(oldInstance, property, fieldMetadata);
+                            Object newMapOrArray = getAuditValue(newInstance, property, fieldMetadata);
+                            if (isKeyed(fieldMetadata, oldMapOrArray, newMapOrArray)) {
+                                diffKeyed(om, fieldMetadata, referenceObject, oldMapOrArray, newMapOrArray, sink, context);
+                                return;
+                            }
+                        }
+                        addFieldChange(om, fieldMetadata, referenceObject, oldValue, newValue, sink, context);
+                    }
+
+                    @Override
+                    public void keyed(String property, Object oldValue, Object newValue) {
+                        FieldMetadata fieldMetadata = om.getField(property);
+                        if (isKeyed(fieldMetadata, oldValue, newValue)) {
+                            diffKeyed(om, fieldMetadata, referenceObject, oldValue, newValue, sink, context);
+                        } else if (!valueTypes.isEqual(oldValue, newValue)) {
+                            addFieldChange(om, fieldMetadata, referenceObject, valueTypes.format(oldValue), valueTypes.format(newValue), sink, context);
+                        }
+                    }
+
+                    @Override
+                    public void traverse(String property) {
+                        AuditBuilder.this.traverse(AuditEventType.CHANGE, om.getField(property), newInstance, oldInstance, sink, context);
+                    }
+
+                    @Override
+                    public ValueTypes getValueTypes() {
+                        return valueTypes;
+                    }
+                });
+                return om.getFields().size();
+            }
+
+            List<FieldMetadata> fields = om.getFields();
+            for (int i = nextField(visited, 0); i >= 0 && i < fields.size(); i = nextField(visited, i + 1)) {
+                FieldMetadata fieldMetadata = fields.get(i);
+                if (fieldMetadata.isTracked()) {
+                    fieldsVisited++;
+                    long fieldStart = trace != null ? System.nanoTime() : 0;
+                    int changesBefore = trace != null ? trace.getChangeCount() : 0;
+
+                    // Found a property
+                    switch (event) {
+                        case ADD:
+                            if (fieldMetadata.isReportedOnAdd()) {
+                                if (fieldMetadata.isTraversable()) {
+                                    traverse(event, fieldMetadata, newInstance, oldInstance, sink, context);
+                                } else {
+                                    AuditChange auditChange = createAuditChange(event, fieldMetadata, referenceObject, context);
+                                    auditChange = buildChangeForComplexDescriptiveProperty(event, om.getClassAnnotation(), auditChange, fieldMetadata, newInstance);
+                                    setChangeMessage(om, auditChange);
+
+                                    if (auditChange.getNewValue() != null)
+                                        sink.accept(auditChange);
+                                }
+                            }
+                            break;
+                        case CHANGE:
+                            if (fieldMetadata.isTraversable()) {
+                                traverse(event, fieldMetadata, newInstance, oldInstance, sink, context);
+                            } else {
+                                Object oldValue = getAuditValue(oldInstance, fieldMetadata.getFieldName(), fieldMetadata);
+                                Object newValue = getAuditValue(newInstance, fieldMetadata.getFieldName(), fieldMetadata);
+                                if (isKeyed(fieldMetadata, oldValue, newValue)) {
+                                    diffKeyed(om, fieldMetadata, referenceObject, oldValue, newValue, sink, context);
+                                } else if (!valueTypes.isEqual(oldValue, newValue)) {
+                                    addFieldChange(om, fieldMetadata, referenceObject, valueTypes.format(oldValue), valueTypes.format(newValue), sink, context);
+                                }
+                            }
+                            break;
+                        case REMOVE:
+                            if (fieldMetadata.isReportedOnRemove()) {
+                                if (fieldMetadata.isTraversable()) {
+                                    traverse(event, fieldMetadata, newInstance, oldInstance, sink, context);
+                                } else {
+                                    AuditChange auditChange = createAuditChange(event, fieldMetadata, referenceObject, context);
+                                    auditChange = buildChangeForComplexDescriptiveProperty(event, om.getClassAnnotation(), auditChange, fieldMetadata, oldInstance);
+                                    setChangeMessage(om, auditChange);
+
+                                    if (auditChange.getOldValue() != null)
+                                        sink.accept(auditChange);
+                                }
+                            }
+                            break;
+                    }
+
+                    if (trace != null) {
+                        trace.field(fieldMetadata, System.nanoTime() - fieldStart, trace.getChangeCount() - changesBefore);
+                    }
+                }
+
+            }
+        }
+
+        return fieldsVisited;
+    }
+
+    /**
+     * Check if anything has changed between the two objects, this compares the audited values and
+     * stops at the first difference, without building any changes or messages.
+     * <p>
+     * An object that has been added or removed is always changed, otherwise we look at the tracked
+     * fields of the object (and anything it traverses into). Changes that are only reported on a parent
+     * or through a join are not included
+     *
+     * @param oldInstance The old instance (or null if it is new)
+     * @param newInstance The new instance (or null if it has been deleted)
+     * @return true if there is at least one change
+     */
+    public boolean isChanged(Object oldInstance, Object newInstance) {
+        checkNotSnapshots(oldInstance, newInstance);
+        if (oldInstance == null || newInstance == null) {
+            return oldInstance != newInstance;
+        }
+        return compareFields(oldInstance, newInstance, null, new DiffContext());
+    }
+
+    private boolean isChanged(Object oldInstance, Object newInstance, DiffContext context) {
+        if (oldInstance == null || newInstance == null) {
+            return oldInstance != newInstance;
+        }
+        return compareFields(oldInstance, newInstance, null, context);
+    }
+
+    /**
+     * Find the tracked fields that have changed between the two instances of an object
+     *
+     * @param oldInstance The old instance
+     * @param newInstance The new instance
+     * @return the changed fields, each bit is the index of the field in {@link ObjectMetadata#getFields()}
+     */
+    public BitSet changedFields(Object oldInstance, Object newInstance) {
+        if (oldInstance == null || newInstance == null) {
+            throw new IllegalArgumentException("Both the old and new instance are needed to find the changed fields");
+        }
+        checkNotSnapshots(oldInstance, newInstance);
+        BitSet changed = new BitSet();
+        compareFields(oldInstance, newInstance, changed, new DiffContext());
+        return changed;
+    }
+
+    /**
+     * Compare the tracked fields of the two instances, if there is no bit set to record the changed
+     * fields in we stop at the first one
+     */
+    private boolean compareFields(Object oldInstance, Object newInstance, BitSet changed, DiffContext context) {
+        ObjectMetadata om = ObjectMetadata.of(oldInstance);
+        if (!om.isTracked() || om.isIgnoreSelf()) {
+            return false;
+        }
+
+        // A pair we are comparing further up won't tell us anything new, and one we have finished
+        // already has its answer
+        if (!context.enter(oldInstance, newInstance)) {
+            return context.isChanged(oldInstance, newInstance);
+        }
+
+        boolean anyChanged = false;
+        BitSet visited = getVisitedFields(om, newInstance);
+        List<FieldMetadata> fields = om.getFields();
+        for (int i = nextField(visited, 0); i >= 0 && i < fields.size(); i = nextField(visited, i + 1)) {
+            FieldMetadata fieldMetadata = fields.get(i);
+            if (!fieldMetadata.isTracked()) {
+                continue;
+            }
+
+            boolean fieldChanged;
+            if (fieldMetadata.isTraversable()) {
+                fieldChanged = isTraversedChanged(fieldMetadata, oldInstance, newInstance, context);
+            } else {
+                Object oldValue = getAuditValue(oldInstance, fieldMetadata.getFieldName(), fieldMetadata);
+                Object newValue = getAuditValue(newInstance, fieldMetadata.getFieldName(), fieldMetadata);
+                fieldChanged = isKeyed(fieldMetadata, oldValue, newValue) ? isKeyedChanged(oldValue, newValue, context) : !valueTypes.isEqual(oldValue, newValue);
+            }
+
+            if (fieldChanged) {
+                if (changed == null) {
+                    context.exit(oldInstance, newInstance, true);
+                    return true;
+                }
+                changed.set(i);
+                anyChanged = true;
+            }
+        }
+        context.exit(oldInstance, newInstance, anyChanged);
+        return anyChanged;
+    }
+
+    // This follows the matching in traverse, but stops as soon as it finds a change
+    private boolean isTraversedChanged(FieldMetadata fieldMetadata, Object oldInstance, Object newInstance, DiffContext context) {
+        Object oldValue = fieldMetadata.getValue(oldInstance);
+        Object newValue = fieldMetadata.getValue(newInstance);
+        if (oldValue == newValue) {
+            return false;
+        }
+        if (!Collection.class.isAssignableFrom(fieldMetadata.getFieldType())) {
+            return isChanged(oldValue, newValue, context);
+        }
+        if (oldValue == null || newValue == null) {
+            // Like traverse, the items on the other side are diffed against nothing so only audited items have changes
+            AtomicBoolean found = new AtomicBoolean();
+            for (Object o : (Collection<?>) (oldValue != null ? oldValue : newValue)) {
+                if (!isScalar(o)) {
+                    diffObjects(o, null, auditChange -> found.set(true), new DiffContext());
+                    if (found.get()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        Collection<?> oldValues = (Collection<?>) oldValue;
+        Collection<?> newValues = (Collection<?>) newValue;
+        Map<Object, Object> oldIndex = indexCollection(oldValues, fieldMetadata);
+        Map<Object, Object> newIndex = indexCollection(newValues, fieldMetadata);
+        for (Object o : oldValues) {
+            Object key = matchKey(o, fieldMetadata);
+            if (key == NO_MATCH || !newIndex.containsKey(key)) {
+                return true;
+            }
+            if (!isScalar(o) && isChanged(o, newIndex.get(key), context)) {
+                return true;
+            }
+        }
+        for (Object o : newValues) {
+            Object key = matchKey(o, fieldMetadata);
+            if (key == NO_MATCH || !oldIndex.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // This follows diffKeyed, but stops as soon as it finds a change
+    private boolean isKeyedChanged(Object oldValue, Object newValue, DiffContext context) {
+        if (oldValue instanceof Map || newValue instanceof Map) {
+            Map<?, ?> oldMap = oldValue != null ? (Map<?, ?>) oldValue : Collections.emptyMap();
+            Map<?, ?> newMap = newValue != null ? (Map<?, ?>) newValue : Collections.emptyMap();
+            if (oldMap.size() != newMap.size()) {
+                return true;
+            }
+            for (Map.Entry<?, ?> entry : oldMap.entrySet()) {
+                if (!newMap.containsKey(entry.getKey()) || isItemChanged(entry.getValue(), newMap.get(entry.getKey()), context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int length = oldValue != null ? Array.getLength(oldValue) : 0;
+        if (length != (newValue != null ? Array.getLength(newValue) : 0)) {
+            return true;
+        }
+        if (length == 0) {
+            return false;
+        }
+        if (oldValue instanceof Object[]) {
+            Object[] oldItems = (Object[]) oldValue;
+            Object[] newItems = (Object[]) newValue;
+            for (int i = 0; i < length; i++) {
+                if (isItemChanged(oldItems[i], newItems[i], context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return !isSameArray(oldValue, newValue) && mismatch(oldValue, newValue, 0, length) >= 0;
+    }
+
+    private boolean isItemChanged(Object oldItem, Object newItem, DiffContext context) {
+        return isEntityPair(oldItem, newItem) ? isChanged(oldItem, newItem, context) : !valueTypes.isEqual(oldItem, newItem);
+    }
+
+    /**
+     * Capture the tracked fields of an object (and anything it traverses into) so that we can diff
+     * against them later, without keeping or cloning the object itself
+     *
+     * @param instance the object, which must be audited
+     * @return the snapshot
+     */
+    public Snapshot snapshot(Object instance) {
+        if (instance == null || !ObjectMetadata.of(instance).isTracked()) {
+            throw new IllegalArgumentException("Only an audited object can be captured in a snapshot, not " + instance);
+        }
+        return ArraySnapshot.capture(this, instance, new IdentityHashMap<>());
+    }
+
+    public List<AuditChange> buildSnapshotChanges(Snapshot oldSnapshot, Object newInstance) {
+        List<AuditChange> changes = new ArrayList<>();
+        buildSnapshotChanges(oldSnapshot, newInstance, changes::add);
+        return changes;
+    }
+
+    /**
+     * Build the changes between a snapshot and the object as it is now.
+     * <p>
+     * This only builds changes (both sides have to be there), and only the changes on the object and what
+     * it traverses into. An object that was added or removed in a traversed field is reported with its new
+     * or deleted change alone, and parent and join relationship changes aren't reported
+     *
+     * @param oldSnapshot the snapshot of the object
+     * @param newInstance the object now
+     * @param sink        receives the changes
+     */
+    public void buildSnapshotChanges(Snapshot oldSnapshot, Object newInstance, Consumer<? super AuditChange> sink) {
+        if (newInstance == null) {
+            throw new IllegalArgumentException("A snapshot can only be compared to an object that is there");
+        }
+        buildSnapshotChanges(oldSnapshot, new LiveSnapshot(this, newInstance), sink);
+    }
+
+    public List<AuditChange> buildSnapshotChanges(Snapshot oldSnapshot, Snapshot newSnapshot) {
+        List<AuditChange> changes = new ArrayList<>();
+        buildSnapshotChanges(oldSnapshot, newSnapshot, changes::add);
+        return changes;
+    }
+
+    /**
+     * Build the changes between two snapshots of an object, see {@link #buildSnapshotChanges(Snapshot, Object, Consumer)}
+     *
+     * @param oldSnapshot the old snapshot
+     * @param newSnapshot the new snapshot
+     * @param sink        receives the changes
+     */
+    public void buildSnapshotChanges(Snapshot oldSnapshot, Snapshot newSnapshot, Consumer<? super AuditChange> sink) {
+        if (oldSnapshot == null || newSnapshot == null) {
+            throw new IllegalArgumentException("Both snapshots are needed to build the changes");
+        }
+        if (oldSnapshot.getPlan() != newSnapshot.getPlan()) {
+            throw new IllegalArgumentException("Can't compare a snapshot of " + oldSnapshot.getPlan().getEntityName() + " to " + newSnapshot.getPlan().getEntityName());
+        }
+        diffSnapshots(oldSnapshot, newSnapshot, countChanges(sink), new DiffContext());
+    }
+
+    /**
+     * Build the changes for a pair of snapshots where either side can be missing, an entity that has been
+     * added or removed is reported with just its new or deleted change (see {@link Reconciler})
+     */
+    void buildReconciledChanges(Snapshot oldSnapshot, Snapshot newSnapshot, Consumer<? super AuditChange> changeSink) {
+        Consumer<? super AuditChange> sink = countChanges(changeSink);
+        if (oldSnapshot == null) {
+            addSnapshotSelfChange(AuditEventType.ADD, newSnapshot, sink);
+        } else if (newSnapshot == null) {
+            addSnapshotSelfChange(AuditEventType.REMOVE, oldSnapshot, sink);
+        } else if (oldSnapshot.getPlan() != newSnapshot.getPlan()) {
+            addSnapshotSelfChange(AuditEventType.REMOVE, oldSnapshot, sink);
+            addSnapshotSelfChange(AuditEventType.ADD, newSnapshot, sink);
+        } else {
+            diffSnapshots(oldSnapshot, newSnapshot, sink, new DiffContext());
+        }
+    }
+
+    // This follows the CHANGE path of buildObjectChanges, reading the fields from the snapshots
+    private void diffSnapshots(Snapshot oldSnapshot, Snapshot newSnapshot, Consumer<? super AuditChange> sink, DiffContext context) {
+        ObjectMetadata om = oldSnapshot.getPlan();
+        if (!om.isTracked() || om.isIgnoreSelf()) {
+            return;
+        }
+        if (!context.enter(oldSnapshot.getIdentity(), newSnapshot.getIdentity())) {
+            return;
+        }
+        int depth = context.getDepth();
+        long start = metrics != AuditMetrics.NONE ? System.nanoTime() : 0;
+        int fieldsVisited = 0;
+        try {
+            SnapshotLayout layout = oldSnapshot.getLayout();
+            BitSet dirtyFields = newSnapshot.getDirtyFields();
+            BitSet visited = dirtyFields != null ? om.getVisitedFields(dirtyFields) : null;
+            List<FieldMetadata> fields = om.getFields();
+            for (int i = nextField(visited, 0); i >= 0 && i < fields.size(); i = nextField(visited, i + 1)) {
+                FieldMetadata fieldMetadata = fields.get(i);
+                if (layout.getKind(i) != SnapshotLayout.Kind.NONE) {
+                    fieldsVisited++;
+                }
+                switch (layout.getKind(i)) {
+                    case NONE:
+                        break;
+                    case INT:
+                        long oldInt = oldSnapshot.getLong(i);
+                        long newInt = newSnapshot.getLong(i);
+                        if (!valueTypes.isEqual((int) oldInt, (int) newInt)) {
+                            addSnapshotChange(fieldMetadata, oldSnapshot, valueTypes.format((int) oldInt), valueTypes.format((int) newInt), sink);
+                        }
+                        break;
+                    case LONG:
+                        long oldLong = oldSnapshot.getLong(i);
+                        long newLong = newSnapshot.getLong(i);
+                        if (!valueTypes.isEqual(oldLong, newLong)) {
+                            addSnapshotChange(fieldMetadata, oldSnapshot, valueTypes.format(oldLong), valueTypes.format(newLong), sink);
+                        }
+                        break;
+                    case CHAR:
+                        char oldChar = (char) oldSnapshot.getLong(i);
+                        char newChar = (char) newSnapshot.getLong(i);
+                        if (oldChar != newChar) {
+                            addSnapshotChange(fieldMetadata, oldSnapshot, valueTypes.format(oldChar), valueTypes.format(newChar), sink);
+                        }
+                        break;
+                    case BOOLEAN:
+                        boolean oldBoolean = oldSnapshot.getLong(i) != 0;
+                        boolean newBoolean = newSnapshot.getLong(i) != 0;
+                        if (oldBoolean != newBoolean) {
+                            addSnapshotChange(fieldMetadata, oldSnapshot, valueTypes.format(oldBoolean), valueTypes.format(newBoolean), sink);
+                        }
+                        break;
+                    case FLOAT:
+                        double oldFloat = oldSnapshot.getDouble(i);
+                        double newFloat = newSnapshot.getDouble(i);
+                        if (!valueTypes.isEqual(oldFloat, newFloat)) {
+                            addSnapshotChange(fieldMetadata, oldSnapshot, valueTypes.format((float) oldFloat), valueTypes.format((float) newFloat), sink);
+                        }
+                        break;
+                    case DOUBLE:
+                        double oldDouble = oldSnapshot.getDouble(i);
+                        double newDouble = newSnapshot.getDouble(i);
+                        if (!valueTypes.isEqual(oldDouble, newDouble)) {
+                            addSnapshotChange(fieldMetadata, oldSnapshot, valueTypes.format(oldDouble), valueTypes.format(newDouble), sink);
+                        }
+                        break;
+                    case OBJECT:
+                        Object oldValue = oldSnapshot.getValue(i);
+                        Object newValue = newSnapshot.getValue(i);
+                        if (isKeyed(fieldMetadata, oldValue, newValue)) {
+                            diffKeyed(om, fieldMetadata, oldSnapshot, oldValue, newValue, sink, context);
+                        } else if (!valueTypes.isEqual(oldValue, newValue)) {
+                            addSnapshotChange(fieldMetadata, oldSnapshot, valueTypes.format(oldValue), valueTypes.format(newValue), sink);
+                        }
+                        break;
+                    case CHILD:
+                        diffSnapshotChild(fieldMetadata, oldSnapshot.getChild(i), newSnapshot.getChild(i), sink, context);
+                        break;
+                    case ITEMS:
+                        diffSnapshotItems(fieldMetadata, oldSnapshot, oldSnapshot.getItems(i), newSnapshot.getItems(i), sink, context);
+                        break;
+                }
+            }
+        } finally {
+            context.exit(oldSnapshot.getIdentity(), newSnapshot.getIdentity());
+        }
+        if (metrics != AuditMetrics.NONE) {
+            metrics.objectDiffed(om, System.nanoTime() - start, fieldsVisited, depth);
+        }
+    }
+
+    private void diffSnapshotChild(FieldMetadata fieldMetadata, Snapshot oldChild, Snapshot newChild, Consumer<? super AuditChange> sink, DiffContext context) {
+        if (oldChild == null && newChild == null) {
+            return;
+        }
+        if (oldChild == null) {
+            addSnapshotSelfChange(AuditEventType.ADD, newChild, sink);
+        } else if (newChild == null) {
+            addSnapshotSelfChange(AuditEventType.REMOVE, oldChild, sink);
+        } else if (oldChild.getPlan() != newChild.getPlan()) {
+            addSnapshotSelfChange(AuditEventType.REMOVE, oldChild, sink);
+            addSnapshotSelfChange(AuditEventType.ADD, newChild, sink);
+        } else {
+            diffSnapshots(oldChild, newChild, sink, context);
+        }
+    }
+
+    // Like traverse, a missing collection is treated as an empty one
+    private void diffSnapshotItems(FieldMetadata fieldMetadata, Snapshot owner, List<Snapshot.Item> oldItems, List<Snapshot.Item> newItems, Consumer<? super AuditChange> sink, DiffContext context) {
+        if (oldItems == null) {
+            oldItems = Collections.emptyList();
+        }
+        if (newItems == null) {
+            newItems = Collections.emptyList();
+        }
+        Map<Object, Snapshot.Item> oldIndex = indexItems(oldItems, fieldMetadata);
+        Map<Object, Snapshot.Item> newIndex = indexItems(newItems, fieldMetadata);
+
+        // Modifications
+        for (Snapshot.Item item : oldItems) {
+            Snapshot.Item match = item.isMatchable() ? newIndex.get(item.getKey()) : null;
+            if (match != null && item.getSnapshot() != null && match.getSnapshot() != null) {
+                diffSnapshotChild(fieldMetadata, item.getSnapshot(), match.getSnapshot(), sink, context);
+            }
+        }
+
+        // Removals
+        for (Snapshot.Item item : oldItems) {
+            if (!item.isMatchable() || !newIndex.containsKey(item.getKey())) {
+                AuditChange auditChange = createSnapshotChange(AuditEventType.REMOVE, fieldMetadata, owner);
+                auditChange.setRelatedEntity(item.getName());
+                auditChange.setOldValue(item.getValue());
+                setChangeMessage(fieldMetadata.getObjectMetadata(), auditChange);
+                sink.accept(auditChange);
+            }
+        }
+
+        // Additions
+        for (Snapshot.Item item : newItems) {
+            if (!item.isMatchable() || !oldIndex.containsKey(item.getKey())) {
+                AuditChange auditChange = createSnapshotChange(AuditEventType.ADD, fieldMetadata, owner);
+                auditChange.setRelatedEntity(item.getName());
+                auditChange.setNewValue(item.getValue());
+                setChangeMessage(fieldMetadata.getObjectMetadata(), auditChange);
+                sink.accept(auditChange);
+            }
+        }
+    }
+
+    private Map<Object, Snapshot.Item> indexItems(List<Snapshot.Item> items, FieldMetadata fieldMetadata) {
+        Map<Object, Snapshot.Item> index = fieldMetadata.getMatch() == CollectionMatch.IDENTITY ? new IdentityHashMap<>() : new HashMap<>(items.size() * 2);
+        for (Snapshot.Item item : items) {
+            if (item.isMatchable()) {
+                index.putIfAbsent(item.getKey(), item);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Capture an item in a traversed collection, note that items matched on equality or identity keep
+     * a reference to the item itself as their key
+     */
+    Snapshot.Item snapshotItem(FieldMetadata fieldMetadata, Object o, Snapshot snapshot) {
+        Object key = matchKey(o, fieldMetadata);
+        return new Snapshot.Item(key == NO_MATCH ? null : key, key != NO_MATCH, getItemValue(o, fieldMetadata), getName(o), snapshot);
+    }
+
+    private void addSnapshotChange(FieldMetadata fieldMetadata, Snapshot snapshot, String oldValue, String newValue, Consumer<? super AuditChange> sink) {
+        AuditChange auditChange = createSnapshotChange(AuditEventType.CHANGE, fieldMetadata, snapshot);
+        auditChange.setNewValue(newValue);
+        auditChange.setOldValue(oldValue);
+        setChangeMessage(fieldMetadata.getObjectMetadata(), auditChange);
+        sink.accept(auditChange);
+    }
+
+    private void addSnapshotSelfChange(AuditEventType event, Snapshot snapshot, Consumer<? super AuditChange> sink) {
+        ObjectMetadata om = snapshot.getPlan();
+        if (om.isIgnoreSelf()) {
+            return;
+        }
+        AuditChange auditChange = createSnapshotChange(event, om.getSelfField(), snapshot);
+        setMessage(auditChange, () -> messageBuilder.renderMessage(this, auditChange));
+        sink.accept(auditChange);
+    }
+
+    private AuditChange createSnapshotChange(AuditEventType event, FieldMetadata fieldMetadata, Snapshot snapshot) {
+        AuditChange auditChange = new AuditChange();
+        auditChange.setAffectedId(snapshot.getAffectedId());
+        auditChange.setEntity(fieldMetadata.getObjectMetadata().getEntityName());
+        auditChange.setEntityDescriptiveName(snapshot.getEntityDescriptiveName());
+        auditChange.setEventType(fieldMetadata.getEvent(event));
+        auditChange.setProperty(fieldMetadata.getFieldName());
+        auditChange.setDescriptiveName(fieldMetadata.getPropertyDescriptiveName());
+        auditChange.setDescriptive(fieldMetadata.isDescriptiveField());
+        return auditChange;
+    }
+
+    /**
+     * The fields to visit in a diff, if the new instance knows which of its fields are dirty (see {@link DirtyTracking})
+     *
+     * @return the indexes of the fields to visit, or null for all of them
+     */
+    private BitSet getVisitedFields(ObjectMetadata om, Object newInstance) {
+        BitSet dirtyFields = getDirtyFields(newInstance);
+        return dirtyFields != null ? om.getVisitedFields(dirtyFields) : null;
+    }
+
+    static BitSet getDirtyFields(Object instance) {
+        if (instance instanceof DirtyTracking) {
+            DirtyFields dirtyFields = ((DirtyTracking) instance).getDirtyFields();
+            return dirtyFields != null ? dirtyFields.get() : null;
+        }
+        return null;
+    }
+
+    // Step through either all of the fields, or only the ones we visit
+    private static int nextField(BitSet visited, int from) {
+        return visited != null ? visited.nextSetBit(from) : from;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Differ<Object> getDiffer(ObjectMetadata om) {
+        Differ<?> differ = useGeneratedDiffers ? GENERATED_DIFFERS.getDiffer(om.getClazz()) : null;
+        if (differ == null && differFactory != null) {
+            differ = differFactory.getDiffer(om.getClazz());
+        }
+        return (Differ<Object>) differ;
+    }
+
+    private void addFieldChange(ObjectMetadata om, FieldMetadata fieldMetadata, Object referenceObject, String oldValue, String newValue, Consumer<? super AuditChange> sink, DiffContext context) {
+        AuditChange auditChange = createAuditChange(AuditEventType.CHANGE, fieldMetadata, referenceObject, context);
+        auditChange.setNewValue(newValue);
+        auditChange.setOldValue(oldValue);
+        setChangeMessage(om, auditChange);
+        sink.accept(auditChange);
+    }
+
+    /**
+     * @return true if the field could hold a map or an array
+     */
+    private boolean isKeyedType(FieldMetadata fieldMetadata) {
+        Class<?> type = fieldMetadata.getFieldType();
+        return fieldMetadata.getDescriptivePath() == null && (Map.class.isAssignableFrom(type) || type.isArray() || type == Object.class);
+    }
+
+    /**
+     * A map or an array is diffed a key (or index) at a time, unless there is a comparator or formatter for it
+     */
+    private boolean isKeyed(FieldMetadata fieldMetadata, Object oldValue, Object newValue) {
+        if (fieldMetadata.getDescriptivePath() != null) {
+            return false;
+        }
+        Object value = oldValue != null ? oldValue : newValue;
+        if (value == null || valueTypes.isRegistered(value.getClass())) {
+            return false;
+        }
+        if (value instanceof Map) {
+            return oldValue == null || newValue == null || newValue instanceof Map;
+        }
+        return value.getClass().isArray() && (oldValue == null || newValue == null || oldValue.getClass() == newValue.getClass());
+    }
+
+    /**
+     * Diff a map or an array, each key (or index) that has been added, removed or changed is a change of its own
+     * with the key after the name of the property, for example limits[gold]. An audited object in the map or
+     * array is diffed against the one with the same key on the other side.
+     * <p>
+     * Arrays of primitives are compared without boxing, and only the items that changed are formatted
+     *
+     * @param owner the object the map or array is on, or its snapshot when we are diffing snapshots
+     */
+    private void diffKeyed(ObjectMetadata om, FieldMetadata fieldMetadata, Object owner, Object oldValue, Object newValue,
+                           Consumer<? super AuditChange> sink, DiffContext context) {
+        if (oldValue instanceof Map || newValue instanceof Map) {
+            Map<?, ?> oldMap = oldValue != null ? (Map<?, ?>) oldValue : Collections.emptyMap();
+            Map<?, ?> newMap = newValue != null ? (Map<?, ?>) newValue : Collections.emptyMap();
+            for (Map.Entry<?, ?> entry : oldMap.entrySet()) {
+                Object key = entry.getKey();
+                if (newMap.containsKey(key)) {
+                    diffItem(om, fieldMetadata, owner, key, entry.getValue(), newMap.get(key), sink, context);
+                } else {
+                    addItemChange(AuditEventType.REMOVE, om, fieldMetadata, owner, key, entry.getValue(), null, sink, context);
+                }
+            }
+            for (Map.Entry<?, ?> entry : newMap.entrySet()) {
+                if (!oldMap.containsKey(entry.getKey())) {
+                    addItemChange(AuditEventType.ADD, om, fieldMetadata, owner, entry.getKey(), null, entry.getValue(), sink, context);
+                }
+            }
+            return;
+        }
+
+        int oldLength = oldValue != null ? Array.getLength(oldValue) : 0;
+        int newLength = newValue != null ? Array.getLength(newValue) : 0;
+        int common = Math.min(oldLength, newLength);
+        if (oldValue instanceof Object[]) {
+            Object[] oldItems = (Object[]) oldValue;
+            Object[] newItems = (Object[]) newValue;
+            for (int i = 0; i < common; i++) {
+                diffItem(om, fieldMetadata, owner, i, oldItems[i], newItems[i], sink, context);
+            }
+        } else if (common > 0 && (oldLength != newLength || !isSameArray(oldValue, newValue))) {
+            for (int i = mismatch(oldValue, newValue, 0, common); i >= 0; i = mismatch(oldValue, newValue, i + 1, common)) {
+                addItemChange(AuditEventType.CHANGE, om, fieldMetadata, owner, i, Array.get(oldValue, i), Array.get(newValue, i), sink, context);
+            }
+        }
+        for (int i = common; i < oldLength; i++) {
+            addItemChange(AuditEventType.REMOVE, om, fieldMetadata, owner, i, Array.get(oldValue, i), null, sink, context);
+        }
+        for (int i = common; i < newLength; i++) {
+            addItemChange(AuditEventType.ADD, om, fieldMetadata, owner, i, null, Array.get(newValue, i), sink, context);
+        }
+    }
+
+    private void diffItem(ObjectMetadata om, FieldMetadata fieldMetadata, Object owner, Object key, Object oldItem, Object newItem,
+                          Consumer<? super AuditChange> sink, DiffContext context) {
+        if (isEntityPair(oldItem, newItem)) {
+            AuditTrace trace = context.getTrace();
+            if (trace != null) {
+                trace.push(fieldMetadata.getFieldName());
+                trace.push("[" + key + "]");
+            }
+            try {
+                diffObjects(oldItem, newItem, sink, context);
+            } finally {
+                if (trace != null) {
+                    trace.pop();
+                    trace.pop();
+                }
+            }
+        } else if (!valueTypes.isEqual(oldItem, newItem)) {
+            addItemChange(AuditEventType.CHANGE, om, fieldMetadata, owner, key, oldItem, newItem, sink, context);
+        }
+    }
+
+    private void addItemChange(AuditEventType event, ObjectMetadata om, FieldMetadata fieldMetadata, Object owner, Object key,
+                               Object oldItem, Object newItem, Consumer<? super AuditChange> sink, DiffContext context) {
+        AuditChange auditChange = owner instanceof Snapshot ? createSnapshotChange(event, fieldMetadata, (Snapshot) owner)
+                : createAuditChange(event, fieldMetadata, owner, context);
+        auditChange.setProperty(fieldMetadata.getFieldName() + "[" + key + "]");
+        Object item = newItem != null ? newItem : oldItem;
+        if (event != AuditEventType.CHANGE && !isScalar(item)) {
+            auditChange.setRelatedEntity(context.getName(this, item));
+        }
+        auditChange.setOldValue(formatItem(oldItem, context));
+        auditChange.setNewValue(formatItem(newItem, context));
+        setChangeMessage(om, auditChange);
+        sink.accept(auditChange);
+    }
+
+    private String formatItem(Object item, DiffContext context) {
+        return isScalar(item) ? valueTypes.format(item) : context.getEntityDescriptiveName(ObjectMetadata.of(item), item);
+    }
+
+    // Two audited objects of the same class, which we diff rather than compare
+    private boolean isEntityPair(Object oldItem, Object newItem) {
+        return oldItem != null && newItem != null && oldItem.getClass() == newItem.getClass() && !isScalar(oldItem);
+    }
+
+    // Arrays.equals is the quickest way to see that nothing has changed (it is vectorized on newer JVMs)
+    private static boolean isSameArray(Object oldArray, Object newArray) {
+        if (oldArray instanceof int[]) {
+            return Arrays.equals((int[]) oldArray, (int[]) newArray);
+        } else if (oldArray instanceof long[]) {
+            return Arrays.equals((long[]) oldArray, (long[]) newArray);
+        } else if (oldArray instanceof double[]) {
+            return Arrays.equals((double[]) oldArray, (double[]) newArray);
+        } else if (oldArray instanceof byte[]) {
+            return Arrays.equals((byte[]) oldArray, (byte[]) newArray);
+        } else if (oldArray instanceof char[]) {
+            return Arrays.equals((char[]) oldArray, (char[]) newArray);
+        } else if (oldArray instanceof float[]) {
+            return Arrays.equals((float[]) oldArray, (float[]) newArray);
+        } else if (oldArray instanceof short[]) {
+            return Arrays.equals((short[]) oldArray, (short[]) newArray);
+        } else if (oldArray instanceof boolean[]) {
+            return Arrays.equals((boolean[]) oldArray, (boolean[]) newArray);
+        }
+        return false;
+    }
+
+    /**
+     * Find the next index (from, up to to) where two arrays of primitives differ, using the primitive comparators
+     *
+     * @return the index, or -1 if they are the same
+     */
+    private int mismatch(Object oldArray, Object newArray, int from, int to) {
+        if (oldArray instanceof int[]) {
+            int[] oldItems = (int[]) oldArray;
+            int[] newItems = (int[]) newArray;
+            for (int i = from; i < to; i++) {
+                if (!valueTypes.isEqual(oldItems[i], newItems[i])) {
+                    return i;
+                }
+            }
+        } else if (oldArray instanceof long[]) {
+            long[] oldItems = (long[]) oldArray;
+            long[] newItems = (long[]) newArray;
+            for (int i = from; i < to; i++) {
+                if (!valueTypes.isEqual(oldItems[i], newItems[i])) {
+                    return i;
+                }
+            }
+        } else if (oldArray instanceof double[]) {
+            double[] oldItems = (double[]) oldArray;
+            double[] newItems = (double[]) newArray;
+            for (int i = from; i < to; i++) {
+                if (!valueTypes.isEqual(oldItems[i], newItems[i])) {
+                    return i;
+                }
+            }
+        } else if (oldArray instanceof float[]) {
+            float[] oldItems = (float[]) oldArray;
+            float[] newItems = (float[]) newArray;
+            for (int i = from; i < to; i++) {
+                if (!valueTypes.isEqual(oldItems[i], newItems[i])) {
+                    return i;
+                }
+            }
+        } else if (oldArray instanceof short[]) {
+            short[] oldItems = (short[]) oldArray;
+            short[] newItems = (short[]) newArray;
+            for (int i = from; i < to; i++) {
+                if (!valueTypes.isEqual(oldItems[i], newItems[i])) {
+                    return i;
+                }
+            }
+        } else if (oldArray instanceof byte[]) {
+            byte[] oldItems = (byte[]) oldArray;
+            byte[] newItems = (byte[]) newArray;
+            for (int i = from; i < to; i++) {
+                if (!valueTypes.isEqual(oldItems[i], newItems[i])) {
+                    return i;
+                }
+            }
+        } else if (oldArray instanceof char[]) {
+            char[] oldItems = (char[]) oldArray;
+            char[] newItems = (char[]) newArray;
+            for (int i = from; i < to; i++) {
+                if (oldItems[i] != newItems[i]) {
+                    return i;
+                }
+            }
+        } else if (oldArray instanceof boolean[]) {
+            boolean[] oldItems = (boolean[]) oldArray;
+            boolean[] newItems = (boolean[]) newArray;
+            for (int i = from; i < to; i++) {
+                if (oldItems[i] != newItems[i]) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void setChangeMessage(ObjectMetadata om, AuditChange auditChange) {
+        setMessage(auditChange, () -> messageBuilder.buildChangeMessage(this, om, auditChange));
+    }
+
+    private void setMessage(AuditChange auditChange, Supplier<String> renderer) {
+        if (lazyMessages) {
+            auditChange.setMessageRenderer(measureMessage(auditChange, renderer));
+        } else {
+            auditChange.setMessage(measureMessage(auditChange, renderer).get());
+        }
+    }
+
+    // Time the message builder, when a message is lazy this is when it is rendered
+    private Supplier<String> measureMessage(AuditChange auditChange, Supplier<String> renderer) {
+        if (metrics == AuditMetrics.NONE) {
+            return renderer;
+        }
+        AuditMetrics messageMetrics = metrics;
+        return () -> {
+            long start = System.nanoTime();
+            String message = renderer.get();
+            messageMetrics.messageRendered(auditChange, System.nanoTime() - start, message != null ? message.length() : 0);
+            return message;
+        };
+    }
+
+    /**
+     * Register the classes of the entities whose changes we render from their fields alone (see
+     * {@link #renderMessage(AuditChange)}), so the templates on them are used. A stored change only has the
+     * name of its entity, so without this we fall back to the default templates
+     *
+     * @param classes the audited classes
+     * @return this builder
+     */
+    public AuditBuilder registerEntities(Class<?>... classes) {
+        for (Class<?> clazz : classes) {
+            ObjectMetadata om = ObjectMetadata.forClass(clazz);
+            if (!om.isTracked()) {
+                throw new RuntimeException("Unable to register " + clazz.getName() + ", it isn't audited");
+            }
+            ObjectMetadata existing = entities.putIfAbsent(om.getEntityName(), om);
+            if (existing != null && existing != om) {
+                throw new RuntimeException("Unable to register " + clazz.getName() + " as " + om.getEntityName()
+                        + ", it is already registered for " + existing.getClazz().getName());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Get the plan for an entity name
+     *
+     * @param entityName the entity name
+     * @return the plan for the class registered with that name, or null if there isn't one
+     */
+    public ObjectMetadata getEntityMetadata(String entityName) {
+        return entityName != null ? entities.get(entityName) : null;
+    }
+
+    /**
+     * Render the message for a change, if the change doesn't have a message (or one waiting to
+     * be rendered) we render it from the fields of the change, for example after it has been
+     * stored and loaded again. The templates come from the class registered for its entity
+     *
+     * @param auditChange the change
+     * @return the message
+     */
+    public String renderMessage(AuditChange auditChange) {
+        String message = auditChange.getMessage();
+        if (message == null) {
+            message = measureMessage(auditChange, () -> messageBuilder.renderMessage(this, auditChange)).get();
+            auditChange.setMessage(message);
+        }
+        return message;
+    }
+
+    private AuditChange createAuditChange(AuditEventType event, FieldMetadata fieldMetadata, Object object, DiffContext context) {
+        ObjectMetadata om = fieldMetadata.getObjectMetadata();
+        AuditChange auditChange = new AuditChange();
+        auditChange.setAffectedId(context.getAffectedId(om, object));
+        auditChange.setEntity(om.getEntityName());
+        auditChange.setEntityDescriptiveName(context.getEntityDescriptiveName(om, object));
+        auditChange.setEventType(fieldMetadata.getEvent(event));
+        auditChange.setProperty(fieldMetadata.getFieldName());
+        auditChange.setDescriptiveName(fieldMetadata.getPropertyDescriptiveName());
+        auditChange.setDescriptive(fieldMetadata.isDescriptiveField());
+        return auditChange;
+    }
+
+    /**
+     * Traverse will dig into a property and determine to traverse it and build more changes
+     *
+     * @param event
+     * @param fieldMetadata
+     * @param newInstance
+     * @param oldInstance
+     * @param sink
+     * @param context
+     */
+    private void traverse(AuditEventType event, FieldMetadata fieldMetadata, Object
+            newInstance, Object oldInstance, Consumer<? super AuditChange> sink, DiffContext context) {
+
+        AuditTrace trace = context.getTrace();
+        if (trace != null) {
+            trace.push(fieldMetadata.getFieldName());
+        }
+        try {
+            Object newValue = newInstance != null ? fieldMetadata.getValue(newInstance) : null;
+            Object oldValue = oldInstance != null ? fieldMetadata.getValue(oldInstance) : null;
+            Object referenceObject = newInstance != null ? newInstance : oldInstance;
+            if (Collection.class.isAssignableFrom(fieldMetadata.getFieldType())) {
+                if (newValue == null) {
+                    ((Collection<?>) oldValue).forEach(o -> diffObjects(o, null, sink, context));
+                } else if (oldValue == null) {
+                    ((Collection<?>) newValue).forEach(o -> diffObjects(o, null, sink, context));
+                } else {
+                    // So we have a list, we index both sides once on the match key and then
+                    // pair up the items, anything without a partner has been added or removed
+                    Collection<?> oldValues = (Collection<?>) oldValue;
+                    Collection<?> newValues = (Collection<?>) newValue;
+                    Map<Object, Object> oldIndex = indexCollection(oldValues, fieldMetadata);
+                    Map<Object, Object> newIndex = indexCollection(newValues, fieldMetadata);
+
+                    // Modifications
+                    if (parallelTraversalThreshold > 0 && trace == null && oldValues.size() >= parallelTraversalThreshold) {
+                        diffMatchedInParallel(oldValues, newIndex, fieldMetadata, sink, context);
+                    } else {
+                        for (Object o : oldValues) {
+                            Object key = matchKey(o, fieldMetadata);
+                            if (key != NO_MATCH && newIndex.containsKey(key) && !isScalar(o)) {
+                                if (trace != null) {
+                                    trace.push("[" + key + "]");
+                                }
+                                try {
+                                    diffObjects(o, newIndex.get(key), sink, context);
+                                } finally {
+                                    if (trace != null) {
+                                        trace.pop();
+                                    }
+                                }
+                            }
+                        }
+                    }
+
+                    // Removals
+                    for (Object o : oldValues) {
+                        Object key = matchKey(o, fieldMetadata);
+                        if (key == NO_MATCH || !newIndex.containsKey(key)) {
+                            AuditChange auditChange = createAuditChange(AuditEventType.REMOVE, fieldMetadata, referenceObject, context);
+                            auditChange.setRelatedEntity(context.getName(this, o));
+                            auditChange.setOldValue(getItemValue(o, fieldMetadata));
+                            setChangeMessage(fieldMetadata.getObjectMetadata(), auditChange);
+                            sink.accept(auditChange);
+                        }
+                    }
+
+                    // Additions
+                    for (Object o : newValues) {
+                        Object key = matchKey(o, fieldMetadata);
+                        if (key == NO_MATCH || !oldIndex.containsKey(key)) {
+                            AuditChange auditChange = createAuditChange(AuditEventType.ADD, fieldMetadata, referenceObject, context);
+                            auditChange.setRelatedEntity(context.getName(this, o));
+                            auditChange.setNewValue(getItemValue(o, fieldMetadata));
+                            setChangeMessage(fieldMetadata.getObjectMetadata(), auditChange);
+                            sink.accept(auditChange);
+                        }
+                    }
+                }
+            } else if (oldValue != null || newValue != null) {
+                diffObjects(oldValue, newValue, sink, context);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to get property to traverse " + fieldMetadata.getFieldName());
+            throw new RuntimeException("Unable to get the audit value for traversed property " + fieldMetadata.getFieldName(), e);
+        } finally {
+            if (trace != null) {
+                trace.pop();
+            }
+        }
+
+    }
+
+    /**
+     * Diff the matched items of a large collection in slices on the batch executor, each slice builds its
+     * changes with a fork of the context and then we pass them on and join the forks back in slice order. Once a
+     * slice overlaps the ones before it the rest are diffed again in order, so we skip the shared objects just as
+     * we would on one thread.
+     * <p>
+     * The calling thread claims slices as well, and only waits for the slices another thread has started on,
+     * so this can't deadlock when it is called from a task on the same executor
+     */
+    private void diffMatchedInParallel(Collection<?> oldValues, Map<Object, Object> newIndex, FieldMetadata fieldMetadata,
+                                       Consumer<? super AuditChange> sink, DiffContext context) {
+        List<Object[]> matched = new ArrayList<>();
+        for (Object o : oldValues) {
+            Object key = matchKey(o, fieldMetadata);
+            if (key != NO_MATCH && newIndex.containsKey(key) && !isScalar(o)) {
+                matched.add(new Object[]{o, newIndex.get(key)});
+            }
+        }
+
+        int sliceSize = Math.max(1, batchSize);
+        int slices = (matched.size() + sliceSize - 1) / sliceSize;
+        List<List<AuditChange>> changes = new ArrayList<>(Collections.nCopies(slices, null));
+        DiffContext[] forks = new DiffContext[slices];
+        List<CompletableFuture<Void>> done = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            forks[i] = context.fork();
+            done.add(new CompletableFuture<>());
+        }
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int slice;
+            while ((slice = next.getAndIncrement()) < slices) {
+                try {
+                    List<AuditChange> sliceChanges = new ArrayList<>();
+                    for (int i = slice * sliceSize; i < Math.min(matched.size(), (slice + 1) * sliceSize); i++) {
+                        Object[] pair = matched.get(i);
+                        diffObjects(pair[0], pair[1], sliceChanges::add, forks[slice]);
+                    }
+                    changes.set(slice, sliceChanges);
+                    done.get(slice).complete(null);
+                } catch (Throwable t) {
+                    done.get(slice).completeExceptionally(t);
+                }
+            }
+        };
+
+        Executor executor = getBatchExecutorOrDefault();
+        int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 1; i < Math.min(slices, parallelism); i++) {
+                executor.execute(worker);
+            }
+        } catch (RejectedExecutionException e) {
+            log.debug("The batch executor is full, diffing the rest of the slices on the calling thread");
+        }
+        worker.run();
+        join(done);
+
+        for (int i = 0; i < slices; i++) {
+            if (context.overlaps(forks[i])) {
+                for (int j = i * sliceSize; j < matched.size(); j++) {
+                    Object[] pair = matched.get(j);
+                    diffObjects(pair[0], pair[1], sink, context);
+                }
+                return;
+            }
+            context.join(forks[i]);
+            changes.get(i).forEach(sink);
+        }
+    }
+
+    /**
+     * Index the items in a collection on their match key, if there are duplicates we keep the first
+     */
+    private Map<Object, Object> indexCollection(Collection<?> values, FieldMetadata fieldMetadata) {
+        Map<Object, Object> index = fieldMetadata.getMatch() == CollectionMatch.IDENTITY ? new IdentityHashMap<>() : new HashMap<>(values.size() * 2);
+        for (Object o : values) {
+            Object key = matchKey(o, fieldMetadata);
+            if (key != NO_MATCH) {
+                index.putIfAbsent(key, o);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the key we match an item in a collection on
+     *
+     * @return the key or NO_MATCH if the item can't be matched (for example it doesn't have an ID yet)
+     */
+    Object matchKey(Object o, FieldMetadata fieldMetadata) {
+        switch (fieldMetadata.getMatch()) {
+            case ID:
+                Object id = o != null ? ObjectMetadata.of(o).getAffectedId(o) : null;
+                return id != null ? id : NO_MATCH;
+            case KEY:
+                Object key = o != null ? fieldMetadata.getKeyPath().get(o) : null;
+                return key != null ? key : NO_MATCH;
+            default:
+                return o;
+        }
+    }
+
+    // Anything that isn't audited itself (strings, numbers and so on) we just compare as a value
+    boolean isScalar(Object o) {
+        return o == null || !ObjectMetadata.of(o).isTracked();
+    }
+
+    private String getItemValue(Object o, FieldMetadata fieldMetadata) {
+        if (isScalar(o)) {
+            return o == null ? null : String.valueOf(o);
+        } else if (fieldMetadata.getDescriptivePath() == null) {
+            return ObjectMetadata.of(o).getEntityDescriptiveName(o);
+        }
+        return getBeanValue(o, fieldMetadata.getDescriptiveProperty(), fieldMetadata);
+    }
+
+    // The aim of this is to help with the stringification of things
+    private String getBeanValue(Object instance, String name, FieldMetadata fieldMetadata) {
+        return valueTypes.format(getAuditValue(instance, name, fieldMetadata));
+    }
+
+    // The value that we audit, before it is turned into a string
+    Object getAuditValue(Object instance, String name, FieldMetadata fieldMetadata) {
+
+        // Handle a null object
+        if (instance == null)
+            return null;
+
+        try {
+            Object value = null;
+            if (fieldMetadata.getDescriptivePath() == null) {
+                value = readProperty(instance, name, fieldMetadata);
+            } else if ("".equals(name)) {
+                value = String.valueOf(instance);
+            } else if (fieldMetadata.isTraversable()) {
+                value = fieldMetadata.getDescriptivePath().get(instance);
+            } else {
+                Object propertyBean = readProperty(instance, name, fieldMetadata);
+                if (propertyBean == null) {
+                    value = null;
+                } else {
+                    value = fieldMetadata.getDescriptivePath().get(propertyBean);
+                }
+            }
+
+            return value;
+
+        } catch (Exception e) {
+            log.warn("Unable to get property " + name);
+            throw new RuntimeException("Unable to get the audit value for property " + name, e);
+        }
+    }
+
+    // We will nearly always be reading the field itself, so use its accessor if we can
+    private Object readProperty(Object instance, String name, FieldMetadata fieldMetadata) throws Exception {
+        if (name.equals(fieldMetadata.getFieldName())) {
+            return fieldMetadata.getValue(instance);
+        }
+        return PropertyUtils.getProperty(instance, name);
+    }
+
+    public String getName(Object instance, boolean includeDescriptive, boolean capitalize) {
+        return capitalize ? StringUtils.capitalize(getName(instance, includeDescriptive)) : StringUtils.uncapitalize(getName(instance, includeDescriptive));
+    }
+
+    public String getName(Object instance) {
+        return getName(instance, true);
+    }
+
+    public String getName(Object instance, boolean includeDescriptive) {
+        StringBuilder sb = new StringBuilder();
+        ObjectMetadata om = ObjectMetadata.of(instance);
+        AuditMetadata auditMetadata = om.getClassAnnotation();
+        if (auditMetadata != null && !"".equals(auditMetadata.name())) {
+            sb.append(auditMetadata.name());
+
+            if (includeDescriptive && !"".equals(auditMetadata.descriptiveProperty())) {
+                try {
+                    sb.append(" ");
+                    sb.append(om.getDescriptiveValue(instance));
+                } catch (Exception e) {
+                    log.warn("Unable to get descriptive property [" + auditMetadata.descriptiveProperty() + "] on object " + instance);
+                }
+            }
+        } else {
+            sb.append(instance.getClass().getSimpleName());
+        }
+        return sb.toString();
+    }
+
+    public String buildNewMessage(Object obj) {
+        return messageBuilder.buildNewMessage(this, obj);
+    }
+
+    public String buildDeleteMessage(Object obj) {
+        return messageBuilder.buildDeleteMessage(this, obj);
+    }
+
+    public AuditChange buildChangeForComplexDescriptiveProperty(AuditEventType event, AuditMetadata auditMetadata, AuditChange auditChange, FieldMetadata fieldMetadata, Object instance) {
+        ObjectMetadata om = fieldMetadata.getObjectMetadata();
+        if (om.isComplexDescriptiveProperty()) {
+            StringBuilder descriptiveProp = new StringBuilder();
+            StringBuilder value = new StringBuilder();
+            for (PropertyPath property : om.getDescriptivePaths()) {
+                descriptiveProp.append(property.getPath()).append(", ");
+                try {
+                    value.append(property.get(instance)).append(", ");
+                } catch (Exception e) {
+                    log.warn("Unable to get property " + property.getPath());
+                    throw new RuntimeException("Unable to get the audit value for property " + property.getPath(), e);
+                }
+            }
+            auditChange.setDescriptiveName(descriptiveProp.toString());
+            switch (event) {
+                case ADD:
+                    auditChange.setNewValue(value.toString());
+                    break;
+                case REMOVE:
+                    auditChange.setOldValue(value.toString());
+                    break;
+            }
+        } else {
+            switch (event) {
+                case ADD:
+                    auditChange.setNewValue(getBeanValue(instance, fieldMetadata.getFieldName(), fieldMetadata));
+                    break;
+                case REMOVE:
+                    auditChange.setOldValue(getBeanValue(instance, fieldMetadata.getFieldName(), fieldMetadata));
+                    break;
+            }
+        }
+        return auditChange;
+    }
+}
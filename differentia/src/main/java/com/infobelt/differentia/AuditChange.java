@@ -0,0 +1,70 @@
+package com.infobelt.differentia;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.function.Supplier;
+
+/**
+ * A change to an audited object
+ * <p>
+ * When the audit builder renders messages lazily the message is rendered the first time it is read, and
+ * that includes {@link #equals(Object)}, {@link #hashCode()} and {@link #toString()} as they use the message
+ */
+@Data
+public class AuditChange {
+
+    private String entity;
+
+    private String relatedEntity;
+
+    private String entityDescriptiveName;
+
+    private boolean descriptive = false;
+
+    private AuditEventType eventType;
+
+    private String property;
+
+    private String descriptiveName;
+
+    private String oldValue;
+
+    private String newValue;
+
+    private volatile String message;
+
+    private Object affectedId;
+
+    /**
+     * Renders the message the first time it is read, when the audit builder is rendering messages lazily
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient volatile Supplier<String> messageRenderer;
+
+    // The renderer is only cleared after the message is set, so we read it first. Two threads can both render
+    // the message, but they render the same one
+    public String getMessage() {
+        Supplier<String> renderer = messageRenderer;
+        String rendered = message;
+        if (rendered == null && renderer != null) {
+            rendered = renderer.get();
+            message = rendered;
+            messageRenderer = null;
+        }
+        return rendered;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+        this.messageRenderer = null;
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.infobelt.differentia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.infobelt.differentia.AuditChangeEncoder.FIRST_ENTRY;
+import static com.infobelt.differentia.AuditChangeEncoder.ID_INTEGER;
+import static com.infobelt.differentia.AuditChangeEncoder.ID_LONG;
+import static com.infobelt.differentia.AuditChangeEncoder.ID_NULL;
+import static com.infobelt.differentia.AuditChangeEncoder.ID_STRING;
+import static com.infobelt.differentia.AuditChangeEncoder.NAME_LITERAL;
+import static com.infobelt.differentia.AuditChangeEncoder.NAME_NULL;
+import static com.infobelt.differentia.AuditChangeEncoder.NAME_UNCACHED;
+
+/**
+ * Reads the changes written by an {@link AuditChangeEncoder}, the stream is read through one buffer that is
+ * reused. A decoder isn't thread-safe
+ */
+public class AuditChangeDecoder implements Closeable {
+
+    private static final AuditEventType[] EVENT_TYPES = AuditEventType.values();
+
+    private final InputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+
+    private byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private boolean started;
+
+    /**
+     * The changes left in the frame we are reading
+     */
+    private int remaining;
+
+    public AuditChangeDecoder(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the next change, or null at the end of the stream
+     */
+    public AuditChange read() {
+        if (remaining == 0 && !nextFrame()) {
+            return null;
+        }
+        remaining--;
+        return readChange();
+    }
+
+    /**
+     * @return the rest of the batch we are reading (the whole batch if we are at the start of one), or null at the end of the stream
+     */
+    public List<AuditChange> readBatch() {
+        if (remaining == 0 && !nextFrame()) {
+            return null;
+        }
+        List<AuditChange> changes = new ArrayList<>(remaining);
+        while (remaining > 0) {
+            remaining--;
+            changes.add(readChange());
+        }
+        return changes;
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to close the audit change stream", e);
+        }
+    }
+
+    private boolean nextFrame() {
+        if (!started) {
+            if (!fill(4)) {
+                return false;
+            }
+            int magic = (buffer[position] & 0xFF) << 24 | (buffer[position + 1] & 0xFF) << 16 | (buffer[position + 2] & 0xFF) << 8 | (buffer[position + 3] & 0xFF);
+            if (magic != AuditChangeEncoder.MAGIC) {
+                throw new IllegalStateException("This isn't a stream of audit changes");
+            }
+            position += 4;
+            started = true;
+        }
+        if (!fill(1)) {
+            return false;
+        }
+        remaining = readVarint();
+        return true;
+    }
+
+    private AuditChange readChange() {
+        AuditChange auditChange = new AuditChange();
+        int header = readVarint();
+        int eventType = header >>> 1;
+        auditChange.setEventType(eventType > 0 ? EVENT_TYPES[eventType - 1] : null);
+        auditChange.setDescriptive((header & 1) != 0);
+        auditChange.setAffectedId(readId());
+        auditChange.setEntity(readName());
+        auditChange.setRelatedEntity(readName());
+        auditChange.setProperty(readName());
+        auditChange.setDescriptiveName(readName());
+        auditChange.setEntityDescriptiveName(readValue());
+        auditChange.setOldValue(readValue());
+        auditChange.setNewValue(readValue());
+        auditChange.setMessage(readValue());
+        return auditChange;
+    }
+
+    private Object readId() {
+        int tag = readVarint();
+        switch (tag) {
+            case ID_NULL:
+                return null;
+            case ID_LONG:
+                return unZigZag(readVarlong());
+            case ID_INTEGER:
+                return (int) unZigZag(readVarlong());
+            case ID_STRING:
+                return readValue();
+            default:
+                throw new IllegalStateException("Unknown affected id type " + tag + " in the audit change stream");
+        }
+    }
+
+    private String readName() {
+        int code = readVarint();
+        switch (code) {
+            case NAME_NULL:
+                return null;
+            case NAME_LITERAL:
+                String name = readValue();
+                dictionary.add(name);
+                return name;
+            case NAME_UNCACHED:
+                return readValue();
+            default:
+                if (code - FIRST_ENTRY >= dictionary.size()) {
+                    throw new IllegalStateException("Unknown name " + code + " in the audit change stream");
+                }
+                return dictionary.get(code - FIRST_ENTRY);
+        }
+    }
+
+    private String readValue() {
+        int length = readVarint() - 1;
+        if (length < 0) {
+            return null;
+        }
+        require(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private int readVarint() {
+        return (int) readVarlong();
+    }
+
+    private long readVarlong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in the audit change stream");
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void require(int size) {
+        if (!fill(size)) {
+            throw new IllegalStateException("The audit change stream ended part way through a change");
+        }
+    }
+
+    /**
+     * Make sure there are at least size bytes in the buffer
+     *
+     * @return false if the stream ends first
+     */
+    private boolean fill(int size) {
+        if (limit - position >= size) {
+            return true;
+        }
+        if (size > buffer.length) {
+            byte[] bigger = new byte[Math.max(buffer.length * 2, size)];
+            System.arraycopy(buffer, position, bigger, 0, limit - position);
+            buffer = bigger;
+        } else {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+        }
+        limit -= position;
+        position = 0;
+        try {
+            while (limit < size) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    return false;
+                }
+                limit += read;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read the audit changes", e);
+        }
+        return true;
+    }
+}
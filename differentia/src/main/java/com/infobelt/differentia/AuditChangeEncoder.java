@@ -0,0 +1,230 @@
+package com.infobelt.differentia;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes changes to a stream in a compact binary form, read them back with an {@link AuditChangeDecoder}.
+ * <p>
+ * The names that repeat from change to change (the entity, related entity, property and descriptive name) are
+ * written out the first time they are seen and after that as their index in a dictionary for the stream. The
+ * event type, descriptive flag and integral ids are varints, and the values are length-prefixed UTF-8.
+ * <p>
+ * The stream is written in frames, each is a varint count followed by that many changes, so a batch is read
+ * back as the batch it was written as. Everything is written through one buffer that is reused, call
+ * {@link #flush()} to hand it to the stream. An encoder isn't thread-safe
+ */
+public class AuditChangeEncoder implements Closeable, Flushable {
+
+    public static final int DEFAULT_DICTIONARY_SIZE = 4096;
+
+    static final int MAGIC = 0x44414331;
+
+    // A name is one of these, or the index of an entry in the dictionary plus FIRST_ENTRY
+    static final int NAME_NULL = 0;
+    static final int NAME_LITERAL = 1;
+    static final int NAME_UNCACHED = 2;
+    static final int FIRST_ENTRY = 3;
+
+    static final int ID_NULL = 0;
+    static final int ID_LONG = 1;
+    static final int ID_INTEGER = 2;
+    static final int ID_STRING = 3;
+
+    private final OutputStream out;
+    private final int dictionarySize;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    private byte[] buffer = new byte[8192];
+    private int position;
+
+    public AuditChangeEncoder(OutputStream out) {
+        this(out, DEFAULT_DICTIONARY_SIZE);
+    }
+
+    /**
+     * @param out            the stream
+     * @param dictionarySize the most names we keep in the dictionary, after that new names are written out each time
+     */
+    public AuditChangeEncoder(OutputStream out, int dictionarySize) {
+        this.out = out;
+        this.dictionarySize = dictionarySize;
+        ensure(4);
+        buffer[position++] = (byte) (MAGIC >>> 24);
+        buffer[position++] = (byte) (MAGIC >>> 16);
+        buffer[position++] = (byte) (MAGIC >>> 8);
+        buffer[position++] = (byte) MAGIC;
+    }
+
+    /**
+     * Write a change as a frame of its own
+     */
+    public void write(AuditChange auditChange) {
+        writeVarint(1);
+        writeChange(auditChange);
+        flushIfFull();
+    }
+
+    /**
+     * Write a batch of changes as one frame, an empty batch isn't written
+     */
+    public void write(List<AuditChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        writeVarint(changes.size());
+        for (AuditChange auditChange : changes) {
+            writeChange(auditChange);
+            flushIfFull();
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write the audit changes", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to close the audit change stream", e);
+            }
+        }
+    }
+
+    private void writeChange(AuditChange auditChange) {
+        AuditEventType eventType = auditChange.getEventType();
+        writeVarint((eventType != null ? eventType.ordinal() + 1 : 0) << 1 | (auditChange.isDescriptive() ? 1 : 0));
+        writeId(auditChange.getAffectedId());
+        writeName(auditChange.getEntity());
+        writeName(auditChange.getRelatedEntity());
+        writeName(auditChange.getProperty());
+        writeName(auditChange.getDescriptiveName());
+        writeValue(auditChange.getEntityDescriptiveName());
+        writeValue(auditChange.getOldValue());
+        writeValue(auditChange.getNewValue());
+        writeValue(auditChange.getMessage());
+    }
+
+    private void writeId(Object id) {
+        if (id == null) {
+            writeVarint(ID_NULL);
+        } else if (id instanceof Long) {
+            writeVarint(ID_LONG);
+            writeVarlong(zigZag((Long) id));
+        } else if (id instanceof Integer) {
+            writeVarint(ID_INTEGER);
+            writeVarlong(zigZag((Integer) id));
+        } else {
+            writeVarint(ID_STRING);
+            writeValue(String.valueOf(id));
+        }
+    }
+
+    private void writeName(String name) {
+        if (name == null) {
+            writeVarint(NAME_NULL);
+            return;
+        }
+        Integer entry = dictionary.get(name);
+        if (entry != null) {
+            writeVarint(entry + FIRST_ENTRY);
+        } else if (dictionary.size() < dictionarySize) {
+            dictionary.put(name, dictionary.size());
+            writeVarint(NAME_LITERAL);
+            writeString(name);
+        } else {
+            writeVarint(NAME_UNCACHED);
+            writeString(name);
+        }
+    }
+
+    // The length plus one, so that 0 is a null
+    private void writeValue(String value) {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        writeString(value);
+    }
+
+    private void writeString(String value) {
+        if (isAscii(value)) {
+            int length = value.length();
+            writeVarint(length + 1);
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                buffer[position++] = (byte) value.charAt(i);
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeVarint(int value) {
+        writeVarlong(value & 0xFFFFFFFFL);
+    }
+
+    private void writeVarlong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensure(int size) {
+        if (position + size > buffer.length) {
+            byte[] bigger = new byte[Math.max(buffer.length * 2, position + size)];
+            System.arraycopy(buffer, 0, bigger, 0, position);
+            buffer = bigger;
+        }
+    }
+
+    // Keep the buffer from growing past its size with lots of small changes
+    private void flushIfFull() {
+        if (position >= 8192) {
+            try {
+                out.write(buffer, 0, position);
+                position = 0;
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write the audit changes", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.infobelt.differentia;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The records in the audit log segments, each change is a record of [int length][int crc][payload].
+ * <p>
+ * A record that is cut short or doesn't match its crc is where a write was torn (for example the process
+ * was killed part way through a group commit), so the reader stops at it
+ */
+final class AuditLogFormat {
+
+    static final int HEADER = 8;
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte STRING = 3;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    /**
+     * Encode a batch of changes as records
+     *
+     * @return a buffer of the records, from 0 to its limit, this is reused by the next call
+     */
+    ByteBuffer encode(List<AuditChange> changes) {
+        buffer.clear();
+        for (AuditChange auditChange : changes) {
+            int start = buffer.position();
+            ensure(HEADER);
+            buffer.position(start + HEADER);
+            writeChange(auditChange);
+
+            int end = buffer.position();
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(start + HEADER);
+            payload.limit(end);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            buffer.putInt(start, end - start - HEADER);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writeChange(AuditChange auditChange) {
+        ensure(2);
+        buffer.put((byte) (auditChange.getEventType() != null ? auditChange.getEventType().ordinal() : -1));
+        buffer.put((byte) (auditChange.isDescriptive() ? 1 : 0));
+        writeId(auditChange.getAffectedId());
+        writeString(auditChange.getEntity());
+        writeString(auditChange.getRelatedEntity());
+        writeString(auditChange.getEntityDescriptiveName());
+        writeString(auditChange.getProperty());
+        writeString(auditChange.getDescriptiveName());
+        writeString(auditChange.getOldValue());
+        writeString(auditChange.getNewValue());
+        writeString(auditChange.getMessage());
+    }
+
+    private void writeId(Object id) {
+        ensure(9);
+        if (id == null) {
+            buffer.put(NULL);
+        } else if (id instanceof Long) {
+            buffer.put(LONG);
+            buffer.putLong((Long) id);
+        } else if (id instanceof Integer) {
+            buffer.put(INTEGER);
+            buffer.putInt((Integer) id);
+        } else {
+            buffer.put(STRING);
+            writeString(String.valueOf(id));
+        }
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            ensure(4);
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void ensure(int size) {
+        if (buffer.remaining() < size) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    /**
+     * @param bytes  the segment
+     * @param offset the offset of a record
+     * @return the payload of the record, or null if there isn't a whole record at the offset
+     */
+    static ByteBuffer readPayload(ByteBuffer bytes, int offset) {
+        if (offset + HEADER > bytes.limit()) {
+            return null;
+        }
+        int length = bytes.getInt(offset);
+        if (length <= 0 || offset + HEADER + length > bytes.limit()) {
+            return null;
+        }
+        ByteBuffer payload = bytes.duplicate();
+        payload.position(offset + HEADER);
+        payload.limit(offset + HEADER + length);
+        payload = payload.slice();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue() == bytes.getInt(offset + 4) ? payload : null;
+    }
+
+    /**
+     * Read a change from the payload of a record
+     */
+    static AuditChange decode(ByteBuffer payload) {
+        ByteBuffer in = payload.duplicate();
+        AuditChange auditChange = new AuditChange();
+        byte eventType = in.get();
+        auditChange.setEventType(eventType >= 0 ? AuditEventType.values()[eventType] : null);
+        auditChange.setDescriptive(in.get() != 0);
+        auditChange.setAffectedId(readId(in));
+        auditChange.setEntity(readString(in));
+        auditChange.setRelatedEntity(readString(in));
+        auditChange.setEntityDescriptiveName(readString(in));
+        auditChange.setProperty(readString(in));
+        auditChange.setDescriptiveName(readString(in));
+        auditChange.setOldValue(readString(in));
+        auditChange.setNewValue(readString(in));
+        auditChange.setMessage(readString(in));
+        return auditChange;
+    }
+
+    private static Object readId(ByteBuffer in) {
+        switch (in.get()) {
+            case LONG:
+                return in.getLong();
+            case INTEGER:
+                return in.getInt();
+            case STRING:
+                return readString(in);
+            default:
+                return null;
+        }
+    }
+
+    // Decoded straight from the buffer, so from the mapped segment when reading the log
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer bytes = in.duplicate();
+        bytes.limit(in.position() + length);
+        in.position(in.position() + length);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+}
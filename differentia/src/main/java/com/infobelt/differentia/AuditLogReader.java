@@ -0,0 +1,132 @@
+package com.infobelt.differentia;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Reads the changes back from an audit log written by an {@link AuditLogSink}, in the order they were written.
+ * <p>
+ * Each segment is memory-mapped and the records are read in place, {@link #forEachRecord(Consumer)} hands out
+ * the payload of each record as a slice of the mapped segment without copying it. A segment that ends with a
+ * torn record (from a crash part way through a write) is read up to it
+ */
+@Slf4j
+public class AuditLogReader implements Iterable<AuditChange> {
+
+    @Getter
+    private final Path directory;
+
+    public AuditLogReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the segment files in the order they were written
+     */
+    public List<Path> getSegments() {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, AuditLogSink.SEGMENT_PREFIX + "*" + AuditLogSink.SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                if (AuditLogSink.segmentNumber(file) >= 0) {
+                    segments.add(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to list the audit log segments in " + directory, e);
+        }
+        segments.sort(Comparator.comparingInt(AuditLogSink::segmentNumber));
+        return segments;
+    }
+
+    /**
+     * Pass the payload of each record to the action, the buffer is a read-only slice of the mapped segment
+     * and is only good until the segment is unmapped (when it is garbage collected), so don't keep it
+     *
+     * @param action receives each record
+     */
+    public void forEachRecord(Consumer<ByteBuffer> action) {
+        for (Path segment : getSegments()) {
+            ByteBuffer bytes = map(segment);
+            int offset = 0;
+            ByteBuffer payload;
+            while ((payload = AuditLogFormat.readPayload(bytes, offset)) != null) {
+                action.accept(payload);
+                offset += AuditLogFormat.HEADER + payload.limit();
+            }
+            warnIfTorn(segment, bytes, offset);
+        }
+    }
+
+    @Override
+    public Iterator<AuditChange> iterator() {
+        Iterator<Path> segments = getSegments().iterator();
+        return new Iterator<AuditChange>() {
+
+            private Path segment;
+            private ByteBuffer bytes;
+            private int offset;
+            private ByteBuffer next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (bytes != null) {
+                        next = AuditLogFormat.readPayload(bytes, offset);
+                        if (next != null) {
+                            offset += AuditLogFormat.HEADER + next.limit();
+                            break;
+                        }
+                        warnIfTorn(segment, bytes, offset);
+                        bytes = null;
+                    }
+                    if (!segments.hasNext()) {
+                        return false;
+                    }
+                    segment = segments.next();
+                    bytes = map(segment);
+                    offset = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public AuditChange next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                AuditChange auditChange = AuditLogFormat.decode(next);
+                next = null;
+                return auditChange;
+            }
+        };
+    }
+
+    // The mapping stays valid once the channel is closed
+    private ByteBuffer map(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to map the audit log segment " + segment, e);
+        }
+    }
+
+    private void warnIfTorn(Path segment, ByteBuffer bytes, int offset) {
+        if (offset < bytes.limit()) {
+            log.warn("Ignoring the last " + (bytes.limit() - offset) + " bytes of audit log segment " + segment + ", the record there is incomplete");
+        }
+    }
+}
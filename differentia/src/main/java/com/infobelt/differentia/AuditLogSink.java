@@ -0,0 +1,282 @@
+package com.infobelt.differentia;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes the changes to an append-only log of segment files in a directory, which can be read back with an
+ * {@link AuditLogReader} and shipped or bulk loaded somewhere else.
+ * <p>
+ * The batches written at the same time are committed together, the first writer appends all of the batches
+ * that are waiting in one gathering write (and fsync if the {@link FsyncPolicy} asks for it) while the others
+ * wait for it. A segment is rolled when it reaches {@link #getSegmentSize()} or is older than
+ * {@link #getRollInterval()}, and a new segment is started each time the log is opened.
+ * <p>
+ * If a write fails the log can't be trusted, so every write after it fails too
+ */
+@Slf4j
+public class AuditLogSink implements AuditSink, Closeable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    static final String SEGMENT_PREFIX = "audit-";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * When the log is forced to disk
+     */
+    public enum FsyncPolicy {
+        /**
+         * Only when a segment is rolled or the log is closed, anything else is up to the operating system
+         */
+        NEVER,
+
+        /**
+         * At most once in each {@link #getFsyncInterval()}
+         */
+        INTERVAL,
+
+        /**
+         * With every group commit, when a write returns the changes are on disk
+         */
+        BATCH
+    }
+
+    @Getter
+    private final Path directory;
+
+    /**
+     * The size a segment is rolled at
+     */
+    @Getter
+    @Setter
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * How long (in milliseconds) before a segment is rolled, 0 to only roll on size
+     */
+    @Getter
+    @Setter
+    private long rollInterval = 0;
+
+    @Getter
+    @Setter
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.BATCH;
+
+    /**
+     * How often (in milliseconds) we fsync with the {@link FsyncPolicy#INTERVAL} policy
+     */
+    @Getter
+    @Setter
+    private long fsyncInterval = 1000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition committedCondition = lock.newCondition();
+    private final AuditLogFormat format = new AuditLogFormat();
+
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long enqueued;
+    private long committed;
+    private boolean committing;
+    private boolean closed;
+    private IOException failure;
+
+    private int nextSegment;
+    private FileChannel channel;
+    private Path segmentFile;
+    private long segmentPosition;
+    private long segmentOpened;
+    private long lastFsync;
+
+    public AuditLogSink(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : stream) {
+                    nextSegment = Math.max(nextSegment, segmentNumber(file) + 1);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open the audit log in " + directory, e);
+        }
+    }
+
+    /**
+     * Append the changes to the log, this returns once they have been written (and forced to disk if the
+     * fsync policy is {@link FsyncPolicy#BATCH})
+     *
+     * @param changes the changes
+     */
+    @Override
+    public void write(List<AuditChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        // Encode outside the commit lock, so this overlaps with the leader's write
+        ByteBuffer records;
+        synchronized (format) {
+            ByteBuffer encoded = format.encode(changes);
+            records = ByteBuffer.allocate(encoded.limit());
+            records.put(encoded);
+            records.flip();
+        }
+
+        lock.lock();
+        try {
+            checkWritable();
+            pending.add(records);
+            long ticket = ++enqueued;
+            while (committed < ticket) {
+                if (committing) {
+                    committedCondition.awaitUninterruptibly();
+                    checkWritable();
+                    continue;
+                }
+
+                // We lead this group, anything that arrives while we are writing waits for the next one
+                committing = true;
+                List<ByteBuffer> group = pending;
+                pending = new ArrayList<>();
+                long upTo = enqueued;
+                lock.unlock();
+                try {
+                    append(group);
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    lock.lock();
+                    committing = false;
+                    committed = upTo;
+                    committedCondition.signalAll();
+                }
+                checkWritable();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Force anything written to disk
+     */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            checkWritable();
+            if (channel != null) {
+                channel.force(false);
+                lastFsync = System.currentTimeMillis();
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw new RuntimeException("Unable to force the audit log segment " + segmentFile + " to disk", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            while (committing) {
+                committedCondition.awaitUninterruptibly();
+            }
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeSegment();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to close the audit log segment " + segmentFile, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException("The audit log in " + directory + " has been closed");
+        }
+        if (failure != null) {
+            throw new RuntimeException("Unable to write to the audit log in " + directory, failure);
+        }
+    }
+
+    // Only the leader of a group gets here, so the segment is ours
+    private void append(List<ByteBuffer> group) throws IOException {
+        long size = 0;
+        for (ByteBuffer records : group) {
+            size += records.remaining();
+        }
+
+        long now = System.currentTimeMillis();
+        if (channel != null && segmentPosition > 0 && (segmentPosition + size > segmentSize || (rollInterval > 0 && now - segmentOpened >= rollInterval))) {
+            closeSegment();
+        }
+        if (channel == null) {
+            openSegment(now);
+        }
+
+        ByteBuffer[] buffers = group.toArray(new ByteBuffer[0]);
+        long written = 0;
+        while (written < size) {
+            written += channel.write(buffers);
+        }
+        segmentPosition += size;
+
+        if (fsyncPolicy == FsyncPolicy.BATCH || (fsyncPolicy == FsyncPolicy.INTERVAL && now - lastFsync >= fsyncInterval)) {
+            channel.force(false);
+            lastFsync = now;
+        }
+    }
+
+    private void openSegment(long now) throws IOException {
+        segmentFile = directory.resolve(segmentName(nextSegment++));
+        channel = FileChannel.open(segmentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentPosition = 0;
+        segmentOpened = now;
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    static String segmentName(int segment) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX);
+    }
+
+    static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
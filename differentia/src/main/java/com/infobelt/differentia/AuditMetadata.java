@@ -100,6 +100,57 @@ public @interface AuditMetadata {
      */
     String mappedBy() default "";
 
+    /**
+     * How the items in a traversed collection are matched up between the old and new collection, any
+     * items that don't match are treated as added or removed
+     *
+     * @return EQUALS by default
+     */
+    CollectionMatch match() default CollectionMatch.EQUALS;
+
+    /**
+     * The property of the items in a traversed collection to match on when match is KEY
+     *
+     * @return the property name
+     */
+    String key() default "";
+
+    /**
+     * The template for the message when something is added, on a class this is used for all the changes
+     * to the class and on a property it is only used for that property (see {@link MessageTemplate})
+     *
+     * @return the template, or empty to use the message builder's default
+     */
+    String addTemplate() default "";
+
+    /**
+     * The template for the message when something is removed
+     *
+     * @return the template, or empty to use the message builder's default
+     */
+    String removeTemplate() default "";
+
+    /**
+     * The template for the message when something is changed
+     *
+     * @return the template, or empty to use the message builder's default
+     */
+    String changeTemplate() default "";
+
+    /**
+     * The template for the message when something is associated
+     *
+     * @return the template, or empty to use the message builder's default
+     */
+    String associateTemplate() default "";
+
+    /**
+     * The template for the message when something is disassociated
+     *
+     * @return the template, or empty to use the message builder's default
+     */
+    String disassociateTemplate() default "";
+
     /**
      * The property that is the ID for the object
      *
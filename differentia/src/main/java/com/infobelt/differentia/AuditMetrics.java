@@ -0,0 +1,44 @@
+package com.infobelt.differentia;
+
+/**
+ * Hooks for measuring where the time in the audit builder goes, set one with
+ * {@link AuditBuilder#setMetrics(AuditMetrics)}. The methods are called from the threads building the
+ * changes, so they need to be thread-safe and cheap, see {@link InMemoryAuditMetrics}
+ */
+public interface AuditMetrics {
+
+    /**
+     * Doesn't measure anything, this is the default
+     */
+    AuditMetrics NONE = new AuditMetrics() {
+    };
+
+    /**
+     * We have finished diffing a pair of objects
+     *
+     * @param om            the plan of the objects
+     * @param nanos         how long it took, including anything we traversed into
+     * @param fieldsVisited the number of fields we looked at
+     * @param depth         how deep the pair is in the diff, the objects passed to the builder are 1
+     */
+    default void objectDiffed(ObjectMetadata om, long nanos, int fieldsVisited, int depth) {
+    }
+
+    /**
+     * A change has been built
+     *
+     * @param auditChange the change
+     */
+    default void changeEmitted(AuditChange auditChange) {
+    }
+
+    /**
+     * The message builder has rendered the message for a change
+     *
+     * @param auditChange the change
+     * @param nanos       how long it took
+     * @param length      the length of the message
+     */
+    default void messageRendered(AuditChange auditChange, long nanos, int length) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.infobelt.differentia;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The old and new instance of an object to build the changes for in a batch
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class AuditPair {
+
+    private final Object oldInstance;
+
+    private final Object newInstance;
+
+    /**
+     * The fingerprint of the old instance when it was stored (see {@link AuditBuilder#fingerprint(Object)}), or null
+     * if we don't have one
+     */
+    private final Long oldFingerprint;
+
+    private AuditPair(Object oldInstance, Object newInstance, Long oldFingerprint) {
+        this.oldInstance = oldInstance;
+        this.newInstance = newInstance;
+        this.oldFingerprint = oldFingerprint;
+    }
+
+    /**
+     * @param oldInstance The old instance (or null if it is new)
+     * @param newInstance The new instance (or null if it has been deleted)
+     * @return the pair
+     */
+    public static AuditPair of(Object oldInstance, Object newInstance) {
+        return new AuditPair(oldInstance, newInstance, null);
+    }
+
+    /**
+     * A pair where we have the fingerprint of the old instance, if the new instance has the same fingerprint
+     * the pair is skipped without looking at the old instance
+     *
+     * @param oldInstance    The old instance
+     * @param newInstance    The new instance
+     * @param oldFingerprint The fingerprint of the old instance
+     * @return the pair
+     */
+    public static AuditPair of(Object oldInstance, Object newInstance, long oldFingerprint) {
+        return new AuditPair(oldInstance, newInstance, oldFingerprint);
+    }
+}
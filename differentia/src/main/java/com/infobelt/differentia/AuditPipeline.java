@@ -0,0 +1,458 @@
+package com.infobelt.differentia;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Builds the changes off the calling thread. Pairs of snapshots are handed to {@link #submit(Snapshot, Snapshot)},
+ * which returns as soon as the pair is in the buffer of a worker, and the workers build the changes and write
+ * them to the {@link AuditSink} in batches.
+ * <p>
+ * Each worker has its own bounded buffer, and the pairs are spread across the workers on their affected id, so
+ * the changes to an entity are built (and written) in the order they were submitted. When a worker's buffer is
+ * full the {@link Backpressure} decides what happens to the pair.
+ * <p>
+ * Set the options and then {@link #start()} the pipeline, closing it builds everything that has been submitted
+ * before the workers stop
+ */
+@Slf4j
+public class AuditPipeline implements Closeable {
+
+    /**
+     * What to do with a pair when the buffer of its worker is full
+     */
+    public enum Backpressure {
+        /**
+         * Wait until there is room
+         */
+        BLOCK,
+
+        /**
+         * Drop the pair, see {@link #getDropped()}
+         */
+        DROP,
+
+        /**
+         * Write the pair to a spill file, the worker reads it back once it has caught up
+         */
+        SPILL
+    }
+
+    private static final Entry POISON = new Entry(null, null);
+
+    private final AuditBuilder auditBuilder;
+
+    private final AuditSink sink;
+
+    /**
+     * The number of worker threads
+     */
+    @Getter
+    @Setter
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of pairs each worker can have waiting
+     */
+    @Getter
+    @Setter
+    private int capacity = 1024;
+
+    /**
+     * The most pairs a worker builds before it writes the changes to the sink
+     */
+    @Getter
+    @Setter
+    private int batchSize = 128;
+
+    @Getter
+    @Setter
+    private Backpressure backpressure = Backpressure.BLOCK;
+
+    /**
+     * Where the spill files are kept (the default temp directory if this isn't set)
+     */
+    @Getter
+    @Setter
+    private Path spillDirectory;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile Stripe[] stripes;
+    private Thread[] threads;
+    private volatile boolean closed;
+
+    /**
+     * Pairs are submitted under the read lock and we close under the write lock, so once we are closed
+     * nothing can be added behind the poison
+     */
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+    /**
+     * @param auditBuilder the audit builder used to build the changes
+     * @param sink         receives the changes, this is called from the workers so needs to be thread-safe
+     */
+    public AuditPipeline(AuditBuilder auditBuilder, AuditSink sink) {
+        this.auditBuilder = auditBuilder;
+        this.sink = sink;
+    }
+
+    /**
+     * Start the workers
+     *
+     * @return the pipeline
+     */
+    public synchronized AuditPipeline start() {
+        if (stripes != null || closed) {
+            throw new IllegalStateException("The audit pipeline has already been started");
+        }
+        if (workers < 1 || capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("The audit pipeline needs at least one worker, with a capacity and batch size of at least one");
+        }
+        Stripe[] newStripes = new Stripe[workers];
+        threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            Stripe stripe = new Stripe();
+            newStripes[i] = stripe;
+            threads[i] = new Thread(() -> work(stripe), "differentia-audit-" + i);
+            threads[i].setDaemon(true);
+        }
+        stripes = newStripes;
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        return this;
+    }
+
+    /**
+     * Hand a pair to the workers. The snapshots need to be captured (see {@link AuditBuilder#snapshot(Object)}) rather
+     * than live, as the objects will have moved on by the time the changes are built
+     *
+     * @param oldSnapshot the entity before (or null if it is new)
+     * @param newSnapshot the entity after (or null if it has been deleted)
+     * @return false if the pair was dropped
+     */
+    public boolean submit(Snapshot oldSnapshot, Snapshot newSnapshot) {
+        if (oldSnapshot == null && newSnapshot == null) {
+            throw new IllegalArgumentException("At least one of the snapshots is needed to build the changes");
+        }
+        closing.readLock().lock();
+        try {
+            Stripe[] current = stripes;
+            if (current == null || closed) {
+                throw new IllegalStateException("The audit pipeline isn't running");
+            }
+            submitted.increment();
+            Object affectedId = (newSnapshot != null ? newSnapshot : oldSnapshot).getAffectedId();
+            return current[stripe(affectedId, current.length)].offer(new Entry(oldSnapshot, newSnapshot));
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of pairs submitted
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return the number of pairs dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of pairs written to a spill file because the buffer was full
+     */
+    public long getSpilled() {
+        return spilled.sum();
+    }
+
+    /**
+     * @return the number of pairs we couldn't build the changes for or write to the sink
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Stop taking pairs, and wait for the workers to build and write the ones they have. A submit that is
+     * waiting for room (with {@link Backpressure#BLOCK}) finishes before we stop taking pairs
+     */
+    @Override
+    public void close() {
+        Stripe[] current;
+        closing.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                current = stripes;
+            }
+        } finally {
+            closing.writeLock().unlock();
+        }
+        if (current == null) {
+            return;
+        }
+
+        try {
+            for (Stripe stripe : current) {
+                stripe.queue.put(POISON);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the audit workers to finish", e);
+        } finally {
+            for (Stripe stripe : current) {
+                stripe.closeSpill();
+            }
+        }
+        sink.flush();
+    }
+
+    private static int stripe(Object affectedId, int stripes) {
+        int hash = affectedId != null ? affectedId.hashCode() : 0;
+        return Math.floorMod(hash ^ (hash >>> 16), stripes);
+    }
+
+    private void work(Stripe stripe) {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        boolean draining = false;
+        while (true) {
+            Entry entry;
+            try {
+                entry = stripe.next(batch.isEmpty() && !draining);
+            } catch (InterruptedException e) {
+                draining = true;
+                continue;
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.error("Unable to take the next audit pair", e);
+                continue;
+            }
+
+            if (entry == POISON) {
+                draining = true;
+                continue;
+            }
+            if (entry != null) {
+                batch.add(entry);
+                if (batch.size() < batchSize) {
+                    continue;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                process(batch);
+                batch.clear();
+            } else if (draining) {
+                return;
+            }
+        }
+    }
+
+    private void process(List<Entry> batch) {
+        List<AuditChange> changes = new ArrayList<>();
+        for (Entry entry : batch) {
+            int mark = changes.size();
+            try {
+                auditBuilder.buildReconciledChanges(entry.oldSnapshot, entry.newSnapshot, changes::add);
+            } catch (RuntimeException e) {
+                changes.subList(mark, changes.size()).clear();
+                failed.increment();
+                Snapshot snapshot = entry.newSnapshot != null ? entry.newSnapshot : entry.oldSnapshot;
+                log.error("Unable to build the audit changes for " + snapshot.getPlan().getEntityName() + " " + snapshot.getAffectedId(), e);
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            sink.write(changes);
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            log.error("Unable to write a batch of " + changes.size() + " audit changes", e);
+        }
+    }
+
+    private static final class Entry {
+        private final Snapshot oldSnapshot;
+        private final Snapshot newSnapshot;
+
+        private Entry(Snapshot oldSnapshot, Snapshot newSnapshot) {
+            this.oldSnapshot = oldSnapshot;
+            this.newSnapshot = newSnapshot;
+        }
+    }
+
+    /**
+     * The buffer of a worker, with its spill file.
+     * <p>
+     * Once anything has been spilled every pair for the worker is spilled until it has read them all back,
+     * so the pairs in the buffer are always older than the ones in the spill file
+     */
+    private final class Stripe {
+
+        private final ArrayBlockingQueue<Entry> queue = new ArrayBlockingQueue<>(capacity);
+        private final Backpressure policy = backpressure;
+        private final SnapshotCodec codec = new SnapshotCodec();
+        private final MappedSnapshot.Plans plans = new MappedSnapshot.Plans();
+
+        private Path spillFile;
+        private RandomAccessFile spill;
+        private long writePosition;
+        private long readPosition;
+        private int spillCount;
+
+        private boolean offer(Entry entry) {
+            switch (policy) {
+                case DROP:
+                    if (!queue.offer(entry)) {
+                        dropped.increment();
+                        return false;
+                    }
+                    return true;
+                case SPILL:
+                    synchronized (this) {
+                        if (spillCount == 0 && queue.offer(entry)) {
+                            return true;
+                        }
+                        spill(entry);
+                        spilled.increment();
+                        return true;
+                    }
+                default:
+                    try {
+                        queue.put(entry);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for room in the audit pipeline", e);
+                    }
+                    return true;
+            }
+        }
+
+        /**
+         * The next pair for the worker, from the buffer and then the spill file
+         *
+         * @param wait should we wait for one if there isn't one
+         * @return the pair, or null if there isn't one and we didn't wait
+         */
+        private Entry next(boolean wait) throws InterruptedException {
+            Entry entry = queue.poll();
+            if (entry != null) {
+                return entry;
+            }
+            if (policy == Backpressure.SPILL) {
+                synchronized (this) {
+                    if (spillCount > 0) {
+                        return unspill();
+                    }
+                }
+            }
+            return wait ? queue.take() : null;
+        }
+
+        private void spill(Entry entry) {
+            try {
+                if (spill == null) {
+                    spillFile = spillDirectory != null ? Files.createTempFile(spillDirectory, "differentia-spill", ".tmp") : Files.createTempFile("differentia-spill", ".tmp");
+                    spill = new RandomAccessFile(spillFile.toFile(), "rw");
+                }
+                byte[] oldRecord = encode(entry.oldSnapshot);
+                byte[] newRecord = encode(entry.newSnapshot);
+                ByteBuffer buffer = ByteBuffer.allocate(8 + (oldRecord != null ? oldRecord.length : 0) + (newRecord != null ? newRecord.length : 0));
+                putRecord(buffer, oldRecord);
+                putRecord(buffer, newRecord);
+                spill.seek(writePosition);
+                spill.write(buffer.array());
+                writePosition += buffer.capacity();
+                spillCount++;
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to spill an audit pair to " + spillFile, e);
+            }
+        }
+
+        private Entry unspill() {
+            try {
+                spill.seek(readPosition);
+                Snapshot oldSnapshot = readRecord();
+                Snapshot newSnapshot = readRecord();
+                readPosition = spill.getFilePointer();
+                if (--spillCount == 0) {
+                    writePosition = 0;
+                    readPosition = 0;
+                    spill.setLength(0);
+                }
+                return new Entry(oldSnapshot, newSnapshot);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read an audit pair back from " + spillFile, e);
+            }
+        }
+
+        private byte[] encode(Snapshot snapshot) {
+            if (snapshot == null) {
+                return null;
+            }
+            ByteBuffer record = codec.encode(snapshot);
+            byte[] bytes = new byte[record.limit()];
+            System.arraycopy(record.array(), record.arrayOffset(), bytes, 0, bytes.length);
+            return bytes;
+        }
+
+        private void putRecord(ByteBuffer buffer, byte[] record) {
+            buffer.putInt(record != null ? record.length : -1);
+            if (record != null) {
+                buffer.put(record);
+            }
+        }
+
+        private Snapshot readRecord() throws IOException {
+            int length = spill.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            spill.readFully(record);
+            return MappedSnapshot.read(ByteBuffer.wrap(record), plans);
+        }
+
+        private synchronized void closeSpill() {
+            if (spill == null) {
+                return;
+            }
+            try {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("Unable to remove the audit spill file " + spillFile, e);
+            }
+        }
+    }
+}
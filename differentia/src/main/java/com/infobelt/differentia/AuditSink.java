@@ -0,0 +1,24 @@
+package com.infobelt.differentia;
+
+import java.util.List;
+
+/**
+ * Where an {@link AuditPipeline} sends the changes it builds, a batch at a time.
+ * <p>
+ * The workers of the pipeline call the sink at the same time, so it needs to be thread-safe. The changes
+ * to an entity are always built by the same worker, so they arrive in the order they were submitted
+ */
+@FunctionalInterface
+public interface AuditSink {
+
+    /**
+     * @param changes the changes built for a batch of pairs, in the order the pairs were taken by the worker
+     */
+    void write(List<AuditChange> changes);
+
+    /**
+     * Called once the pipeline has been closed and the last batch written
+     */
+    default void flush() {
+    }
+}
@@ -0,0 +1,179 @@
+package com.infobelt.differentia;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An explanation of a diff (see {@link AuditBuilder#explain(Object, Object)}), which objects and fields were
+ * looked at, the path we took to get to them and how long each of them took.
+ * <p>
+ * The paths are the properties from the object we started with, an item we matched in a collection has
+ * its match key in brackets, for example {@code holders[42].name}
+ */
+@Getter
+public class AuditTrace {
+
+    /**
+     * The changes that were built
+     */
+    private final List<AuditChange> changes = new ArrayList<>();
+
+    /**
+     * The object we started with, or null if there was nothing to diff
+     */
+    private ObjectTrace root;
+
+    /**
+     * How long the whole diff took
+     */
+    private long nanos;
+
+    @Getter(AccessLevel.NONE)
+    private final Deque<ObjectTrace> objects = new ArrayDeque<>();
+
+    @Getter(AccessLevel.NONE)
+    private final Deque<String> paths = new ArrayDeque<>();
+
+    AuditTrace() {
+        paths.push("");
+    }
+
+    void enterObject(String entity) {
+        ObjectTrace object = new ObjectTrace(paths.peek(), entity);
+        if (objects.isEmpty()) {
+            if (root == null) {
+                root = object;
+            }
+        } else {
+            objects.peek().children.add(object);
+        }
+        objects.push(object);
+    }
+
+    void exitObject(long nanos) {
+        objects.pop().nanos = nanos;
+    }
+
+    /**
+     * Go down into a property, or an item if the segment starts with a bracket
+     */
+    void push(String segment) {
+        String path = paths.peek();
+        paths.push(path.isEmpty() || segment.startsWith("[") ? path + segment : path + "." + segment);
+    }
+
+    void pop() {
+        paths.pop();
+    }
+
+    /**
+     * @return the path we are at, and if we are in the middle of an object
+     */
+    String getPath() {
+        return paths.peek() + (objects.isEmpty() ? "" : " in " + objects.peek().getEntity());
+    }
+
+    void field(FieldMetadata fieldMetadata, long nanos, int changes) {
+        String path = paths.peek();
+        String property = fieldMetadata.getFieldName();
+        objects.peek().fields.add(new FieldTrace(path.isEmpty() ? property : path + "." + property, property, nanos, changes, fieldMetadata.isTraversable()));
+    }
+
+    void addChange(AuditChange auditChange) {
+        changes.add(auditChange);
+    }
+
+    int getChangeCount() {
+        return changes.size();
+    }
+
+    void setNanos(long nanos) {
+        this.nanos = nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(changes.size()).append(" changes in ").append(nanos).append("ns\n");
+        if (root != null) {
+            root.append(sb, "");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A pair of objects that we diffed
+     */
+    @Getter
+    public static final class ObjectTrace {
+
+        private final String path;
+        private final String entity;
+        private long nanos;
+
+        /**
+         * The fields we visited, in the order we visited them
+         */
+        private final List<FieldTrace> fields = new ArrayList<>();
+
+        /**
+         * The objects we traversed into
+         */
+        private final List<ObjectTrace> children = new ArrayList<>();
+
+        private ObjectTrace(String path, String entity) {
+            this.path = path;
+            this.entity = entity;
+        }
+
+        private void append(StringBuilder sb, String indent) {
+            sb.append(indent).append(entity);
+            if (!path.isEmpty()) {
+                sb.append(" at ").append(path);
+            }
+            sb.append(" ").append(nanos).append("ns\n");
+            for (FieldTrace field : fields) {
+                sb.append(indent).append("  ").append(field).append("\n");
+            }
+            for (ObjectTrace child : children) {
+                child.append(sb, indent + "    ");
+            }
+        }
+    }
+
+    /**
+     * A field that we visited
+     */
+    @Getter
+    public static final class FieldTrace {
+
+        private final String path;
+        private final String property;
+        private final long nanos;
+
+        /**
+         * The number of changes built for the field, including anything traversed into
+         */
+        private final int changes;
+
+        private final boolean traversed;
+
+        private FieldTrace(String path, String property, long nanos, int changes, boolean traversed) {
+            this.path = path;
+            this.property = property;
+            this.nanos = nanos;
+            this.changes = changes;
+            this.traversed = traversed;
+        }
+
+        @Override
+        public String toString() {
+            return path + " " + nanos + "ns, " + changes + " changes" + (traversed ? " (traversed)" : "");
+        }
+    }
+}
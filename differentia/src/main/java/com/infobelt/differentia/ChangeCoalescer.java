@@ -0,0 +1,202 @@
+package com.infobelt.differentia;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Collapses repeated edits to the same property into one net change before they reach another sink, for
+ * example an autosave that changes a name a dozen times in a few seconds.
+ * <p>
+ * Changes to a property of an entity (with an affected id) are held, keyed on the entity, id and property,
+ * and any later change to the same key is folded into them. The net change has the first old value and the last
+ * new value, with its message rendered again, and if the value ends up back where it started it is dropped.
+ * Anything else (adds, removes and associations) is held in its place so the changes still come out in order.
+ * <p>
+ * A change is passed on once it has been held for the window, which is checked as changes are written (or when
+ * {@link #flushExpired()} is called), and everything held is passed on by {@link #flush()}. With no window the
+ * changes are only passed on by flush, so you can coalesce a unit of work and then flush it
+ */
+public class ChangeCoalescer implements AuditSink, Closeable {
+
+    private final AuditBuilder auditBuilder;
+    private final AuditSink sink;
+
+    /**
+     * How long (in milliseconds) a change is held for, 0 to hold them until we are flushed
+     */
+    @Getter
+    @Setter
+    private long window = 0;
+
+    /**
+     * The number of changes that were folded into another one
+     */
+    @Getter
+    private long coalesced;
+
+    /**
+     * The number of changes dropped because the value went back to where it started
+     */
+    @Getter
+    private long reverted;
+
+    @Setter(AccessLevel.PACKAGE)
+    private LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * What we are holding, in the order it arrived. Changes we don't coalesce are held under a key of their own
+     */
+    private final Map<Object, Held> held = new LinkedHashMap<>();
+
+    /**
+     * @param auditBuilder renders the messages for the net changes, with the templates of the entities registered on it
+     * @param sink         where the changes are passed on to
+     */
+    public ChangeCoalescer(AuditBuilder auditBuilder, AuditSink sink) {
+        this.auditBuilder = auditBuilder;
+        this.sink = sink;
+    }
+
+    @Override
+    public synchronized void write(List<AuditChange> changes) {
+        long now = clock.getAsLong();
+        for (AuditChange auditChange : changes) {
+            if (!isCoalesced(auditChange)) {
+                held.put(new Object(), new Held(auditChange, now));
+                continue;
+            }
+            Key key = new Key(auditChange);
+            Held existing = held.get(key);
+            if (existing == null) {
+                held.put(key, new Held(auditChange, now));
+            } else {
+                existing.last = auditChange;
+                coalesced++;
+            }
+        }
+        if (window > 0) {
+            pass(now - window);
+        }
+    }
+
+    /**
+     * Pass on the changes that have been held for the window
+     */
+    public synchronized void flushExpired() {
+        if (window > 0) {
+            pass(clock.getAsLong() - window);
+        }
+    }
+
+    /**
+     * Pass on everything we are holding, and flush the sink
+     */
+    @Override
+    public synchronized void flush() {
+        pass(Long.MAX_VALUE);
+        sink.flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * @return the number of changes we are holding
+     */
+    public synchronized int getHeld() {
+        return held.size();
+    }
+
+    // Pass on the changes that arrived by the time, these are always at the front
+    private void pass(long by) {
+        List<AuditChange> changes = new ArrayList<>();
+        Iterator<Held> iterator = held.values().iterator();
+        while (iterator.hasNext()) {
+            Held next = iterator.next();
+            if (next.arrived > by) {
+                break;
+            }
+            iterator.remove();
+            AuditChange netChange = next.netChange();
+            if (netChange != null) {
+                changes.add(netChange);
+            } else {
+                reverted++;
+            }
+        }
+        if (!changes.isEmpty()) {
+            sink.write(changes);
+        }
+    }
+
+    private boolean isCoalesced(AuditChange auditChange) {
+        return auditChange.getEventType() == AuditEventType.CHANGE && auditChange.getAffectedId() != null
+                && auditChange.getProperty() != null;
+    }
+
+    private final class Held {
+        private final AuditChange first;
+        private final long arrived;
+        private AuditChange last;
+
+        private Held(AuditChange first, long arrived) {
+            this.first = first;
+            this.arrived = arrived;
+            this.last = first;
+        }
+
+        /**
+         * @return the first change with the last new value, or null if the value is back where it started
+         */
+        private AuditChange netChange() {
+            if (last == first) {
+                return first;
+            }
+            if (Objects.equals(first.getOldValue(), last.getNewValue())) {
+                return null;
+            }
+            first.setNewValue(last.getNewValue());
+            first.setMessage(null);
+            auditBuilder.renderMessage(first);
+            return first;
+        }
+    }
+
+    private static final class Key {
+        private final String entity;
+        private final Object affectedId;
+        private final String property;
+
+        private Key(AuditChange auditChange) {
+            this.entity = auditChange.getEntity();
+            this.affectedId = auditChange.getAffectedId();
+            this.property = auditChange.getProperty();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(entity, other.entity) && affectedId.equals(other.affectedId) && property.equals(other.property);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(entity, affectedId, property);
+        }
+    }
+}
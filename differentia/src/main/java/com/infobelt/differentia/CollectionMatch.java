@@ -0,0 +1,27 @@
+package com.infobelt.differentia;
+
+/**
+ * How the items in a traversed collection are matched up between the old and the new collection
+ */
+public enum CollectionMatch {
+
+    /**
+     * Items are matched using equals (and hashCode)
+     */
+    EQUALS,
+
+    /**
+     * Items are matched on their affected ID (see {@link AuditMetadata#id()})
+     */
+    ID,
+
+    /**
+     * Items are matched on the value of the property in {@link AuditMetadata#key()}
+     */
+    KEY,
+
+    /**
+     * Items are only matched if they are the same instance
+     */
+    IDENTITY
+}
@@ -0,0 +1,94 @@
+package com.infobelt.differentia;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A default implementation of the text message builder
+ * <p>
+ * The message for a change comes from the template set with {@link AuditMetadata} on the property or class
+ * that changed, or the default template for the event
+ */
+public class DefaultMessageBuilder implements MessageBuilder {
+
+    private static final Map<AuditEventType, MessageTemplate> DEFAULT_TEMPLATES = new EnumMap<>(AuditEventType.class);
+
+    private static final MessageTemplate UNKNOWN_TEMPLATE = MessageTemplate.compile("Unknown change type");
+
+    static {
+        DEFAULT_TEMPLATES.put(AuditEventType.ADD, MessageTemplate.compile("New ${entity} has been added"));
+        DEFAULT_TEMPLATES.put(AuditEventType.REMOVE, MessageTemplate.compile("${entity} has been deleted"));
+        DEFAULT_TEMPLATES.put(AuditEventType.CHANGE, MessageTemplate.compile("${entity_caps} ${entityDescriptiveName} changed"));
+        DEFAULT_TEMPLATES.put(AuditEventType.ASSOCIATE, MessageTemplate.compile("${relatedEntity_caps} has been associated with ${entity_nocaps}"));
+        DEFAULT_TEMPLATES.put(AuditEventType.DISASSOCIATE, MessageTemplate.compile("${relatedEntity_caps} has been disassociated from ${entity_nocaps}"));
+    }
+
+    @Override
+    public String buildDeleteMessage(AuditBuilder builder, Object newInstance) {
+        return "Deleted " + builder.getName(newInstance);
+    }
+
+    @Override
+    public String buildNewMessage(AuditBuilder builder, Object newInstance) {
+        return "New " + builder.getName(newInstance);
+    }
+
+    @Override
+    public String buildChangesMessage(AuditBuilder builder, Object newInstance, Object oldInstance, List<AuditChange> changes) {
+        return builder.getName(newInstance, true, true) + " has changed";
+    }
+
+    @Override
+    public String buildChangeMessage(AuditBuilder builder, ObjectMetadata om, AuditChange auditChange) {
+        return getTemplate(om, auditChange).render(auditChange);
+    }
+
+    @Override
+    public void appendChangeMessage(AuditBuilder builder, ObjectMetadata om, AuditChange auditChange, Appendable out) throws IOException {
+        getTemplate(om, auditChange).render(auditChange, out);
+    }
+
+    @Override
+    public String renderMessage(AuditBuilder builder, AuditChange auditChange) {
+
+        // A change to the object itself doesn't have a property, these are the new and deleted messages
+        if (auditChange.getProperty() == null) {
+            String name = StringUtils.isEmpty(auditChange.getEntityDescriptiveName()) ? auditChange.getEntity() : auditChange.getEntity() + " " + auditChange.getEntityDescriptiveName();
+            switch (auditChange.getEventType()) {
+                case ADD:
+                    return "New " + name;
+                case REMOVE:
+                    return "Deleted " + name;
+            }
+        }
+        return buildChangeMessage(builder, builder.getEntityMetadata(auditChange.getEntity()), auditChange);
+    }
+
+    /**
+     * Get the template for a change, this is the template set on the property that changed, or its class,
+     * falling back to the default for the event
+     *
+     * @param om          the plan for the object the change was built from (can be null)
+     * @param auditChange the change
+     * @return the template
+     */
+    protected MessageTemplate getTemplate(ObjectMetadata om, AuditChange auditChange) {
+        if (om != null) {
+            FieldMetadata fieldMetadata = auditChange.getProperty() != null ? om.getPropertyField(auditChange.getProperty()) : null;
+            if (fieldMetadata == null) {
+                fieldMetadata = om.getSelfField();
+            }
+            MessageTemplate template = fieldMetadata.getTemplate(auditChange.getEventType());
+            if (template != null) {
+                return template;
+            }
+        }
+        MessageTemplate template = auditChange.getEventType() != null ? DEFAULT_TEMPLATES.get(auditChange.getEventType()) : null;
+        return template != null ? template : UNKNOWN_TEMPLATE;
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.infobelt.differentia;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The state of a single diff, this lets the audit builder see each (old, new) pair of objects only
+ * once as it traverses, so shared references aren't diffed again and cycles (for example a parent
+ * that points to its children and back) stop cleanly.
+ * <p>
+ * It also remembers what we have looked up on the objects in the diff (their affected ids, descriptive names,
+ * the related objects of a join and their parents) so that each is only looked up once. This assumes the objects
+ * don't change during the diff.
+ * <p>
+ * A context can be passed to several diffs to treat them as one, it isn't thread-safe. When the audit builder
+ * splits a large collection across threads each part gets a {@link #fork()} of the context, which sees what the
+ * context had seen, and they are joined back in order once they are done
+ */
+@Getter
+public class DiffContext {
+
+    private enum State {
+        IN_PROGRESS, FINISHED, CHANGED
+    }
+
+    private static final Object NULL = new Object();
+
+    // The names we remember lookups under, a parent is remembered under the name of its property
+    private static final String AFFECTED_ID = "#affectedId";
+    private static final String DESCRIPTIVE_NAME = "#descriptiveName";
+    private static final String NAME = "#name";
+    private static final String LEFT = "#left";
+    private static final String RIGHT = "#right";
+
+    /**
+     * The pairs we have seen, and how far we have got with them
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<IdentityPair, State> pairs = new HashMap<>();
+
+    /**
+     * What we have looked up, by what it was and then the object it was looked up on
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Map<Object, Object>> lookups = new HashMap<>();
+
+    /**
+     * The number of pairs we have diffed
+     */
+    private long visitedPairs;
+
+    /**
+     * The number of times we skipped a pair that had already been diffed
+     */
+    private long skippedDuplicates;
+
+    /**
+     * The number of times we skipped a pair because we were already in the middle of diffing it
+     */
+    private long skippedCycles;
+
+    /**
+     * The number of lookups on an object we had already done
+     */
+    private long repeatedLookups;
+
+    /**
+     * How many pairs deep we are right now
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private int depth;
+
+    /**
+     * The trace we are building if this is an explained diff (see {@link AuditBuilder#explain(Object, Object)})
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final AuditTrace trace;
+
+    /**
+     * The context we were forked from, it is only read until we are joined back into it
+     */
+    @Getter(AccessLevel.NONE)
+    private final DiffContext parent;
+
+    public DiffContext() {
+        this((AuditTrace) null);
+    }
+
+    DiffContext(AuditTrace trace) {
+        this.trace = trace;
+        this.parent = null;
+    }
+
+    private DiffContext(DiffContext parent) {
+        this.trace = null;
+        this.parent = parent;
+        this.depth = parent.depth;
+    }
+
+    /**
+     * Fork a context for part of the diff to run on another thread, the parent mustn't be used until the
+     * fork has been joined back into it
+     */
+    DiffContext fork() {
+        return new DiffContext(this);
+    }
+
+    /**
+     * @return true if the fork diffed a pair we have already seen, which it would have skipped if it had run after
+     * what has been joined so far
+     */
+    boolean overlaps(DiffContext fork) {
+        for (IdentityPair pair : fork.pairs.keySet()) {
+            if (pairs.containsKey(pair)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Join a fork back in, so we know about everything it saw
+     */
+    void join(DiffContext fork) {
+        pairs.putAll(fork.pairs);
+        fork.lookups.forEach((what, found) -> lookups.computeIfAbsent(what, w -> new IdentityHashMap<>()).putAll(found));
+        visitedPairs += fork.visitedPairs;
+        skippedDuplicates += fork.skippedDuplicates;
+        skippedCycles += fork.skippedCycles;
+        repeatedLookups += fork.repeatedLookups;
+    }
+
+    /**
+     * Start on a pair
+     *
+     * @return true if we should diff the pair, false if it has been (or is being) diffed
+     */
+    boolean enter(Object oldInstance, Object newInstance) {
+        IdentityPair pair = new IdentityPair(oldInstance, newInstance);
+        State state = parent != null ? parent.getState(pair) : null;
+        if (state == null) {
+            state = pairs.putIfAbsent(pair, State.IN_PROGRESS);
+        }
+        if (state == null) {
+            visitedPairs++;
+            depth++;
+            return true;
+        }
+        if (state == State.IN_PROGRESS) {
+            skippedCycles++;
+        } else {
+            skippedDuplicates++;
+        }
+        return false;
+    }
+
+    /**
+     * Finish a pair we entered
+     */
+    void exit(Object oldInstance, Object newInstance) {
+        exit(oldInstance, newInstance, false);
+    }
+
+    /**
+     * Finish a pair we entered, remembering if we found it had changed
+     */
+    void exit(Object oldInstance, Object newInstance, boolean changed) {
+        depth--;
+        pairs.put(new IdentityPair(oldInstance, newInstance), changed ? State.CHANGED : State.FINISHED);
+    }
+
+    /**
+     * @return true if the pair has been finished and we found it had changed
+     */
+    boolean isChanged(Object oldInstance, Object newInstance) {
+        return getState(new IdentityPair(oldInstance, newInstance)) == State.CHANGED;
+    }
+
+    private State getState(IdentityPair pair) {
+        State state = parent != null ? parent.getState(pair) : null;
+        return state != null ? state : pairs.get(pair);
+    }
+
+    Object getAffectedId(ObjectMetadata om, Object o) {
+        return lookup(AFFECTED_ID, o, om::getAffectedId);
+    }
+
+    String getEntityDescriptiveName(ObjectMetadata om, Object o) {
+        return (String) lookup(DESCRIPTIVE_NAME, o, om::getEntityDescriptiveName);
+    }
+
+    /**
+     * @return the name of the object with its descriptive property, see {@link AuditBuilder#getName(Object)}
+     */
+    String getName(AuditBuilder auditBuilder, Object o) {
+        return (String) lookup(NAME, o, auditBuilder::getName);
+    }
+
+    Object getLeftObject(ObjectMetadata om, Object o) {
+        return lookup(LEFT, o, om::getLeftObject);
+    }
+
+    Object getRightObject(ObjectMetadata om, Object o) {
+        return lookup(RIGHT, o, om::getRightObject);
+    }
+
+    Object getParentObject(ObjectMetadata om, String parent, Object o) {
+        return lookup(parent, o, instance -> om.getParentObject(parent, instance));
+    }
+
+    private Object lookup(String what, Object o, Function<Object, Object> lookup) {
+        Map<Object, Object> found = lookups.get(what);
+        if (found == null) {
+            found = new IdentityHashMap<>();
+            lookups.put(what, found);
+        }
+        Object value = found.get(o);
+        if (value == null && parent != null) {
+            value = parent.getLookup(what, o);
+        }
+        if (value != null) {
+            repeatedLookups++;
+            return value != NULL ? value : null;
+        }
+        value = lookup.apply(o);
+        found.put(o, value != null ? value : NULL);
+        return value;
+    }
+
+    private Object getLookup(String what, Object o) {
+        Map<Object, Object> found = lookups.get(what);
+        Object value = found != null ? found.get(o) : null;
+        return value == null && parent != null ? parent.getLookup(what, o) : value;
+    }
+
+    /**
+     * Two objects compared by identity
+     */
+    private static final class IdentityPair {
+        private final Object oldInstance;
+        private final Object newInstance;
+
+        private IdentityPair(Object oldInstance, Object newInstance) {
+            this.oldInstance = oldInstance;
+            this.newInstance = newInstance;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof IdentityPair)) {
+                return false;
+            }
+            IdentityPair other = (IdentityPair) o;
+            return oldInstance == other.oldInstance && newInstance == other.newInstance;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(oldInstance) + System.identityHashCode(newInstance);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.infobelt.differentia;
+
+/**
+ * Receives the results of a {@link Differ}
+ */
+public interface DiffVisitor {
+
+    /**
+     * A field that isn't traversed has changed
+     *
+     * @param property the name of the field
+     * @param oldValue the old audit value
+     * @param newValue the new audit value
+     */
+    void changed(String property, String oldValue, String newValue);
+
+    /**
+     * A field that isn't traversed holds a map or an array, these are left to the visitor to compare as the audit
+     * builder diffs them a key (or index) at a time. By default they are compared and formatted as one value
+     *
+     * @param property the name of the field
+     * @param oldValue the old map or array
+     * @param newValue the new map or array
+     */
+    default void keyed(String property, Object oldValue, Object newValue) {
+        ValueTypes valueTypes = getValueTypes();
+        if (!valueTypes.isEqual(oldValue, newValue)) {
+            changed(property, valueTypes.format(oldValue), valueTypes.format(newValue));
+        }
+    }
+
+    /**
+     * A field that is traversed has been reached, the audit builder will traverse into it
+     *
+     * @param property the name of the field
+     */
+    void traverse(String property);
+
+    /**
+     * @return the comparators and formatters for the values of the fields
+     */
+    default ValueTypes getValueTypes() {
+        return ValueTypes.standard();
+    }
+}
@@ -0,0 +1,28 @@
+package com.infobelt.differentia;
+
+/**
+ * A differ compares the tracked fields of two instances of the same class, it is used
+ * in place of the reflective walk over the fields when we are building the changes
+ * for a modification.
+ * <p>
+ * Fields must be visited in the order of the plan (see {@link ObjectMetadata#getFields()}) so that
+ * the changes come out in the same order as the reflective walk
+ *
+ * @param <T> the type that is being compared
+ */
+public interface Differ<T> {
+
+    /**
+     * @return the class this differ compares
+     */
+    Class<T> getType();
+
+    /**
+     * Compare the tracked fields of the two instances
+     *
+     * @param oldInstance the old instance
+     * @param newInstance the new instance
+     * @param visitor     the visitor that is told about changed and traversed fields
+     */
+    void diff(T oldInstance, T newInstance, DiffVisitor visitor);
+}
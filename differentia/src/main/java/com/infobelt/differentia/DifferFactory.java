@@ -0,0 +1,16 @@
+package com.infobelt.differentia;
+
+/**
+ * A factory for the {@link Differ}s used by an {@link AuditBuilder}
+ */
+public interface DifferFactory {
+
+    /**
+     * Get the differ for a class
+     *
+     * @param type the class
+     * @param <T>  the type
+     * @return the differ or null if there isn't one, in which case the fields will be compared using reflection
+     */
+    <T> Differ<T> getDiffer(Class<T> type);
+}
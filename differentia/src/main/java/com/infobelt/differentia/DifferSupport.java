@@ -0,0 +1,96 @@
+package com.infobelt.differentia;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The comparisons used by compiled and generated {@link Differ}s, these match the
+ * way the reflective walk compares the audit values of a field
+ */
+public final class DifferSupport {
+
+    private DifferSupport() {
+    }
+
+    // The values are compared as they are, and only formatted when they have changed
+
+    public static void diff(String property, Object oldValue, Object newValue, DiffVisitor visitor) {
+        if (isMapOrArray(oldValue) || isMapOrArray(newValue)) {
+            visitor.keyed(property, oldValue, newValue);
+            return;
+        }
+        ValueTypes valueTypes = visitor.getValueTypes();
+        if (!valueTypes.isEqual(oldValue, newValue)) {
+            visitor.changed(property, valueTypes.format(oldValue), valueTypes.format(newValue));
+        }
+    }
+
+    public static void diff(String property, int oldValue, int newValue, DiffVisitor visitor) {
+        ValueTypes valueTypes = visitor.getValueTypes();
+        if (!valueTypes.isEqual(oldValue, newValue)) {
+            visitor.changed(property, valueTypes.format(oldValue), valueTypes.format(newValue));
+        }
+    }
+
+    public static void diff(String property, char oldValue, char newValue, DiffVisitor visitor) {
+        if (oldValue != newValue) {
+            ValueTypes valueTypes = visitor.getValueTypes();
+            visitor.changed(property, valueTypes.format(oldValue), valueTypes.format(newValue));
+        }
+    }
+
+    public static void diff(String property, long oldValue, long newValue, DiffVisitor visitor) {
+        ValueTypes valueTypes = visitor.getValueTypes();
+        if (!valueTypes.isEqual(oldValue, newValue)) {
+            visitor.changed(property, valueTypes.format(oldValue), valueTypes.format(newValue));
+        }
+    }
+
+    public static void diff(String property, boolean oldValue, boolean newValue, DiffVisitor visitor) {
+        if (oldValue != newValue) {
+            ValueTypes valueTypes = visitor.getValueTypes();
+            visitor.changed(property, valueTypes.format(oldValue), valueTypes.format(newValue));
+        }
+    }
+
+    public static void diff(String property, float oldValue, float newValue, DiffVisitor visitor) {
+        ValueTypes valueTypes = visitor.getValueTypes();
+        if (!valueTypes.isEqual((double) oldValue, (double) newValue)) {
+            visitor.changed(property, valueTypes.format(oldValue), valueTypes.format(newValue));
+        }
+    }
+
+    public static void diff(String property, double oldValue, double newValue, DiffVisitor visitor) {
+        ValueTypes valueTypes = visitor.getValueTypes();
+        if (!valueTypes.isEqual(oldValue, newValue)) {
+            visitor.changed(property, valueTypes.format(oldValue), valueTypes.format(newValue));
+        }
+    }
+
+    /**
+     * Get the descriptive value of a field value
+     *
+     * @param value    the value of the field
+     * @param getter   reads the descriptive property
+     * @param <T>      the type of the field
+     * @return the descriptive value, or null if the field value is null
+     */
+    public static <T> Object describe(T value, Function<? super T, ?> getter) {
+        return value == null ? null : getter.apply(value);
+    }
+
+    /**
+     * Get the descriptive value of a field value
+     *
+     * @param value the value of the field
+     * @param path  the descriptive property
+     * @return the descriptive value, or null if the field value is null
+     */
+    public static Object describe(Object value, PropertyPath path) {
+        return value == null ? null : path.get(value);
+    }
+
+    private static boolean isMapOrArray(Object value) {
+        return value instanceof Map || value != null && value.getClass().isArray();
+    }
+}
@@ -0,0 +1,82 @@
+package com.infobelt.differentia;
+
+import java.util.BitSet;
+
+/**
+ * The properties of an entity that have been set since it was last captured (see {@link AuditBuilder#snapshot(Object)})
+ * or cleared, by their index in the plan. An entity holds one of these, marks it from its setters and exposes it
+ * through {@link DirtyTracking}:
+ *
+ * <pre>
+ * private final DirtyFields dirtyFields = new DirtyFields(Account.class);
+ *
+ * public void setName(String name) {
+ *     this.name = name;
+ *     dirtyFields.mark("name");
+ * }
+ * </pre>
+ * <p>
+ * Until it is first cleared we don't know what has changed, so every field is dirty. A field of this type
+ * is never audited itself. This isn't thread-safe, no more than the setters of the entity are
+ */
+public final class DirtyFields {
+
+    private final ObjectMetadata plan;
+    private final BitSet dirty = new BitSet();
+    private boolean known;
+
+    public DirtyFields(Class<?> type) {
+        this.plan = ObjectMetadata.forClass(type);
+    }
+
+    /**
+     * Mark a property as set
+     *
+     * @param property the name of the field
+     */
+    public void mark(String property) {
+        dirty.set(indexOf(property));
+    }
+
+    /**
+     * Mark everything as dirty, for example after the entity has been reloaded
+     */
+    public void markAll() {
+        known = false;
+        dirty.clear();
+    }
+
+    /**
+     * Start tracking from here, nothing is dirty
+     */
+    public void clear() {
+        known = true;
+        dirty.clear();
+    }
+
+    public boolean isDirty(String property) {
+        return !known || dirty.get(indexOf(property));
+    }
+
+    /**
+     * @return true if we know which fields are dirty, false if they all are
+     */
+    public boolean isKnown() {
+        return known;
+    }
+
+    private int indexOf(String property) {
+        int index = plan.indexOf(property);
+        if (index < 0) {
+            throw new IllegalArgumentException(plan.getEntityName() + " doesn't have a field " + property);
+        }
+        return index;
+    }
+
+    /**
+     * @return the indexes of the dirty fields, or null if they all are
+     */
+    BitSet get() {
+        return known ? dirty : null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.infobelt.differentia;
+
+/**
+ * An entity that keeps track of which of its properties have been set, so that a diff only has to
+ * visit those (and anything it traverses into) rather than every field
+ */
+public interface DirtyTracking {
+
+    /**
+     * @return the dirty fields of the entity
+     */
+    DirtyFields getDirtyFields();
+}
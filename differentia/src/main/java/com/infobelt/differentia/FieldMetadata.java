@@ -0,0 +1,185 @@
+package com.infobelt.differentia;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The part of the audit plan that describes a single field, everything here
+ * is resolved from the annotations when the plan is built
+ */
+@Slf4j
+@Getter
+public class FieldMetadata {
+    private final ObjectMetadata objectMetadata;
+    private final boolean tracked;
+    private final AuditMetadata propertyAnnotation;
+    private final Field field;
+    private final String fieldName;
+    private final String propertyDescriptiveName;
+    private final String descriptiveProperty;
+    private final boolean descriptiveField;
+    private final boolean traversable;
+    private final AuditEventType addEvent;
+    private final AuditEventType removeEvent;
+
+    /**
+     * Is this field included in the changes when the object is added
+     */
+    private final boolean reportedOnAdd;
+
+    /**
+     * Is this field included in the changes when the object is removed
+     */
+    private final boolean reportedOnRemove;
+
+    /**
+     * How we match the items if this is a traversed collection
+     */
+    private final CollectionMatch match;
+
+    /**
+     * The compiled key property used when matching on KEY (null if there isn't one)
+     */
+    private final PropertyPath keyPath;
+
+    /**
+     * The accessor for reading this field from an object (null if we can't read it)
+     */
+    private final PropertyAccessor accessor;
+
+    /**
+     * The compiled descriptive property (null if there isn't one)
+     */
+    private final PropertyPath descriptivePath;
+
+    /**
+     * The message templates set on the field (or its class) by event, events that aren't
+     * here use the message builder's default
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<AuditEventType, MessageTemplate> templates;
+
+    FieldMetadata(ObjectMetadata objectMetadata, AuditMetadata classAnnotation, Field field) {
+        this.objectMetadata = objectMetadata;
+        this.field = field;
+
+        if (field != null) {
+            AuditMetadata[] annotations = field.getAnnotationsByType(AuditMetadata.class);
+            this.propertyAnnotation = annotations.length > 0 ? annotations[0] : null;
+            this.fieldName = field.getName();
+        } else {
+            this.propertyAnnotation = null;
+            this.fieldName = null;
+        }
+
+        if (field != null && field.getType() == DirtyFields.class) {
+            this.tracked = false;
+        } else if (classAnnotation != null && classAnnotation.onlyAnnotated() && propertyAnnotation == null) {
+            this.tracked = false;
+        } else if (propertyAnnotation != null) {
+            this.tracked = !propertyAnnotation.ignore();
+        } else {
+            this.tracked = true;
+        }
+
+        if (propertyAnnotation != null && !"".equals(propertyAnnotation.name())) {
+            this.propertyDescriptiveName = propertyAnnotation.name();
+        } else {
+            this.propertyDescriptiveName = fieldName;
+        }
+
+        this.descriptiveProperty = propertyAnnotation != null ? propertyAnnotation.descriptiveProperty() : "";
+        this.descriptivePath = !"".equals(descriptiveProperty) ? PropertyPath.compile(descriptiveProperty) : null;
+        this.accessor = field != null ? PropertyAccessor.forProperty(field.getDeclaringClass(), fieldName) : null;
+        this.traversable = propertyAnnotation != null && propertyAnnotation.traverse();
+        this.match = propertyAnnotation != null ? propertyAnnotation.match() : CollectionMatch.EQUALS;
+        this.keyPath = propertyAnnotation != null && !"".equals(propertyAnnotation.key()) ? PropertyPath.compile(propertyAnnotation.key()) : null;
+        if (match == CollectionMatch.KEY && keyPath == null) {
+            throw new IllegalStateException("Field " + fieldName + " matches on KEY but doesn't define the key");
+        }
+        this.addEvent = propertyAnnotation != null ? propertyAnnotation.add() : AuditEventType.ADD;
+        this.removeEvent = propertyAnnotation != null ? propertyAnnotation.remove() : AuditEventType.REMOVE;
+
+        String classDescriptiveProperty = classAnnotation != null ? classAnnotation.descriptiveProperty() : "";
+        this.descriptiveField = classDescriptiveProperty.equals(fieldName);
+
+        boolean partOfComplexDescriptiveProperty = fieldName != null && classDescriptiveProperty.contains("|") && classDescriptiveProperty.startsWith(fieldName);
+        this.reportedOnRemove = descriptiveField || partOfComplexDescriptiveProperty;
+        this.reportedOnAdd = reportedOnRemove || (propertyDescriptiveName != null &&
+                (propertyDescriptiveName.contains("Generic") || propertyDescriptiveName.contains("Document Text Interpretation")));
+
+        this.templates = new EnumMap<>(AuditEventType.class);
+        for (AuditEventType event : AuditEventType.values()) {
+            String template = getTemplate(propertyAnnotation, event);
+            if ("".equals(template)) {
+                template = getTemplate(classAnnotation, event);
+            }
+            if (!"".equals(template)) {
+                templates.put(event, MessageTemplate.compile(template));
+            }
+        }
+    }
+
+    private static String getTemplate(AuditMetadata annotation, AuditEventType event) {
+        if (annotation == null) {
+            return "";
+        }
+        switch (event) {
+            case ADD:
+                return annotation.addTemplate();
+            case REMOVE:
+                return annotation.removeTemplate();
+            case CHANGE:
+                return annotation.changeTemplate();
+            case ASSOCIATE:
+                return annotation.associateTemplate();
+            case DISASSOCIATE:
+                return annotation.disassociateTemplate();
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Get the message template for changes to this field
+     *
+     * @param event the event type of the change
+     * @return the template from the field or its class, or null if neither sets one
+     */
+    public MessageTemplate getTemplate(AuditEventType event) {
+        return templates.get(event);
+    }
+
+    public AuditEventType getEvent(AuditEventType event) {
+        switch (event) {
+            case ADD:
+                return addEvent;
+            case REMOVE:
+                return removeEvent;
+            default:
+                return event;
+        }
+    }
+
+    /**
+     * Read the value of this field from an object
+     *
+     * @param instance the object
+     * @return the value
+     */
+    public Object getValue(Object instance) {
+        if (accessor == null) {
+            throw new IllegalArgumentException("Unable to read property " + fieldName + " on object " + instance);
+        }
+        return accessor.get(instance);
+    }
+
+    public Class<?> getFieldType() {
+        return field.getType();
+    }
+}
@@ -0,0 +1,230 @@
+package com.infobelt.differentia;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Works out the 64 bit structural fingerprint of a snapshot (or an object through {@link LiveSnapshot}), see
+ * {@link AuditBuilder#fingerprint(Object)}.
+ * <p>
+ * This is an FNV-1a hash over the tracked fields in plan order, and over what we traverse into. Values are
+ * hashed on their content (never their hashCode) so the fingerprint is the same from one run to the next.
+ * Values that are compared as equal can still have different fingerprints (for example a value with a custom
+ * comparator), that just means we diff the pair. The items of a collection are hashed on their own and added
+ * up, so their order doesn't matter (it doesn't to the diff either). Maps, sets, lists and arrays that we don't
+ * traverse are hashed on what is in them, the entries of a map and a set in any order
+ */
+final class Fingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private static final byte NULL = 0;
+    private static final byte INTEGRAL = 1;
+    private static final byte FLOATING = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte CHAR = 4;
+    private static final byte STRING = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte DATE = 7;
+    private static final byte NODE = 8;
+    private static final byte SEEN = 9;
+    private static final byte ITEMS = 10;
+    private static final byte UNMATCHABLE = 11;
+    private static final byte ARRAY = 12;
+    private static final byte LIST = 13;
+    private static final byte SET = 14;
+    private static final byte MAP = 15;
+
+    private final Map<Object, Integer> seen;
+    private long hash = OFFSET_BASIS;
+
+    private Fingerprint(Map<Object, Integer> seen) {
+        this.seen = seen;
+    }
+
+    static long of(Snapshot snapshot) {
+        Fingerprint fingerprint = new Fingerprint(new IdentityHashMap<>());
+        fingerprint.addNode(snapshot);
+        return fingerprint.hash;
+    }
+
+    private void addNode(Snapshot snapshot) {
+        Integer index = seen.get(snapshot.getIdentity());
+        if (index != null) {
+            addByte(SEEN);
+            addLong(index);
+            return;
+        }
+        seen.put(snapshot.getIdentity(), seen.size());
+
+        ObjectMetadata om = snapshot.getPlan();
+        addByte(NODE);
+        addString(om.getEntityName());
+
+        SnapshotLayout layout = snapshot.getLayout();
+        for (int i = 0; i < layout.getFieldCount(); i++) {
+            switch (layout.getKind(i)) {
+                case NONE:
+                    break;
+                case INT:
+                case LONG:
+                    addByte(INTEGRAL);
+                    addLong(snapshot.getLong(i));
+                    break;
+                case CHAR:
+                    addByte(CHAR);
+                    addLong(snapshot.getLong(i));
+                    break;
+                case BOOLEAN:
+                    addByte(BOOLEAN);
+                    addLong(snapshot.getLong(i));
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    addByte(FLOATING);
+                    addLong(Double.doubleToLongBits(snapshot.getDouble(i)));
+                    break;
+                case OBJECT:
+                    addValue(snapshot.getValue(i));
+                    break;
+                case CHILD:
+                    Snapshot child = snapshot.getChild(i);
+                    if (child == null) {
+                        addByte(NULL);
+                    } else {
+                        addNode(child);
+                    }
+                    break;
+                case ITEMS:
+                    addItems(om.getFields().get(i), snapshot.getItems(i));
+                    break;
+            }
+        }
+    }
+
+    // A missing collection is the same as an empty one to the diff
+    private void addItems(FieldMetadata fieldMetadata, List<Snapshot.Item> items) {
+        long sum = 0;
+        int count = items != null ? items.size() : 0;
+        if (items != null) {
+            boolean keyed = fieldMetadata.getMatch() == CollectionMatch.ID || fieldMetadata.getMatch() == CollectionMatch.KEY;
+            for (Snapshot.Item item : items) {
+                Fingerprint fingerprint = new Fingerprint(seen);
+                if (!item.isMatchable()) {
+                    fingerprint.addByte(UNMATCHABLE);
+                } else if (keyed) {
+                    fingerprint.addValue(item.getKey());
+                }
+                fingerprint.addValue(item.getValue());
+                if (item.getSnapshot() != null) {
+                    fingerprint.addNode(item.getSnapshot());
+                }
+                sum += mix(fingerprint.hash);
+            }
+        }
+        addByte(ITEMS);
+        addLong(count);
+        addLong(sum);
+    }
+
+    private void addValue(Object value) {
+        if (value == null) {
+            addByte(NULL);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            addByte(INTEGRAL);
+            addLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            addByte(FLOATING);
+            addLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Boolean) {
+            addByte(BOOLEAN);
+            addLong((Boolean) value ? 1 : 0);
+        } else if (value instanceof Character) {
+            addByte(CHAR);
+            addLong((Character) value);
+        } else if (value instanceof BigDecimal) {
+            // Scale doesn't matter to the comparison, so it shouldn't here
+            BigDecimal decimal = (BigDecimal) value;
+            addByte(DECIMAL);
+            addString(decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toPlainString());
+        } else if (value.getClass() == Date.class) {
+            addByte(DATE);
+            addLong(((Date) value).getTime());
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            addByte(ARRAY);
+            addLong(length);
+            for (int i = 0; i < length; i++) {
+                addValue(Array.get(value, i));
+            }
+        } else if (value instanceof Set) {
+            addByte(SET);
+            addLong(((Set<?>) value).size());
+            long sum = 0;
+            for (Object item : (Set<?>) value) {
+                Fingerprint fingerprint = new Fingerprint(seen);
+                fingerprint.addValue(item);
+                sum += mix(fingerprint.hash);
+            }
+            addLong(sum);
+        } else if (value instanceof Collection) {
+            addByte(LIST);
+            addLong(((Collection<?>) value).size());
+            for (Object item : (Collection<?>) value) {
+                addValue(item);
+            }
+        } else if (value instanceof Map) {
+            addByte(MAP);
+            addLong(((Map<?, ?>) value).size());
+            long sum = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                Fingerprint fingerprint = new Fingerprint(seen);
+                fingerprint.addValue(entry.getKey());
+                fingerprint.addValue(entry.getValue());
+                sum += mix(fingerprint.hash);
+            }
+            addLong(sum);
+        } else {
+            // The same as the snapshot store does with a value it has no type for
+            addByte(STRING);
+            addString(String.valueOf(value));
+        }
+    }
+
+    private void addString(String value) {
+        addLong(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            addByte((byte) c);
+            addByte((byte) (c >>> 8));
+        }
+    }
+
+    private void addLong(long value) {
+        for (int i = 0; i < 64; i += 8) {
+            addByte((byte) (value >>> i));
+        }
+    }
+
+    private void addByte(byte b) {
+        hash ^= b & 0xff;
+        hash *= PRIME;
+    }
+
+    // Spread the bits before we add the items up, so similar items don't cancel out
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
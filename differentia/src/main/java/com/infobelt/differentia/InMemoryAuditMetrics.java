@@ -0,0 +1,181 @@
+package com.infobelt.differentia;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the audit metrics in memory by entity, everything is counted with adders so there are no
+ * locks on the threads building the changes
+ */
+public class InMemoryAuditMetrics implements AuditMetrics {
+
+    private final ConcurrentMap<String, EntityMetrics> entities = new ConcurrentHashMap<>();
+
+    @Override
+    public void objectDiffed(ObjectMetadata om, long nanos, int fieldsVisited, int depth) {
+        EntityMetrics entity = getOrCreate(om.getEntityName());
+        entity.latency.record(nanos);
+        entity.fieldsVisited.add(fieldsVisited);
+        entity.maxDepth.accumulate(depth);
+    }
+
+    @Override
+    public void changeEmitted(AuditChange auditChange) {
+        EntityMetrics entity = getOrCreate(auditChange.getEntity());
+        entity.changes.increment();
+        entity.characters.add(length(auditChange.getOldValue()) + length(auditChange.getNewValue()));
+    }
+
+    @Override
+    public void messageRendered(AuditChange auditChange, long nanos, int length) {
+        EntityMetrics entity = getOrCreate(auditChange.getEntity());
+        entity.messages.increment();
+        entity.messageNanos.add(nanos);
+        entity.characters.add(length);
+    }
+
+    /**
+     * @param entityName the entity name
+     * @return the metrics for the entity, or null if we haven't seen it
+     */
+    public EntityMetrics getEntity(String entityName) {
+        return entities.get(entityName);
+    }
+
+    /**
+     * @return the metrics for each entity we have seen, by entity name
+     */
+    public Map<String, EntityMetrics> getEntities() {
+        return Collections.unmodifiableMap(entities);
+    }
+
+    public void reset() {
+        entities.clear();
+    }
+
+    private EntityMetrics getOrCreate(String entityName) {
+        String key = entityName != null ? entityName : "";
+        EntityMetrics entity = entities.get(key);
+        return entity != null ? entity : entities.computeIfAbsent(key, k -> new EntityMetrics());
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /**
+     * The metrics for an entity
+     */
+    public static final class EntityMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder fieldsVisited = new LongAdder();
+        private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+        private final LongAdder changes = new LongAdder();
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder messageNanos = new LongAdder();
+        private final LongAdder characters = new LongAdder();
+
+        /**
+         * @return how long it took to diff each pair of objects, including anything traversed into
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getFieldsVisited() {
+            return fieldsVisited.sum();
+        }
+
+        /**
+         * @return the deepest we found the entity in a diff
+         */
+        public long getMaxDepth() {
+            return maxDepth.get();
+        }
+
+        public long getChanges() {
+            return changes.sum();
+        }
+
+        public long getMessages() {
+            return messages.sum();
+        }
+
+        public long getMessageNanos() {
+            return messageNanos.sum();
+        }
+
+        /**
+         * @return the number of characters in the values and messages of the changes
+         */
+        public long getCharacters() {
+            return characters.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "diffs=" + latency.getCount() + ", p50=" + latency.getPercentile(50) + "ns, p99=" + latency.getPercentile(99)
+                    + "ns, fieldsVisited=" + getFieldsVisited() + ", maxDepth=" + getMaxDepth() + ", changes=" + getChanges()
+                    + ", messages=" + getMessages() + ", messageNanos=" + getMessageNanos() + ", characters=" + getCharacters();
+        }
+    }
+
+    /**
+     * A histogram of latencies in power of two buckets, so a percentile is only accurate to a factor of two
+     */
+    public static final class LatencyHistogram {
+
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder total = new LongAdder();
+
+        private LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[63 - Long.numberOfLeadingZeros(Math.max(nanos, 1))].increment();
+            total.add(nanos);
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return total.sum();
+        }
+
+        /**
+         * @param percentile the percentile, for example 99
+         * @return the upper bound of the bucket the percentile falls in, in nanos
+         */
+        public long getPercentile(double percentile) {
+            long[] counts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return i == 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return 0;
+        }
+    }
+}
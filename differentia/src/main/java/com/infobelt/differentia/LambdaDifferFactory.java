@@ -0,0 +1,267 @@
+package com.infobelt.differentia;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link DifferFactory} that compiles a differ for each audited class at runtime.
+ * <p>
+ * Every tracked getter is bound through {@link LambdaMetafactory}, so the JVM spins a small class that
+ * calls the getter directly, and primitive fields are read and compared without boxing. Values are only
+ * turned into strings once we know a field has changed.
+ * <p>
+ * Classes that we can't compile (they aren't public, a tracked field has no public getter or the class
+ * isn't visible from this class loader) don't get a differ, so the audit builder will fall back to
+ * reflection for them
+ */
+@Slf4j
+public class LambdaDifferFactory implements DifferFactory {
+
+    private static final ClassValue<Differ<?>> DIFFERS = new ClassValue<Differ<?>>() {
+        @Override
+        protected Differ<?> computeValue(Class<?> type) {
+            try {
+                return compile(type);
+            } catch (Throwable t) {
+                log.debug("Unable to compile a differ for " + type.getName() + ", will use reflection", t);
+                return null;
+            }
+        }
+    };
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Differ<T> getDiffer(Class<T> type) {
+        return (Differ<T>) DIFFERS.get(type);
+    }
+
+    private static <T> Differ<T> compile(Class<T> type) throws Throwable {
+        ObjectMetadata om = ObjectMetadata.forClass(type);
+        if (!om.isTracked() || !isVisible(type)) {
+            return null;
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<FieldDiffer> fields = new ArrayList<>();
+        for (FieldMetadata fieldMetadata : om.getFields()) {
+            if (!fieldMetadata.isTracked()) {
+                continue;
+            }
+            if (fieldMetadata.isTraversable()) {
+                fields.add(new TraverseFieldDiffer(fieldMetadata.getFieldName()));
+                continue;
+            }
+
+            PropertyAccessor accessor = fieldMetadata.getAccessor();
+            Method readMethod = accessor != null ? accessor.getReadMethod() : null;
+            if (readMethod == null || !Modifier.isPublic(readMethod.getModifiers()) || !isVisible(readMethod.getDeclaringClass())) {
+                return null;
+            }
+            fields.add(compileField(lookup, type, fieldMetadata, readMethod));
+        }
+        return new CompiledDiffer<>(type, fields.toArray(new FieldDiffer[0]));
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(type.getName(), false, LambdaDifferFactory.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static FieldDiffer compileField(MethodHandles.Lookup lookup, Class<?> type, FieldMetadata fieldMetadata, Method readMethod) throws Throwable {
+        MethodHandle getter = lookup.unreflect(readMethod);
+        Class<?> returnType = readMethod.getReturnType();
+        String property = fieldMetadata.getFieldName();
+
+        if (returnType == int.class || returnType == short.class || returnType == byte.class || returnType == char.class) {
+            ToIntFunction<Object> function = bind(lookup, ToIntFunction.class, "applyAsInt", int.class, getter, type);
+            return new IntFieldDiffer(property, function, returnType == char.class);
+        } else if (returnType == long.class) {
+            ToLongFunction<Object> function = bind(lookup, ToLongFunction.class, "applyAsLong", long.class, getter, type);
+            return new LongFieldDiffer(property, function);
+        } else if (returnType == double.class || returnType == float.class) {
+            // Widening a float to a double is exact, so we only need to remember to format it as a float
+            ToDoubleFunction<Object> function = bind(lookup, ToDoubleFunction.class, "applyAsDouble", double.class, getter, type);
+            return new DoubleFieldDiffer(property, function, returnType == float.class);
+        } else if (returnType == boolean.class) {
+            Predicate<Object> function = bind(lookup, Predicate.class, "test", boolean.class, getter, type);
+            return new BooleanFieldDiffer(property, function);
+        } else {
+            Function<Object, Object> function = bind(lookup, Function.class, "apply", Object.class, getter, type);
+            return new ObjectFieldDiffer(property, function, fieldMetadata.getDescriptivePath());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <F> F bind(MethodHandles.Lookup lookup, Class<?> functionalInterface, String methodName, Class<?> erasedReturn, MethodHandle getter, Class<?> type) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(lookup, methodName,
+                MethodType.methodType(functionalInterface),
+                MethodType.methodType(erasedReturn, Object.class),
+                getter,
+                MethodType.methodType(getter.type().returnType(), type));
+        return (F) site.getTarget().invoke();
+    }
+
+    private static final class CompiledDiffer<T> implements Differ<T> {
+
+        private final Class<T> type;
+        private final FieldDiffer[] fields;
+
+        private CompiledDiffer(Class<T> type, FieldDiffer[] fields) {
+            this.type = type;
+            this.fields = fields;
+        }
+
+        @Override
+        public Class<T> getType() {
+            return type;
+        }
+
+        @Override
+        public void diff(T oldInstance, T newInstance, DiffVisitor visitor) {
+            for (FieldDiffer field : fields) {
+                field.diff(oldInstance, newInstance, visitor);
+            }
+        }
+    }
+
+    private abstract static class FieldDiffer {
+
+        protected final String property;
+
+        private FieldDiffer(String property) {
+            this.property = property;
+        }
+
+        abstract void diff(Object oldInstance, Object newInstance, DiffVisitor visitor);
+    }
+
+    private static final class TraverseFieldDiffer extends FieldDiffer {
+
+        private TraverseFieldDiffer(String property) {
+            super(property);
+        }
+
+        @Override
+        void diff(Object oldInstance, Object newInstance, DiffVisitor visitor) {
+            visitor.traverse(property);
+        }
+    }
+
+    private static final class IntFieldDiffer extends FieldDiffer {
+
+        private final ToIntFunction<Object> getter;
+        private final boolean character;
+
+        private IntFieldDiffer(String property, ToIntFunction<Object> getter, boolean character) {
+            super(property);
+            this.getter = getter;
+            this.character = character;
+        }
+
+        @Override
+        void diff(Object oldInstance, Object newInstance, DiffVisitor visitor) {
+            int oldValue = getter.applyAsInt(oldInstance);
+            int newValue = getter.applyAsInt(newInstance);
+            if (character) {
+                DifferSupport.diff(property, (char) oldValue, (char) newValue, visitor);
+            } else {
+                DifferSupport.diff(property, oldValue, newValue, visitor);
+            }
+        }
+    }
+
+    private static final class LongFieldDiffer extends FieldDiffer {
+
+        private final ToLongFunction<Object> getter;
+
+        private LongFieldDiffer(String property, ToLongFunction<Object> getter) {
+            super(property);
+            this.getter = getter;
+        }
+
+        @Override
+        void diff(Object oldInstance, Object newInstance, DiffVisitor visitor) {
+            DifferSupport.diff(property, getter.applyAsLong(oldInstance), getter.applyAsLong(newInstance), visitor);
+        }
+    }
+
+    private static final class DoubleFieldDiffer extends FieldDiffer {
+
+        private final ToDoubleFunction<Object> getter;
+        private final boolean single;
+
+        private DoubleFieldDiffer(String property, ToDoubleFunction<Object> getter, boolean single) {
+            super(property);
+            this.getter = getter;
+            this.single = single;
+        }
+
+        @Override
+        void diff(Object oldInstance, Object newInstance, DiffVisitor visitor) {
+            double oldValue = getter.applyAsDouble(oldInstance);
+            double newValue = getter.applyAsDouble(newInstance);
+            if (single) {
+                DifferSupport.diff(property, (float) oldValue, (float) newValue, visitor);
+            } else {
+                DifferSupport.diff(property, oldValue, newValue, visitor);
+            }
+        }
+    }
+
+    private static final class BooleanFieldDiffer extends FieldDiffer {
+
+        private final Predicate<Object> getter;
+
+        private BooleanFieldDiffer(String property, Predicate<Object> getter) {
+            super(property);
+            this.getter = getter;
+        }
+
+        @Override
+        void diff(Object oldInstance, Object newInstance, DiffVisitor visitor) {
+            DifferSupport.diff(property, getter.test(oldInstance), getter.test(newInstance), visitor);
+        }
+    }
+
+    private static final class ObjectFieldDiffer extends FieldDiffer {
+
+        private final Function<Object, Object> getter;
+        private final PropertyPath descriptivePath;
+
+        private ObjectFieldDiffer(String property, Function<Object, Object> getter, PropertyPath descriptivePath) {
+            super(property);
+            this.getter = getter;
+            this.descriptivePath = descriptivePath;
+        }
+
+        @Override
+        void diff(Object oldInstance, Object newInstance, DiffVisitor visitor) {
+            DifferSupport.diff(property, read(oldInstance), read(newInstance), visitor);
+        }
+
+        private Object read(Object instance) {
+            Object value = getter.apply(instance);
+            return descriptivePath == null ? value : DifferSupport.describe(value, descriptivePath);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.infobelt.differentia;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A view of a live object as a snapshot, the fields are read from the object as they are asked for
+ * so that we can diff a snapshot against the object without capturing it first
+ */
+final class LiveSnapshot extends Snapshot {
+
+    private final AuditBuilder builder;
+    private final Object instance;
+    private final ObjectMetadata plan;
+
+    LiveSnapshot(AuditBuilder builder, Object instance) {
+        this.builder = builder;
+        this.instance = instance;
+        this.plan = ObjectMetadata.of(instance);
+    }
+
+    @Override
+    Object getIdentity() {
+        return instance;
+    }
+
+    @Override
+    BitSet getDirtyFields() {
+        return AuditBuilder.getDirtyFields(instance);
+    }
+
+    @Override
+    public ObjectMetadata getPlan() {
+        return plan;
+    }
+
+    @Override
+    public Object getAffectedId() {
+        return plan.getAffectedId(instance);
+    }
+
+    @Override
+    public String getEntityDescriptiveName() {
+        return plan.getEntityDescriptiveName(instance);
+    }
+
+    @Override
+    public Object getValue(int field) {
+        FieldMetadata fieldMetadata = plan.getFields().get(field);
+        return builder.getAuditValue(instance, fieldMetadata.getFieldName(), fieldMetadata);
+    }
+
+    @Override
+    public long getLong(int field) {
+        return SnapshotLayout.toBits(getLayout().getKind(field), plan.getFields().get(field).getValue(instance));
+    }
+
+    @Override
+    public double getDouble(int field) {
+        return ((Number) plan.getFields().get(field).getValue(instance)).doubleValue();
+    }
+
+    @Override
+    public Snapshot getChild(int field) {
+        Object child = plan.getFields().get(field).getValue(instance);
+        return child != null && ObjectMetadata.of(child).isTracked() ? new LiveSnapshot(builder, child) : null;
+    }
+
+    @Override
+    public List<Item> getItems(int field) {
+        FieldMetadata fieldMetadata = plan.getFields().get(field);
+        Collection<?> values = (Collection<?>) fieldMetadata.getValue(instance);
+        if (values == null) {
+            return null;
+        }
+        List<Item> items = new ArrayList<>(values.size());
+        for (Object o : values) {
+            items.add(builder.snapshotItem(fieldMetadata, o, builder.isScalar(o) ? null : new LiveSnapshot(builder, o)));
+        }
+        return items;
+    }
+}
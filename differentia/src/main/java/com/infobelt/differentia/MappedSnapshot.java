@@ -0,0 +1,175 @@
+package com.infobelt.differentia;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A snapshot read straight from a record written by {@link SnapshotCodec}, usually in a mapped segment of a
+ * {@link SnapshotStore}. Nothing is read until it is asked for, and then only the bytes of that field
+ */
+final class MappedSnapshot extends Snapshot {
+
+    private final Record record;
+    private final int node;
+    private final ObjectMetadata plan;
+    private final SnapshotLayout layout;
+
+    private MappedSnapshot(Record record, int node) {
+        this.record = record;
+        this.node = node;
+        this.plan = record.plans[record.bytes.getInt(node)];
+        this.layout = SnapshotLayout.forPlan(plan);
+    }
+
+    /**
+     * Read the snapshot at the start of a record
+     *
+     * @param bytes  the record, starting at position 0
+     * @param plans  looks up the plan for a class name and layout signature from the class table
+     * @return the snapshot
+     */
+    static MappedSnapshot read(ByteBuffer bytes, PlanResolver plans) {
+        return new Record(bytes, plans).node(SnapshotCodec.RECORD_HEADER);
+    }
+
+    /**
+     * Read only the affected id of the snapshot at the start of a record
+     */
+    static Object readAffectedId(ByteBuffer bytes) {
+        return SnapshotCodec.readValue(bytes, bytes.getInt(SnapshotCodec.RECORD_HEADER + 4));
+    }
+
+    @Override
+    public ObjectMetadata getPlan() {
+        return plan;
+    }
+
+    @Override
+    SnapshotLayout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public Object getAffectedId() {
+        return SnapshotCodec.readValue(record.bytes, record.bytes.getInt(node + 4));
+    }
+
+    @Override
+    public String getEntityDescriptiveName() {
+        return (String) SnapshotCodec.readValue(record.bytes, record.bytes.getInt(node + 8));
+    }
+
+    @Override
+    public Object getValue(int field) {
+        SnapshotLayout.Kind kind = layout.getKind(field);
+        if (kind.isPrimitive()) {
+            return SnapshotLayout.fromBits(kind, record.bytes.getLong(primitiveOffset(field)));
+        }
+        return kind == SnapshotLayout.Kind.OBJECT ? SnapshotCodec.readValue(record.bytes, record.bytes.getInt(objectOffset(field))) : null;
+    }
+
+    @Override
+    public long getLong(int field) {
+        return record.bytes.getLong(primitiveOffset(field));
+    }
+
+    @Override
+    public double getDouble(int field) {
+        return Double.longBitsToDouble(record.bytes.getLong(primitiveOffset(field)));
+    }
+
+    @Override
+    public Snapshot getChild(int field) {
+        int child = record.bytes.getInt(objectOffset(field));
+        return child == SnapshotCodec.NONE ? null : record.node(child);
+    }
+
+    @Override
+    public List<Item> getItems(int field) {
+        ByteBuffer bytes = record.bytes;
+        int list = bytes.getInt(objectOffset(field));
+        if (list == SnapshotCodec.NONE) {
+            return null;
+        }
+        int count = bytes.getInt(list);
+        List<Item> items = new ArrayList<>(count);
+        int item = list + 4;
+        for (int i = 0; i < count; i++) {
+            int key = bytes.getInt(item);
+            int snapshot = bytes.getInt(item + 12);
+            items.add(new Item(key == SnapshotCodec.UNMATCHABLE ? null : SnapshotCodec.readValue(bytes, key),
+                    key != SnapshotCodec.UNMATCHABLE,
+                    (String) SnapshotCodec.readValue(bytes, bytes.getInt(item + 4)),
+                    (String) SnapshotCodec.readValue(bytes, bytes.getInt(item + 8)),
+                    snapshot == SnapshotCodec.NONE ? null : record.node(snapshot)));
+            item += SnapshotCodec.ITEM_SIZE;
+        }
+        return items;
+    }
+
+    private int primitiveOffset(int field) {
+        return node + SnapshotCodec.NODE_HEADER + layout.getSlot(field) * 8;
+    }
+
+    private int objectOffset(int field) {
+        return node + SnapshotCodec.NODE_HEADER + layout.getPrimitiveSlots() * 8 + layout.getSlot(field) * 4;
+    }
+
+    interface PlanResolver {
+        ObjectMetadata resolve(String className, String signature);
+    }
+
+    /**
+     * Finds the plans for the classes in the class tables, checking each class still has the same layout. The
+     * plans are cached by whatever reads the records (a store, a sorter or a spill file) so they go when it does
+     */
+    static final class Plans implements PlanResolver {
+
+        private final ConcurrentMap<String, ObjectMetadata> plans = new ConcurrentHashMap<>();
+
+        @Override
+        public ObjectMetadata resolve(String className, String signature) {
+            return plans.computeIfAbsent(className + "/" + signature, key -> {
+                ObjectMetadata om = ObjectMetadata.forClass(SnapshotCodec.loadClass(className));
+                if (!SnapshotLayout.forPlan(om).getSignature().equals(signature)) {
+                    throw new IllegalStateException("The snapshot of " + className + " was stored with different audited fields");
+                }
+                return om;
+            });
+        }
+    }
+
+    /**
+     * The record the snapshot came from, this keeps one snapshot per node so that a cycle comes back
+     * to the same snapshot (which is how a diff knows to stop)
+     */
+    private static final class Record {
+
+        private final ByteBuffer bytes;
+        private final ObjectMetadata[] plans;
+        private final Map<Integer, MappedSnapshot> nodes = new HashMap<>();
+
+        private Record(ByteBuffer bytes, PlanResolver resolver) {
+            this.bytes = bytes;
+            int classTable = bytes.getInt(4);
+            this.plans = new ObjectMetadata[bytes.getInt(classTable)];
+            int offset = classTable + 4;
+            for (int i = 0; i < plans.length; i++) {
+                String className = SnapshotCodec.readString(bytes, offset);
+                offset += 4 + bytes.getInt(offset);
+                String signature = SnapshotCodec.readString(bytes, offset);
+                offset += 4 + bytes.getInt(offset);
+                plans[i] = resolver.resolve(className, signature);
+            }
+        }
+
+        private MappedSnapshot node(int offset) {
+            return nodes.computeIfAbsent(offset, n -> new MappedSnapshot(this, n));
+        }
+    }
+}
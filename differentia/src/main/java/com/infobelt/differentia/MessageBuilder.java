@@ -0,0 +1,45 @@
+package com.infobelt.differentia;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Message builder is the interface that is used to construct the text
+ * representation
+ */
+public interface MessageBuilder {
+
+    String buildDeleteMessage(AuditBuilder auditBuilder, Object oldInstance);
+
+    String buildNewMessage(AuditBuilder builder, Object newInstance);
+
+    String buildChangesMessage(AuditBuilder builder, Object newInstance, Object oldInstance, List<AuditChange> changes);
+
+    String buildChangeMessage(AuditBuilder builder, ObjectMetadata om, AuditChange auditChange);
+
+    /**
+     * Write the message for a change to an appendable rather than building a string
+     *
+     * @param builder     the audit builder
+     * @param om          the plan for the object the change was built from
+     * @param auditChange the change
+     * @param out         where the message is written
+     * @throws IOException if we can't write to out
+     */
+    default void appendChangeMessage(AuditBuilder builder, ObjectMetadata om, AuditChange auditChange, Appendable out) throws IOException {
+        out.append(buildChangeMessage(builder, om, auditChange));
+    }
+
+    /**
+     * Render the message for a change from its fields alone, this is used when we no longer have
+     * the objects the change was built from (for example the change has been stored), the plan is
+     * the one registered on the builder for the entity of the change
+     *
+     * @param builder     the audit builder
+     * @param auditChange the change
+     * @return the message
+     */
+    default String renderMessage(AuditBuilder builder, AuditChange auditChange) {
+        return buildChangeMessage(builder, builder.getEntityMetadata(auditChange.getEntity()), auditChange);
+    }
+}
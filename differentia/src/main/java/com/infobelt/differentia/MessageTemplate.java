@@ -0,0 +1,218 @@
+package com.infobelt.differentia;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A message template such as <code>${entity_caps} ${entityDescriptiveName} changed</code>, parsed once
+ * into literal and placeholder segments.
+ * <p>
+ * The placeholders are the fields of the {@link AuditChange}: <code>entity</code>, <code>entityDescriptiveName</code>,
+ * <code>descriptiveName</code>, <code>relatedEntity</code>, <code>oldValue</code> and <code>newValue</code>. The names (but not
+ * the values) also have <code>_caps</code> and <code>_nocaps</code> variants. A placeholder we don't know, or that has
+ * no value, is left in the message as it is, and <code>$${</code> is written as <code>${</code>.
+ * <p>
+ * Whitespace is normalized as the message is written, so runs of whitespace become a single space and
+ * there is none at the start or end
+ */
+public final class MessageTemplate {
+
+    private static final ConcurrentMap<String, MessageTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final String template;
+    private final Segment[] segments;
+
+    private MessageTemplate(String template) {
+        this.template = template;
+        this.segments = parse(template);
+    }
+
+    /**
+     * Compile a template, templates are cached so each is only parsed once
+     *
+     * @param template the template
+     * @return the compiled template
+     */
+    public static MessageTemplate compile(String template) {
+        return TEMPLATES.computeIfAbsent(template, MessageTemplate::new);
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Render the message for a change
+     *
+     * @param auditChange the change
+     * @return the message
+     */
+    public String render(AuditChange auditChange) {
+        StringBuilder sb = new StringBuilder(template.length() + 32);
+        try {
+            render(auditChange, sb);
+        } catch (IOException e) {
+            // A StringBuilder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Render the message for a change
+     *
+     * @param auditChange the change
+     * @param out         where the message is written
+     * @throws IOException if we can't write to out
+     */
+    public void render(AuditChange auditChange, Appendable out) throws IOException {
+        NormalizingWriter writer = new NormalizingWriter(out);
+        for (Segment segment : segments) {
+            segment.write(auditChange, writer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    private static Segment[] parse(String template) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            if (template.startsWith("$${", i)) {
+                literal.append("${");
+                i += 3;
+                continue;
+            }
+            int end = template.startsWith("${", i) ? template.indexOf('}', i + 2) : -1;
+            if (end < 0) {
+                literal.append(template.charAt(i++));
+                continue;
+            }
+
+            Placeholder placeholder = Placeholder.of(template.substring(i + 2, end));
+            if (placeholder == null) {
+                literal.append(template, i, end + 1);
+            } else {
+                if (literal.length() > 0) {
+                    segments.add(new Literal(literal.toString()));
+                    literal.setLength(0);
+                }
+                segments.add(placeholder);
+            }
+            i = end + 1;
+        }
+        if (literal.length() > 0) {
+            segments.add(new Literal(literal.toString()));
+        }
+        return segments.toArray(new Segment[0]);
+    }
+
+    private interface Segment {
+        void write(AuditChange auditChange, NormalizingWriter writer) throws IOException;
+    }
+
+    private static final class Literal implements Segment {
+        private final String text;
+
+        private Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void write(AuditChange auditChange, NormalizingWriter writer) throws IOException {
+            writer.write(text);
+        }
+    }
+
+    private static final class Placeholder implements Segment {
+        private final String source;
+        private final Function<AuditChange, String> value;
+        private final Function<String, String> variant;
+
+        private Placeholder(String name, Function<AuditChange, String> value, Function<String, String> variant) {
+            this.source = "${" + name + "}";
+            this.value = value;
+            this.variant = variant;
+        }
+
+        /**
+         * @return the placeholder, or null if we don't know the name
+         */
+        private static Placeholder of(String name) {
+            switch (name) {
+                case "oldValue":
+                    return new Placeholder(name, AuditChange::getOldValue, Function.identity());
+                case "newValue":
+                    return new Placeholder(name, AuditChange::getNewValue, Function.identity());
+            }
+
+            Function<String, String> variant = Function.identity();
+            String field = name;
+            if (name.endsWith("_caps")) {
+                variant = StringUtils::capitalize;
+                field = name.substring(0, name.length() - "_caps".length());
+            } else if (name.endsWith("_nocaps")) {
+                variant = StringUtils::lowerCase;
+                field = name.substring(0, name.length() - "_nocaps".length());
+            }
+            switch (field) {
+                case "entity":
+                    return new Placeholder(name, AuditChange::getEntity, variant);
+                case "entityDescriptiveName":
+                    return new Placeholder(name, AuditChange::getEntityDescriptiveName, variant);
+                case "descriptiveName":
+                    return new Placeholder(name, AuditChange::getDescriptiveName, variant);
+                case "relatedEntity":
+                    return new Placeholder(name, AuditChange::getRelatedEntity, variant);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public void write(AuditChange auditChange, NormalizingWriter writer) throws IOException {
+            String text = value.apply(auditChange);
+            writer.write(text == null ? source : variant.apply(text));
+        }
+    }
+
+    /**
+     * Writes through to the appendable, collapsing whitespace as it goes
+     */
+    private static final class NormalizingWriter {
+        private final Appendable out;
+        private boolean started;
+        private boolean pendingSpace;
+
+        private NormalizingWriter(Appendable out) {
+            this.out = out;
+        }
+
+        private void write(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c) || c == '\u00A0') {
+                    pendingSpace = started;
+                } else {
+                    if (pendingSpace) {
+                        out.append(' ');
+                        pendingSpace = false;
+                    }
+                    out.append(c);
+                    started = true;
+                }
+            }
+        }
+    }
+}
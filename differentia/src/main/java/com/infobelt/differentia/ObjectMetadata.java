@@ -0,0 +1,324 @@
+package com.infobelt.differentia;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The audit plan for a class.
+ * <p>
+ * This is worked out once per class from the annotations (see {@link #forClass(Class)}) and is
+ * immutable, so it can be shared across threads and diffs rather than reflecting on every call
+ */
+@Slf4j
+@Getter
+public class ObjectMetadata {
+
+    private static final ClassValue<ObjectMetadata> PLANS = new ClassValue<ObjectMetadata>() {
+        @Override
+        protected ObjectMetadata computeValue(Class<?> type) {
+            return new ObjectMetadata(type);
+        }
+    };
+
+    private final Class<?> clazz;
+    private final AuditMetadata classAnnotation;
+    private final boolean tracked;
+    private final boolean ignoreSelf;
+    private final String entityName;
+    private final List<FieldMetadata> fields;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, FieldMetadata> fieldMap;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Integer> fieldIndexes;
+
+    /**
+     * The indexes of the tracked fields we traverse into, these are always visited when we only diff the dirty fields
+     */
+    @Getter(AccessLevel.NONE)
+    private final BitSet traversedFields;
+
+    /**
+     * The field metadata used for changes on the object itself (ie. the new and deleted changes)
+     */
+    private final FieldMetadata selfField;
+
+    /**
+     * The properties that hold the parents of this object, in the order they were declared
+     */
+    private final List<String> parents;
+    private final String mappedBy;
+    private final boolean join;
+    private final String left;
+    private final String right;
+    private final String id;
+
+    /**
+     * Do we have an ID for the affectedId, either through the id in the annotation or an id property
+     */
+    private final boolean hasId;
+    private final String descriptiveProperty;
+
+    /**
+     * The parts of the descriptive property (if it is a | separated list then there will be more than one)
+     */
+    @Getter(AccessLevel.NONE)
+    private final String[] descriptiveProperties;
+    private final boolean complexDescriptiveProperty;
+
+    @Getter(AccessLevel.NONE)
+    private final PropertyPath descriptivePath;
+    @Getter(AccessLevel.PACKAGE)
+    private final PropertyPath[] descriptivePaths;
+    @Getter(AccessLevel.NONE)
+    private final PropertyPath leftPath;
+    @Getter(AccessLevel.NONE)
+    private final PropertyPath rightPath;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, PropertyPath> parentPaths;
+    @Getter(AccessLevel.NONE)
+    private final PropertyPath idPath;
+    @Getter(AccessLevel.NONE)
+    private final PropertyAccessor idAccessor;
+
+    private ObjectMetadata(Class<?> clazz) {
+        this.clazz = clazz;
+        this.classAnnotation = clazz.getAnnotation(AuditMetadata.class);
+        this.tracked = classAnnotation != null && !classAnnotation.ignore();
+        this.ignoreSelf = classAnnotation != null && classAnnotation.ignoreSelf();
+        this.entityName = classAnnotation == null || "".equals(classAnnotation.name()) ? clazz.getSimpleName() : classAnnotation.name();
+        this.selfField = new FieldMetadata(this, classAnnotation, null);
+
+        List<FieldMetadata> fields = new ArrayList<>();
+        Map<String, FieldMetadata> fieldMap = new HashMap<>();
+        Map<String, Integer> fieldIndexes = new HashMap<>();
+        BitSet traversedFields = new BitSet();
+        List<String> parents = new ArrayList<>();
+        Map<String, PropertyPath> parentPaths = new HashMap<>();
+        if (tracked) {
+            for (Field field : clazz.getDeclaredFields()) {
+                FieldMetadata newFieldMetadata = new FieldMetadata(this, classAnnotation, field);
+                if (newFieldMetadata.isTracked() && newFieldMetadata.isTraversable()) {
+                    traversedFields.set(fields.size());
+                }
+                fieldIndexes.put(newFieldMetadata.getFieldName(), fields.size());
+                fields.add(newFieldMetadata);
+                fieldMap.put(newFieldMetadata.getFieldName(), newFieldMetadata);
+            }
+
+            if (!"".equals(classAnnotation.parent())) {
+                parents.add(classAnnotation.parent());
+            }
+            Collections.addAll(parents, classAnnotation.parents());
+            for (String parent : parents) {
+                parentPaths.put(parent, PropertyPath.compile(parent));
+            }
+        }
+        this.fields = Collections.unmodifiableList(fields);
+        this.fieldMap = Collections.unmodifiableMap(fieldMap);
+        this.fieldIndexes = Collections.unmodifiableMap(fieldIndexes);
+        this.traversedFields = traversedFields;
+        this.parents = Collections.unmodifiableList(parents);
+        this.parentPaths = Collections.unmodifiableMap(parentPaths);
+
+        this.mappedBy = classAnnotation != null ? classAnnotation.mappedBy() : "";
+        this.left = classAnnotation != null ? classAnnotation.left() : "";
+        this.right = classAnnotation != null ? classAnnotation.right() : "";
+        this.leftPath = PropertyPath.compile(left);
+        this.rightPath = PropertyPath.compile(right);
+
+        // We have a join table if both sides are defined
+        this.join = tracked && !"".equals(left) && !"".equals(right);
+        this.id = classAnnotation != null ? classAnnotation.id() : "";
+        this.idPath = !"".equals(id) ? PropertyPath.compile(id) : null;
+        this.idAccessor = PropertyAccessor.forProperty(clazz, "id");
+        this.hasId = idPath != null || idAccessor != null;
+
+        this.descriptiveProperty = classAnnotation != null ? classAnnotation.descriptiveProperty() : "";
+        this.complexDescriptiveProperty = descriptiveProperty.contains("|");
+        String[] parts = descriptiveProperty.split("\\|");
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].trim();
+        }
+        this.descriptiveProperties = parts;
+        this.descriptivePath = PropertyPath.compile(descriptiveProperty);
+        this.descriptivePaths = new PropertyPath[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            descriptivePaths[i] = PropertyPath.compile(parts[i]);
+        }
+    }
+
+    /**
+     * Get the audit plan for a class
+     *
+     * @param clazz the class
+     * @return the (cached) plan
+     */
+    public static ObjectMetadata forClass(Class<?> clazz) {
+        return PLANS.get(clazz);
+    }
+
+    /**
+     * Get the audit plan for the class of an object
+     *
+     * @param object the object
+     * @return the (cached) plan
+     */
+    public static ObjectMetadata of(Object object) {
+        return forClass(object.getClass());
+    }
+
+    public ObjectMetadata getLeft(Object object) {
+        Object leftObject = getLeftObject(object);
+        return leftObject != null ? of(leftObject) : null;
+    }
+
+    public Object getLeftObject(Object object) {
+        try {
+            return leftPath.get(object);
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to access left " + left + " on object " + object, e);
+        }
+    }
+
+    public Object getRightObject(Object object) {
+        try {
+            return rightPath.get(object);
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to access right " + right + " on object " + object, e);
+        }
+    }
+
+    public ObjectMetadata getRight(Object object) {
+        Object rightObject = getRightObject(object);
+        return rightObject != null ? of(rightObject) : null;
+    }
+
+    /**
+     * @return a copy of the parsed parts of the descriptive property
+     */
+    public String[] getDescriptiveProperties() {
+        return descriptiveProperties.clone();
+    }
+
+    public String getEntityDescriptiveName(Object entity) {
+        if (!"".equals(descriptiveProperty)) {
+            try {
+                if (complexDescriptiveProperty) {
+                    StringBuilder descriptiveProp = new StringBuilder();
+                    for (PropertyPath path : descriptivePaths) {
+                        descriptiveProp.append(path.get(entity)).append(" ");
+                    }
+                    return descriptiveProp.toString();
+                } else {
+                    return String.valueOf(descriptivePath.get(entity));
+                }
+            } catch (Exception e) {
+                log.warn("Unable to get descriptive property " + descriptiveProperty + " on object " + entity);
+                throw new RuntimeException("Unable to get descriptive property " + descriptiveProperty + " on object " + entity, e);
+            }
+        }
+
+        // Always worth seeing if we have an ID
+        if (idAccessor != null) {
+            Object id = idAccessor.get(entity);
+            if (id != null) {
+                return String.valueOf(id);
+            }
+        }
+
+        return "";
+    }
+
+    public boolean hasParent() {
+        return !parents.isEmpty();
+    }
+
+    public FieldMetadata getField(String name) {
+        return fieldMap.get(name);
+    }
+
+    /**
+     * @param property the property of a change, a change to one key of a map (or index of an array) has the key
+     *                 after the name of the field, for example limits[gold]
+     * @return the field the change was to, or null if there isn't one
+     */
+    public FieldMetadata getPropertyField(String property) {
+        FieldMetadata fieldMetadata = fieldMap.get(property);
+        int bracket = property.indexOf('[');
+        if (fieldMetadata == null && bracket > 0 && property.endsWith("]")) {
+            fieldMetadata = fieldMap.get(property.substring(0, bracket));
+        }
+        return fieldMetadata;
+    }
+
+    /**
+     * @param name the name of a field
+     * @return the index of the field in {@link #getFields()}, or -1 if there isn't one
+     */
+    public int indexOf(String name) {
+        Integer index = fieldIndexes.get(name);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * The fields to visit when we only diff the dirty ones, which is those and anything we traverse into
+     * (an object we traverse into can change without the field that holds it being set)
+     *
+     * @param dirtyFields the dirty fields
+     * @return the fields to visit
+     */
+    BitSet getVisitedFields(BitSet dirtyFields) {
+        BitSet visited = (BitSet) traversedFields.clone();
+        visited.or(dirtyFields);
+        return visited;
+    }
+
+    /**
+     * Read the descriptive property from the object
+     *
+     * @param o the object
+     * @return the value of the descriptive property
+     */
+    public Object getDescriptiveValue(Object o) {
+        return descriptivePath.get(o);
+    }
+
+    /**
+     * Get the parent held in the given parent property on the object
+     *
+     * @param parent the name of the parent property
+     * @param o      the object
+     * @return the parent object (or null if there isn't one)
+     */
+    public Object getParentObject(String parent, Object o) {
+        try {
+            PropertyPath path = parentPaths.get(parent);
+            return path != null ? path.get(o) : PropertyPath.compile(parent).get(o);
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to get parent " + parent + " on object " + o, e);
+        }
+    }
+
+    public Object getAffectedId(Object o) {
+        try {
+            if (idPath != null) {
+                return idPath.get(o);
+            } else if (idAccessor != null) {
+                return idAccessor.get(o);
+            } else {
+                return null;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to get ID " + id + " on object " + o, e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.infobelt.differentia;
+
+import lombok.Getter;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads a single property from a bean.
+ * <p>
+ * The getter (or the field if there is no getter) is resolved once per class and property
+ * into a {@link MethodHandle}, so reads don't go back through bean introspection
+ */
+@Getter
+public final class PropertyAccessor {
+
+    private static final MethodType GENERIC_GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private static final PropertyAccessor MISSING = new PropertyAccessor(null, null, null, null, null);
+
+    private static final ClassValue<ConcurrentMap<String, PropertyAccessor>> ACCESSORS = new ClassValue<ConcurrentMap<String, PropertyAccessor>>() {
+        @Override
+        protected ConcurrentMap<String, PropertyAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final String name;
+    private final Class<?> propertyType;
+    private final Method readMethod;
+    private final Field field;
+    private final MethodHandle handle;
+
+    private PropertyAccessor(String name, Class<?> propertyType, Method readMethod, Field field, MethodHandle handle) {
+        this.name = name;
+        this.propertyType = propertyType;
+        this.readMethod = readMethod;
+        this.field = field;
+        this.handle = handle;
+    }
+
+    /**
+     * Get the accessor for a property on a class
+     *
+     * @param clazz the class of the bean
+     * @param name  the name of the property
+     * @return the accessor, or null if there is no readable property with that name
+     */
+    public static PropertyAccessor forProperty(Class<?> clazz, String name) {
+        ConcurrentMap<String, PropertyAccessor> accessors = ACCESSORS.get(clazz);
+        PropertyAccessor accessor = accessors.get(name);
+        if (accessor == null) {
+            accessor = resolve(clazz, name);
+            PropertyAccessor existing = accessors.putIfAbsent(name, accessor);
+            if (existing != null) {
+                accessor = existing;
+            }
+        }
+        return accessor == MISSING ? null : accessor;
+    }
+
+    private static PropertyAccessor resolve(Class<?> clazz, String name) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
+                if (name.equals(descriptor.getName()) && descriptor.getReadMethod() != null) {
+                    Method readMethod = descriptor.getReadMethod();
+                    readMethod.setAccessible(true);
+                    return new PropertyAccessor(name, readMethod.getReturnType(), readMethod, null,
+                            lookup.unreflect(readMethod).asType(GENERIC_GETTER));
+                }
+            }
+        } catch (IntrospectionException | IllegalAccessException | RuntimeException e) {
+            // We will fall back to the field
+        }
+
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            try {
+                Field field = current.getDeclaredField(name);
+                field.setAccessible(true);
+                return new PropertyAccessor(name, field.getType(), null, field, lookup.unreflectGetter(field).asType(GENERIC_GETTER));
+            } catch (NoSuchFieldException e) {
+                // Try the super class
+            } catch (IllegalAccessException | RuntimeException e) {
+                return MISSING;
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Read the property from the bean
+     *
+     * @param bean the bean
+     * @return the value
+     */
+    public Object get(Object bean) {
+        try {
+            return (Object) handle.invokeExact(bean);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException("Unable to read property " + name + " on object " + bean, t);
+        }
+    }
+}
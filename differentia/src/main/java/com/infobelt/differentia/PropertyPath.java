@@ -0,0 +1,101 @@
+package com.infobelt.differentia;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+import java.util.Map;
+
+/**
+ * A (possibly nested) property path such as <code>owner.name</code>, compiled into a chain of
+ * {@link PropertyAccessor}s.
+ * <p>
+ * Each step remembers the accessor for the last class it saw, so a path that always sees the
+ * same types never goes back to the accessor cache. Anything we can't handle with a simple
+ * accessor (indexed or mapped properties, maps) falls back to commons-beanutils
+ */
+public final class PropertyPath {
+
+    private final String path;
+    private final String[] segments;
+    private final boolean simple;
+    private final Step[] steps;
+
+    private PropertyPath(String path) {
+        this.path = path;
+        this.segments = path.split("\\.");
+        this.simple = path.indexOf('[') < 0 && path.indexOf('(') < 0;
+        this.steps = new Step[segments.length];
+    }
+
+    /**
+     * Compile a path
+     *
+     * @param path the property path
+     * @return the compiled path
+     */
+    public static PropertyPath compile(String path) {
+        return new PropertyPath(path);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Read the value at the end of the path
+     *
+     * @param bean the bean to start from
+     * @return the value
+     */
+    public Object get(Object bean) {
+        if (bean == null) {
+            throw new IllegalArgumentException("No bean specified for property " + path);
+        }
+        if (!simple) {
+            return getWithPropertyUtils(bean);
+        }
+
+        Object current = bean;
+        for (int i = 0; i < segments.length; i++) {
+            if (current == null) {
+                throw new IllegalArgumentException("Null property value for '" + segments[i - 1] + "' on path " + path);
+            }
+            if (current instanceof Map) {
+                current = ((Map<?, ?>) current).get(segments[i]);
+                continue;
+            }
+
+            Step step = steps[i];
+            if (step == null || step.type != current.getClass()) {
+                PropertyAccessor accessor = PropertyAccessor.forProperty(current.getClass(), segments[i]);
+                if (accessor == null) {
+                    throw new IllegalArgumentException("Unknown property '" + segments[i] + "' on " + current.getClass().getName());
+                }
+                step = new Step(current.getClass(), accessor);
+                steps[i] = step;
+            }
+            current = step.accessor.get(current);
+        }
+        return current;
+    }
+
+    private Object getWithPropertyUtils(Object bean) {
+        try {
+            return PropertyUtils.getProperty(bean, path);
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to read property " + path + " on object " + bean, e);
+        }
+    }
+
+    /**
+     * One resolved step of the path, this is immutable so it is safe to publish racily
+     */
+    private static final class Step {
+        private final Class<?> type;
+        private final PropertyAccessor accessor;
+
+        private Step(Class<?> type, PropertyAccessor accessor) {
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.infobelt.differentia;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Reconciles two full extracts of entities (for example yesterday's and today's) in a single streaming pass,
+ * merging them on their affected id and building the changes for each entity.
+ * <p>
+ * If the extracts are already in order of affected id (see {@link #DEFAULT_ID_ORDER}) set {@link #setSorted(boolean)}
+ * and they are merged as they are read. Otherwise each side is captured as snapshots and sorted in runs of
+ * {@link #getRunSize()}, spilling to temp files when there is more than one run, so memory stays bounded.
+ * <p>
+ * Entities on both sides are diffed as snapshots (see {@link AuditBuilder#buildSnapshotChanges(Snapshot, Snapshot)}),
+ * an entity only in the old extract gets its deleted change and one only in the new extract gets its new change
+ */
+@Getter
+@Setter
+public class Reconciler {
+
+    /**
+     * Integral numbers in numeric order, anything else in order of its string. An id comes back from a spilled
+     * run as the same type (UUIDs, enums, dates and so on, see {@link SnapshotCodec}) except for a type the codec
+     * doesn't know, which comes back as its string, so ordering on the string keeps that in the same order too
+     */
+    public static final Comparator<Object> DEFAULT_ID_ORDER = Reconciler::compareIds;
+
+    private final AuditBuilder auditBuilder;
+
+    /**
+     * The order of the affected ids
+     */
+    private Comparator<Object> idOrder = DEFAULT_ID_ORDER;
+
+    /**
+     * Are the extracts already in order of affected id, if they are we don't need to sort them
+     */
+    private boolean sorted = false;
+
+    /**
+     * The number of entities we sort in memory before spilling a run to disk
+     */
+    private int runSize = 50_000;
+
+    /**
+     * Where the runs are spilled (the default temp directory if this isn't set)
+     */
+    private Path tempDirectory;
+
+    public Reconciler(AuditBuilder auditBuilder) {
+        this.auditBuilder = auditBuilder;
+    }
+
+    public void reconcile(Spliterator<?> oldEntities, Spliterator<?> newEntities, Consumer<? super AuditChange> sink) {
+        reconcile(Spliterators.iterator(oldEntities), Spliterators.iterator(newEntities), sink);
+    }
+
+    /**
+     * Reconcile the two extracts
+     *
+     * @param oldEntities the old extract
+     * @param newEntities the new extract
+     * @param sink        receives the changes, entity by entity in order of affected id
+     */
+    public void reconcile(Iterator<?> oldEntities, Iterator<?> newEntities, Consumer<? super AuditChange> sink) {
+        Iterator<Snapshot> oldSide = null;
+        Iterator<Snapshot> newSide = null;
+        try {
+            oldSide = open(oldEntities);
+            newSide = open(newEntities);
+            Snapshot oldSnapshot = next(oldSide, null);
+            Snapshot newSnapshot = next(newSide, null);
+            while (oldSnapshot != null || newSnapshot != null) {
+                int order = oldSnapshot == null ? 1 : newSnapshot == null ? -1 : idOrder.compare(oldSnapshot.getAffectedId(), newSnapshot.getAffectedId());
+                if (order < 0) {
+                    auditBuilder.buildReconciledChanges(oldSnapshot, null, sink);
+                    oldSnapshot = next(oldSide, oldSnapshot);
+                } else if (order > 0) {
+                    auditBuilder.buildReconciledChanges(null, newSnapshot, sink);
+                    newSnapshot = next(newSide, newSnapshot);
+                } else {
+                    auditBuilder.buildReconciledChanges(oldSnapshot, newSnapshot, sink);
+                    oldSnapshot = next(oldSide, oldSnapshot);
+                    newSnapshot = next(newSide, newSnapshot);
+                }
+            }
+        } finally {
+            if (oldSide instanceof SnapshotSorter) {
+                ((SnapshotSorter) oldSide).close();
+            }
+            if (newSide instanceof SnapshotSorter) {
+                ((SnapshotSorter) newSide).close();
+            }
+        }
+    }
+
+    private Iterator<Snapshot> open(Iterator<?> entities) {
+        if (!sorted) {
+            return new SnapshotSorter(auditBuilder, entities, idOrder, runSize, tempDirectory);
+        }
+        return new Iterator<Snapshot>() {
+            @Override
+            public boolean hasNext() {
+                return entities.hasNext();
+            }
+
+            @Override
+            public Snapshot next() {
+                Object entity = entities.next();
+                if (entity == null || !ObjectMetadata.of(entity).isTracked()) {
+                    throw new IllegalArgumentException("Only audited entities can be reconciled, not " + entity);
+                }
+                return new LiveSnapshot(auditBuilder, entity);
+            }
+        };
+    }
+
+    // The next snapshot on a side, checking the side really is in order
+    private Snapshot next(Iterator<Snapshot> side, Snapshot previous) {
+        if (!side.hasNext()) {
+            return null;
+        }
+        Snapshot snapshot = side.next();
+        if (snapshot.getAffectedId() == null) {
+            throw new IllegalArgumentException("Only entities with an affected id can be reconciled, not " + snapshot.getPlan().getEntityName() + " " + snapshot.getEntityDescriptiveName());
+        }
+        if (previous != null && idOrder.compare(previous.getAffectedId(), snapshot.getAffectedId()) > 0) {
+            throw new IllegalStateException("The entities aren't in order of affected id, " + snapshot.getAffectedId() + " came after " + previous.getAffectedId());
+        }
+        return snapshot;
+    }
+
+    private static int compareIds(Object a, Object b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        }
+        return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+
+    private static boolean isIntegral(Object o) {
+        return o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte;
+    }
+}
@@ -0,0 +1,77 @@
+package com.infobelt.differentia;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+/**
+ * A {@link DifferFactory} for the differs registered through {@link ServiceLoader}, these
+ * are the differs generated at compile time by the differentia-processor
+ * <p>
+ * The differs for a class loader are loaded once and indexed on the class they diff. A differ that can't
+ * be loaded is skipped (and logged), the others are still used
+ */
+@Slf4j
+public class ServiceLoaderDifferFactory implements DifferFactory {
+
+    /**
+     * The differs we have loaded for each class loader, these are only held softly so that the class loader
+     * can still be unloaded, if they are collected we load them again
+     */
+    private static final Map<ClassLoader, SoftReference<Map<Class<?>, Differ<?>>>> LOADED = new WeakHashMap<>();
+
+    private static final ClassValue<Differ<?>> DIFFERS = new ClassValue<Differ<?>>() {
+        @Override
+        protected Differ<?> computeValue(Class<?> type) {
+            ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : ClassLoader.getSystemClassLoader();
+            return getDiffers(classLoader).get(type);
+        }
+    };
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Differ<T> getDiffer(Class<T> type) {
+        return (Differ<T>) DIFFERS.get(type);
+    }
+
+    private static Map<Class<?>, Differ<?>> getDiffers(ClassLoader classLoader) {
+        synchronized (LOADED) {
+            SoftReference<Map<Class<?>, Differ<?>>> reference = LOADED.get(classLoader);
+            Map<Class<?>, Differ<?>> differs = reference != null ? reference.get() : null;
+            if (differs == null) {
+                differs = load(classLoader);
+                LOADED.put(classLoader, new SoftReference<>(differs));
+            }
+            return differs;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Class<?>, Differ<?>> load(ClassLoader classLoader) {
+        Map<Class<?>, Differ<?>> differs = new HashMap<>();
+        Iterator<Differ<?>> iterator = ((ServiceLoader<Differ<?>>) (ServiceLoader<?>) ServiceLoader.load(Differ.class, classLoader)).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+            } catch (ServiceConfigurationError e) {
+                log.warn("Unable to read the generated differs, the rest will use reflection", e);
+                break;
+            }
+            try {
+                Differ<?> differ = iterator.next();
+                differs.putIfAbsent(differ.getType(), differ);
+            } catch (ServiceConfigurationError | RuntimeException e) {
+                log.warn("Unable to load a generated differ, its class will use reflection", e);
+            }
+        }
+        return differs;
+    }
+}
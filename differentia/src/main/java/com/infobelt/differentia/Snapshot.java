@@ -0,0 +1,115 @@
+package com.infobelt.differentia;
+
+import lombok.Getter;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The tracked fields of an audited object, captured so that we can diff against it later without
+ * holding on to (or cloning) the object itself, see {@link AuditBuilder#snapshot(Object)}.
+ * <p>
+ * Fields are read by their index in the plan ({@link ObjectMetadata#getFields()}). Primitive fields are
+ * read with {@link #getLong(int)} (int, long, char and boolean fields) and {@link #getDouble(int)} (float and
+ * double fields), other fields hold their audit value (which is the descriptive value if the field has a
+ * descriptive property). Traversed fields hold a snapshot of the object, or the items of the collection
+ */
+public abstract class Snapshot {
+
+    /**
+     * @return the plan of the class this is a snapshot of
+     */
+    public abstract ObjectMetadata getPlan();
+
+    public abstract Object getAffectedId();
+
+    public abstract String getEntityDescriptiveName();
+
+    /**
+     * @param field the index of the field in the plan
+     * @return the audit value of the field, primitive values are boxed
+     */
+    public abstract Object getValue(int field);
+
+    /**
+     * @param field the index of an int, long, char (the character code) or boolean (1 for true) field in the plan
+     * @return the value
+     */
+    public abstract long getLong(int field);
+
+    /**
+     * @param field the index of a float or double field in the plan
+     * @return the value
+     */
+    public abstract double getDouble(int field);
+
+    /**
+     * @param field the index of a traversed field in the plan
+     * @return the snapshot of the object in the field, or null if there isn't one (or it isn't audited)
+     */
+    public abstract Snapshot getChild(int field);
+
+    /**
+     * @param field the index of a traversed collection in the plan
+     * @return the items in the collection, or null if the collection is null
+     */
+    public abstract List<Item> getItems(int field);
+
+    /**
+     * @return what this snapshot stands for when we are checking if we have already seen it during a diff
+     */
+    Object getIdentity() {
+        return this;
+    }
+
+    /**
+     * @return the fields that have been set since this was captured, or null if we don't know
+     */
+    BitSet getDirtyFields() {
+        return null;
+    }
+
+    SnapshotLayout getLayout() {
+        return SnapshotLayout.forPlan(getPlan());
+    }
+
+    /**
+     * An item from a traversed collection, with everything we need to match it up and report it
+     */
+    @Getter
+    public static final class Item {
+
+        /**
+         * The key the item is matched on (see {@link AuditMetadata#match()})
+         */
+        private final Object key;
+
+        /**
+         * Can the item be matched, if not it is always reported as added or removed
+         */
+        private final boolean matchable;
+
+        /**
+         * The value we report when the item is added or removed
+         */
+        private final String value;
+
+        /**
+         * The name we report as the related entity when the item is added or removed
+         */
+        private final String name;
+
+        /**
+         * The snapshot of the item, or null if it isn't audited itself (for example a string)
+         */
+        private final Snapshot snapshot;
+
+        Item(Object key, boolean matchable, String value, String name, Snapshot snapshot) {
+            this.key = key;
+            this.matchable = matchable;
+            this.value = value;
+            this.name = name;
+            this.snapshot = snapshot;
+        }
+    }
+}
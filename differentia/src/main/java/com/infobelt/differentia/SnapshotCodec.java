@@ -0,0 +1,452 @@
+package com.infobelt.differentia;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Writes a snapshot as a record of bytes, and reads the values back out of one.
+ * <p>
+ * A record starts with its length and the offset of its class table, then the snapshot and everything it
+ * reaches. Each snapshot is a node laid out from its {@link SnapshotLayout}: the index of its class, offsets
+ * to its affected id and descriptive name, a long for each primitive slot and an offset for each object slot.
+ * The values the offsets point to (audit values, child nodes and lists of items) follow the nodes, so any field
+ * can be read without reading the ones before it. All offsets are from the start of the record, and
+ * {@link #NONE} is a null.
+ * <p>
+ * Maps, collections and arrays are written with their contents, and UUIDs, enums, dates and java.time values
+ * as themselves, so they come back as the same type and are compared and formatted the same way as the live
+ * values (see {@link ValueTypes}). Anything else is written as its string, which is what it is compared on
+ * if nothing else matches
+ */
+final class SnapshotCodec {
+
+    static final int NONE = -1;
+    static final int UNMATCHABLE = -2;
+
+    static final int RECORD_HEADER = 8;
+    static final int NODE_HEADER = 12;
+    static final int ITEM_SIZE = 16;
+
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte CHAR = 7;
+    private static final byte SHORT = 8;
+    private static final byte BYTE = 9;
+    private static final byte BIG_DECIMAL = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte DATE = 12;
+    private static final byte UUID_VALUE = 13;
+    private static final byte ENUM = 14;
+    private static final byte TIME = 15;
+    private static final byte ZONE = 16;
+    private static final byte DATE_OF = 17;
+    private static final byte ARRAY = 18;
+    private static final byte LIST = 19;
+    private static final byte SET = 20;
+    private static final byte MAP = 21;
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{int.class, long.class, double.class, float.class, boolean.class, char.class, short.class, byte.class}) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+    }
+
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private final Map<Object, Integer> nodes = new IdentityHashMap<>();
+    private final Map<ObjectMetadata, Integer> classes = new HashMap<>();
+    private final List<ObjectMetadata> classTable = new ArrayList<>();
+
+    /**
+     * Write a snapshot as a record, the buffer that comes back is reused by the next call
+     *
+     * @param snapshot the snapshot
+     * @return the record, from position to limit
+     */
+    ByteBuffer encode(Snapshot snapshot) {
+        buffer.clear();
+        nodes.clear();
+        classes.clear();
+        classTable.clear();
+
+        buffer.position(RECORD_HEADER);
+        writeNode(snapshot);
+
+        int classTableOffset = buffer.position();
+        ensure(4);
+        buffer.putInt(classTable.size());
+        for (ObjectMetadata om : classTable) {
+            writeString(om.getClazz().getName());
+            writeString(SnapshotLayout.forPlan(om).getSignature());
+        }
+
+        buffer.putInt(0, buffer.position());
+        buffer.putInt(4, classTableOffset);
+        buffer.flip();
+        return buffer;
+    }
+
+    private int writeNode(Snapshot snapshot) {
+        Integer written = nodes.get(snapshot.getIdentity());
+        if (written != null) {
+            return written;
+        }
+
+        ObjectMetadata om = snapshot.getPlan();
+        SnapshotLayout layout = SnapshotLayout.forPlan(om);
+        int node = reserve(NODE_HEADER + layout.getPrimitiveSlots() * 8 + layout.getObjectSlots() * 4);
+
+        // We register the node before we write its fields, so a cycle back to it finds it
+        nodes.put(snapshot.getIdentity(), node);
+
+        // Writing a value can grow the buffer, so we always write it before we put its offset
+        buffer.putInt(node, classIndex(om));
+        int affectedId = writeValue(snapshot.getAffectedId());
+        buffer.putInt(node + 4, affectedId);
+        int entityDescriptiveName = writeValue(snapshot.getEntityDescriptiveName());
+        buffer.putInt(node + 8, entityDescriptiveName);
+
+        int primitives = node + NODE_HEADER;
+        int objects = primitives + layout.getPrimitiveSlots() * 8;
+        for (int i = 0; i < layout.getFieldCount(); i++) {
+            SnapshotLayout.Kind kind = layout.getKind(i);
+            int slot = layout.getSlot(i);
+            if (kind.isPrimitive()) {
+                long bits = kind == SnapshotLayout.Kind.FLOAT || kind == SnapshotLayout.Kind.DOUBLE
+                        ? Double.doubleToRawLongBits(snapshot.getDouble(i)) : snapshot.getLong(i);
+                buffer.putLong(primitives + slot * 8, bits);
+            } else if (kind == SnapshotLayout.Kind.OBJECT) {
+                int offset = writeValue(snapshot.getValue(i));
+                buffer.putInt(objects + slot * 4, offset);
+            } else if (kind == SnapshotLayout.Kind.CHILD) {
+                Snapshot child = snapshot.getChild(i);
+                int offset = child != null ? writeNode(child) : NONE;
+                buffer.putInt(objects + slot * 4, offset);
+            } else if (kind == SnapshotLayout.Kind.ITEMS) {
+                List<Snapshot.Item> items = snapshot.getItems(i);
+                int offset = items != null ? writeItems(items) : NONE;
+                buffer.putInt(objects + slot * 4, offset);
+            }
+        }
+        return node;
+    }
+
+    private int writeItems(List<Snapshot.Item> items) {
+        int list = reserve(4 + items.size() * ITEM_SIZE);
+        buffer.putInt(list, items.size());
+        int item = list + 4;
+        for (Snapshot.Item i : items) {
+            int key = i.isMatchable() ? writeValue(i.getKey()) : UNMATCHABLE;
+            buffer.putInt(item, key);
+            int value = writeValue(i.getValue());
+            buffer.putInt(item + 4, value);
+            int name = writeValue(i.getName());
+            buffer.putInt(item + 8, name);
+            int node = i.getSnapshot() != null ? writeNode(i.getSnapshot()) : NONE;
+            buffer.putInt(item + 12, node);
+            item += ITEM_SIZE;
+        }
+        return list;
+    }
+
+    private int classIndex(ObjectMetadata om) {
+        Integer index = classes.get(om);
+        if (index == null) {
+            index = classTable.size();
+            classes.put(om, index);
+            classTable.add(om);
+        }
+        return index;
+    }
+
+    private int writeValue(Object value) {
+        if (value == null) {
+            return NONE;
+        }
+        int offset = buffer.position();
+        ensure(9);
+        if (value instanceof String) {
+            buffer.put(STRING);
+            writeString((String) value);
+        } else if (value instanceof Integer) {
+            buffer.put(INT).putInt((Integer) value);
+        } else if (value instanceof Long) {
+            buffer.put(LONG).putLong((Long) value);
+        } else if (value instanceof Double) {
+            buffer.put(DOUBLE).putDouble((Double) value);
+        } else if (value instanceof Float) {
+            buffer.put(FLOAT).putFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            buffer.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof Character) {
+            buffer.put(CHAR).putChar((Character) value);
+        } else if (value instanceof Short) {
+            buffer.put(SHORT).putShort((Short) value);
+        } else if (value instanceof Byte) {
+            buffer.put(BYTE).put((Byte) value);
+        } else if (value instanceof BigDecimal) {
+            buffer.put(BIG_DECIMAL);
+            writeString(value.toString());
+        } else if (value instanceof BigInteger) {
+            buffer.put(BIG_INTEGER);
+            writeString(value.toString());
+        } else if (value.getClass() == Date.class) {
+            buffer.put(DATE).putLong(((Date) value).getTime());
+        } else if (value instanceof Date) {
+            buffer.put(DATE_OF);
+            writeString(value.getClass().getName());
+            ensure(12);
+            buffer.putLong(((Date) value).getTime()).putInt(value instanceof Timestamp ? ((Timestamp) value).getNanos() : 0);
+        } else if (value instanceof UUID) {
+            ensure(17);
+            buffer.put(UUID_VALUE).putLong(((UUID) value).getMostSignificantBits()).putLong(((UUID) value).getLeastSignificantBits());
+        } else if (value instanceof Enum) {
+            buffer.put(ENUM);
+            writeString(((Enum<?>) value).getDeclaringClass().getName());
+            writeString(((Enum<?>) value).name());
+        } else if (value instanceof ZoneId) {
+            buffer.put(ZONE);
+            writeString(((ZoneId) value).getId());
+        } else if (value.getClass().getName().startsWith("java.time.")) {
+            buffer.put(TIME);
+            writeString(value.getClass().getName());
+            writeString(value.toString());
+        } else if (value.getClass().isArray()) {
+            buffer.put(ARRAY);
+            writeString(value.getClass().getComponentType().getName());
+            int length = Array.getLength(value);
+            int items = reserve(4 + length * 4);
+            buffer.putInt(items, length);
+            for (int i = 0; i < length; i++) {
+                int item = writeValue(Array.get(value, i));
+                buffer.putInt(items + 4 + i * 4, item);
+            }
+        } else if (value instanceof Collection) {
+            buffer.put(value instanceof Set ? SET : LIST);
+            Collection<?> values = (Collection<?>) value;
+            int items = reserve(4 + values.size() * 4);
+            buffer.putInt(items, values.size());
+            int i = items + 4;
+            for (Object o : values) {
+                int item = writeValue(o);
+                buffer.putInt(i, item);
+                i += 4;
+            }
+        } else if (value instanceof Map) {
+            buffer.put(MAP);
+            Map<?, ?> map = (Map<?, ?>) value;
+            int entries = reserve(4 + map.size() * 8);
+            buffer.putInt(entries, map.size());
+            int i = entries + 4;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                int key = writeValue(entry.getKey());
+                buffer.putInt(i, key);
+                int item = writeValue(entry.getValue());
+                buffer.putInt(i + 4, item);
+                i += 8;
+            }
+        } else {
+            buffer.put(STRING);
+            writeString(String.valueOf(value));
+        }
+        return offset;
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    // Make room for a block we will fill in with absolute puts
+    private int reserve(int size) {
+        ensure(size);
+        int offset = buffer.position();
+        buffer.position(offset + size);
+        return offset;
+    }
+
+    private void ensure(int size) {
+        if (buffer.remaining() < size) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    /**
+     * Read a value written by {@link #writeValue(Object)}
+     *
+     * @param bytes  the bytes
+     * @param offset where the value starts, or {@link #NONE}
+     * @return the value
+     */
+    static Object readValue(ByteBuffer bytes, int offset) {
+        if (offset == NONE) {
+            return null;
+        }
+        byte tag = bytes.get(offset);
+        int at = offset + 1;
+        switch (tag) {
+            case STRING:
+                return readString(bytes, at);
+            case INT:
+                return bytes.getInt(at);
+            case LONG:
+                return bytes.getLong(at);
+            case DOUBLE:
+                return bytes.getDouble(at);
+            case FLOAT:
+                return bytes.getFloat(at);
+            case BOOLEAN:
+                return bytes.get(at) != 0;
+            case CHAR:
+                return bytes.getChar(at);
+            case SHORT:
+                return bytes.getShort(at);
+            case BYTE:
+                return bytes.get(at);
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(bytes, at));
+            case BIG_INTEGER:
+                return new BigInteger(readString(bytes, at));
+            case DATE:
+                return new Date(bytes.getLong(at));
+            case DATE_OF:
+                return readDate(bytes, at);
+            case UUID_VALUE:
+                return new UUID(bytes.getLong(at), bytes.getLong(at + 8));
+            case ENUM:
+                return readEnum(bytes, at);
+            case ZONE:
+                return ZoneId.of(readString(bytes, at));
+            case TIME:
+                return readTime(bytes, at);
+            case ARRAY:
+                String componentType = readString(bytes, at);
+                at += 4 + bytes.getInt(at);
+                return readArray(bytes, at, loadClass(componentType));
+            case LIST:
+            case SET:
+                int size = bytes.getInt(at);
+                Collection<Object> values = tag == SET ? new LinkedHashSet<>() : new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readValue(bytes, bytes.getInt(at + 4 + i * 4)));
+                }
+                return values;
+            case MAP:
+                int entries = bytes.getInt(at);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < entries; i++) {
+                    int entry = at + 4 + i * 8;
+                    map.put(readValue(bytes, bytes.getInt(entry)), readValue(bytes, bytes.getInt(entry + 4)));
+                }
+                return map;
+            default:
+                throw new IllegalStateException("Unknown value type " + tag + " at " + offset + " in a snapshot record");
+        }
+    }
+
+    // An array of objects we wrote as their strings comes back as an array of objects
+    private static Object readArray(ByteBuffer bytes, int offset, Class<?> componentType) {
+        int length = bytes.getInt(offset);
+        Object[] items = new Object[length];
+        boolean sameType = true;
+        for (int i = 0; i < length; i++) {
+            items[i] = readValue(bytes, bytes.getInt(offset + 4 + i * 4));
+            sameType &= items[i] == null || componentType.isPrimitive() || componentType.isInstance(items[i]);
+        }
+        if (!sameType) {
+            return items;
+        }
+        Object array = Array.newInstance(componentType, length);
+        for (int i = 0; i < length; i++) {
+            Array.set(array, i, items[i]);
+        }
+        return array;
+    }
+
+    // A date of a class we can't build from its time comes back as a date
+    private static Date readDate(ByteBuffer bytes, int offset) {
+        String className = readString(bytes, offset);
+        int at = offset + 4 + bytes.getInt(offset);
+        long time = bytes.getLong(at);
+        try {
+            Date date = (Date) loadClass(className).getConstructor(long.class).newInstance(time);
+            if (date instanceof Timestamp) {
+                ((Timestamp) date).setNanos(bytes.getInt(at + 8));
+            }
+            return date;
+        } catch (NoSuchMethodException e) {
+            return new Date(time);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to read a " + className + " from a snapshot record", e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(ByteBuffer bytes, int offset) {
+        String className = readString(bytes, offset);
+        String name = readString(bytes, offset + 4 + bytes.getInt(offset));
+        return Enum.valueOf((Class<? extends Enum>) loadClass(className), name);
+    }
+
+    // The java.time values can all be parsed back from their string
+    private static Object readTime(ByteBuffer bytes, int offset) {
+        String className = readString(bytes, offset);
+        String text = readString(bytes, offset + 4 + bytes.getInt(offset));
+        try {
+            return loadClass(className).getMethod("parse", CharSequence.class).invoke(null, text);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to read a " + className + " from a snapshot record", e);
+        }
+    }
+
+    /**
+     * Load a class named in a record, with the context class loader if there is one
+     */
+    static Class<?> loadClass(String className) {
+        Class<?> primitive = PRIMITIVES.get(className);
+        if (primitive != null) {
+            return primitive;
+        }
+        try {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            return Class.forName(className, false, loader != null ? loader : SnapshotCodec.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to find class " + className + " for a stored snapshot", e);
+        }
+    }
+
+    static String readString(ByteBuffer bytes, int offset) {
+        int length = bytes.getInt(offset);
+        byte[] data = new byte[length];
+        ByteBuffer view = bytes.duplicate();
+        view.position(offset + 4);
+        view.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+package com.infobelt.differentia;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An open addressing index from affected id to the position of a record, it only holds the hash of each id
+ * and the position so that it stays small, the id itself is read back from the record to check a match.
+ * <p>
+ * Ids are matched on their value, or on their string if they were stored as one (see {@link SnapshotCodec})
+ */
+final class SnapshotIndex {
+
+    private static final long EMPTY = -1L;
+
+    interface Ids {
+        Object idAt(long position);
+    }
+
+    private final Ids ids;
+    private int[] hashes;
+    private long[] positions;
+    private int size;
+
+    SnapshotIndex(Ids ids) {
+        this.ids = ids;
+        this.hashes = new int[1024];
+        this.positions = new long[1024];
+        Arrays.fill(positions, EMPTY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the position of the record for the id, or -1 if there isn't one
+     */
+    long get(Object id) {
+        int hash = hash(id);
+        int mask = positions.length - 1;
+        for (int i = hash & mask; positions[i] != EMPTY; i = (i + 1) & mask) {
+            if (hashes[i] == hash && matches(ids.idAt(positions[i]), id)) {
+                return positions[i];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Point the id at a record, replacing the record it pointed to before
+     */
+    void put(Object id, long position) {
+        int hash = hash(id);
+        int mask = positions.length - 1;
+        int i = hash & mask;
+        for (; positions[i] != EMPTY; i = (i + 1) & mask) {
+            if (hashes[i] == hash && matches(ids.idAt(positions[i]), id)) {
+                positions[i] = position;
+                return;
+            }
+        }
+        hashes[i] = hash;
+        positions[i] = position;
+        if (++size * 2 > positions.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        int[] oldHashes = hashes;
+        long[] oldPositions = positions;
+        hashes = new int[oldHashes.length * 2];
+        positions = new long[oldPositions.length * 2];
+        Arrays.fill(positions, EMPTY);
+        int mask = positions.length - 1;
+        for (int j = 0; j < oldPositions.length; j++) {
+            if (oldPositions[j] != EMPTY) {
+                int i = oldHashes[j] & mask;
+                while (positions[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                hashes[i] = oldHashes[j];
+                positions[i] = oldPositions[j];
+            }
+        }
+    }
+
+    // We hash the string of the id so that an id stored as a string still finds its way back
+    private static int hash(Object id) {
+        int h = String.valueOf(id).hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(Object stored, Object id) {
+        return Objects.equals(stored, id) || (stored instanceof String && stored.equals(String.valueOf(id)));
+    }
+}
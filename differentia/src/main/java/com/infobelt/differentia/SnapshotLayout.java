@@ -0,0 +1,183 @@
+package com.infobelt.differentia;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * How the tracked fields of a class are laid out in a {@link Snapshot}, this is worked out once per class
+ * from the plan. Primitive fields get a slot in the primitive storage, everything else gets a slot in
+ * the object storage
+ */
+final class SnapshotLayout {
+
+    enum Kind {
+        /**
+         * The field isn't tracked, so it isn't in the snapshot
+         */
+        NONE,
+        INT,
+        LONG,
+        CHAR,
+        BOOLEAN,
+        FLOAT,
+        DOUBLE,
+
+        /**
+         * The audit value of the field (the descriptive value if it has a descriptive property)
+         */
+        OBJECT,
+
+        /**
+         * A traversed object, held as a snapshot of its own
+         */
+        CHILD,
+
+        /**
+         * A traversed collection, held as a list of {@link Snapshot.Item}s
+         */
+        ITEMS;
+
+        boolean isPrimitive() {
+            return this != NONE && this != OBJECT && this != CHILD && this != ITEMS;
+        }
+    }
+
+    private static final ClassValue<SnapshotLayout> LAYOUTS = new ClassValue<SnapshotLayout>() {
+        @Override
+        protected SnapshotLayout computeValue(Class<?> type) {
+            return new SnapshotLayout(ObjectMetadata.forClass(type));
+        }
+    };
+
+    private final ObjectMetadata plan;
+    private final Kind[] kinds;
+    private final int[] slots;
+    private final int primitiveSlots;
+    private final int objectSlots;
+    private final String signature;
+
+    private SnapshotLayout(ObjectMetadata plan) {
+        this.plan = plan;
+        List<FieldMetadata> fields = plan.getFields();
+        this.kinds = new Kind[fields.size()];
+        this.slots = new int[fields.size()];
+
+        int primitives = 0;
+        int objects = 0;
+        StringBuilder signature = new StringBuilder(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            kinds[i] = kindOf(fields.get(i));
+            signature.append((char) ('A' + kinds[i].ordinal()));
+            if (kinds[i] == Kind.NONE) {
+                slots[i] = -1;
+            } else if (kinds[i].isPrimitive()) {
+                slots[i] = primitives++;
+            } else {
+                slots[i] = objects++;
+            }
+        }
+        this.primitiveSlots = primitives;
+        this.objectSlots = objects;
+        this.signature = signature.toString();
+    }
+
+    static SnapshotLayout forPlan(ObjectMetadata plan) {
+        return LAYOUTS.get(plan.getClazz());
+    }
+
+    private static Kind kindOf(FieldMetadata fieldMetadata) {
+        if (!fieldMetadata.isTracked() || fieldMetadata.getAccessor() == null) {
+            return Kind.NONE;
+        }
+        Class<?> type = fieldMetadata.getFieldType();
+        if (fieldMetadata.isTraversable()) {
+            return Collection.class.isAssignableFrom(type) ? Kind.ITEMS : Kind.CHILD;
+        }
+        if (fieldMetadata.getDescriptivePath() != null || !type.isPrimitive()) {
+            return Kind.OBJECT;
+        }
+        if (type == long.class) {
+            return Kind.LONG;
+        } else if (type == char.class) {
+            return Kind.CHAR;
+        } else if (type == boolean.class) {
+            return Kind.BOOLEAN;
+        } else if (type == float.class) {
+            return Kind.FLOAT;
+        } else if (type == double.class) {
+            return Kind.DOUBLE;
+        }
+        return Kind.INT;
+    }
+
+    ObjectMetadata getPlan() {
+        return plan;
+    }
+
+    Kind getKind(int field) {
+        return kinds[field];
+    }
+
+    int getSlot(int field) {
+        return slots[field];
+    }
+
+    int getFieldCount() {
+        return kinds.length;
+    }
+
+    int getPrimitiveSlots() {
+        return primitiveSlots;
+    }
+
+    int getObjectSlots() {
+        return objectSlots;
+    }
+
+    /**
+     * @return the kinds of the fields as a string, if the plan of a class changes so does this
+     */
+    String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Store a primitive value as the bits we keep in the primitive storage
+     */
+    static long toBits(Kind kind, Object value) {
+        switch (kind) {
+            case BOOLEAN:
+                return ((Boolean) value) ? 1 : 0;
+            case CHAR:
+                return (Character) value;
+            case FLOAT:
+                return Double.doubleToRawLongBits((Float) value);
+            case DOUBLE:
+                return Double.doubleToRawLongBits((Double) value);
+            default:
+                return ((Number) value).longValue();
+        }
+    }
+
+    /**
+     * Box the bits from the primitive storage back into the value
+     */
+    static Object fromBits(Kind kind, long bits) {
+        switch (kind) {
+            case INT:
+                return (int) bits;
+            case LONG:
+                return bits;
+            case CHAR:
+                return (char) bits;
+            case BOOLEAN:
+                return bits != 0;
+            case FLOAT:
+                return (float) Double.longBitsToDouble(bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                throw new IllegalArgumentException(kind + " isn't a primitive");
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.infobelt.differentia;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Captures the entities from a source and hands their snapshots back in order of affected id, using
+ * an external sort when there are more than fit in a run.
+ * <p>
+ * Each run is sorted in memory and (if there is more than one) written to a temp file with {@link SnapshotCodec},
+ * the runs are then merged reading one snapshot at a time from each. The temp files are removed on close
+ */
+final class SnapshotSorter implements Iterator<Snapshot>, Closeable {
+
+    private final AuditBuilder auditBuilder;
+    private final Comparator<Object> idOrder;
+    private final Comparator<Snapshot> snapshotOrder;
+    private final Path tempDirectory;
+    private final List<Run> runs = new ArrayList<>();
+    private final MappedSnapshot.Plans plans = new MappedSnapshot.Plans();
+
+    private Iterator<Snapshot> inMemory;
+    private PriorityQueue<Run> merge;
+
+    SnapshotSorter(AuditBuilder auditBuilder, Iterator<?> source, Comparator<Object> idOrder, int runSize, Path tempDirectory) {
+        this.auditBuilder = auditBuilder;
+        this.idOrder = idOrder;
+        this.snapshotOrder = (a, b) -> idOrder.compare(a.getAffectedId(), b.getAffectedId());
+        this.tempDirectory = tempDirectory;
+
+        try {
+            List<Snapshot> run = new ArrayList<>();
+            while (source.hasNext()) {
+                run.add(capture(source.next()));
+                if (run.size() >= runSize) {
+                    spill(run);
+                    run.clear();
+                }
+            }
+
+            if (runs.isEmpty()) {
+                run.sort(snapshotOrder);
+                inMemory = run.iterator();
+            } else {
+                if (!run.isEmpty()) {
+                    spill(run);
+                }
+                merge = new PriorityQueue<>(runs.size(), (a, b) -> {
+                    int order = idOrder.compare(a.headId, b.headId);
+                    return order != 0 ? order : Integer.compare(a.index, b.index);
+                });
+                for (Run r : runs) {
+                    if (r.advance()) {
+                        merge.add(r);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Unable to sort the snapshots into runs in " + tempDirectory, e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private Snapshot capture(Object entity) {
+        Snapshot snapshot = auditBuilder.snapshot(entity);
+        if (snapshot.getAffectedId() == null) {
+            throw new IllegalArgumentException("Only entities with an affected id can be reconciled, not " + snapshot.getPlan().getEntityName() + " " + snapshot.getEntityDescriptiveName());
+        }
+        return snapshot;
+    }
+
+    private void spill(List<Snapshot> snapshots) throws IOException {
+        snapshots.sort(snapshotOrder);
+        Path file = tempDirectory != null ? Files.createTempFile(tempDirectory, "differentia-run", ".tmp") : Files.createTempFile("differentia-run", ".tmp");
+        Run run = new Run(runs.size(), file, snapshots.size(), plans);
+        runs.add(run);
+
+        SnapshotCodec codec = new SnapshotCodec();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (Snapshot snapshot : snapshots) {
+                ByteBuffer record = codec.encode(snapshot);
+                out.writeInt(record.limit());
+                out.write(record.array(), record.arrayOffset(), record.limit());
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return inMemory != null ? inMemory.hasNext() : merge != null && !merge.isEmpty();
+    }
+
+    @Override
+    public Snapshot next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (inMemory != null) {
+            return inMemory.next();
+        }
+
+        Run run = merge.poll();
+        Snapshot head = run.head;
+        try {
+            if (run.advance()) {
+                merge.add(run);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read the sorted run " + run.file, e);
+        }
+        return head;
+    }
+
+    @Override
+    public void close() {
+        for (Run run : runs) {
+            run.close();
+        }
+    }
+
+    private static final class Run {
+
+        private final int index;
+        private final Path file;
+        private final MappedSnapshot.Plans plans;
+        private int remaining;
+        private DataInputStream in;
+        private Snapshot head;
+        private Object headId;
+
+        private Run(int index, Path file, int size, MappedSnapshot.Plans plans) {
+            this.index = index;
+            this.file = file;
+            this.plans = plans;
+            this.remaining = size;
+        }
+
+        // Read the next snapshot in the run, or close it if there are no more
+        private boolean advance() throws IOException {
+            if (remaining == 0) {
+                close();
+                return false;
+            }
+            if (in == null) {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            }
+            byte[] record = new byte[in.readInt()];
+            in.readFully(record);
+            remaining--;
+            head = MappedSnapshot.read(ByteBuffer.wrap(record), plans);
+            headId = head.getAffectedId();
+            return true;
+        }
+
+        private void close() {
+            head = null;
+            try {
+                if (in != null) {
+                    in.close();
+                    in = null;
+                }
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
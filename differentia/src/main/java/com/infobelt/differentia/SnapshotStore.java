@@ -0,0 +1,227 @@
+package com.infobelt.differentia;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps snapshots on disk in memory-mapped segment files, so that the previous state of a very large
+ * number of entities can be held without it being on the heap.
+ * <p>
+ * Each snapshot is written as a record laid out from the plan of its class (see {@link SnapshotCodec}) and
+ * indexed on its affected id. The snapshots that come back read their fields straight from the mapped bytes,
+ * so they can be handed to {@link AuditBuilder#buildSnapshotChanges(Snapshot, Object)} without building
+ * any objects. Putting a snapshot for an id that is already there replaces it, the old record stays in its
+ * segment.
+ * <p>
+ * Opening a directory that already has segments reads them back in. A store isn't thread-safe
+ */
+@Slf4j
+public class SnapshotStore implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "snapshots-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final AuditBuilder auditBuilder;
+
+    @Getter
+    private final Path directory;
+
+    @Getter
+    private final int segmentSize;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final SnapshotIndex index = new SnapshotIndex(this::readAffectedId);
+    private final SnapshotCodec codec = new SnapshotCodec();
+    private final MappedSnapshot.Plans plans = new MappedSnapshot.Plans();
+    private boolean closed;
+
+    public SnapshotStore(AuditBuilder auditBuilder, Path directory) {
+        this(auditBuilder, directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param auditBuilder the audit builder used to capture objects
+     * @param directory    where the segments are kept
+     * @param segmentSize  the size of each segment file, a snapshot that is bigger gets a segment of its own
+     */
+    public SnapshotStore(AuditBuilder auditBuilder, Path directory, int segmentSize) {
+        this.auditBuilder = auditBuilder;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                stream.forEach(files::add);
+            }
+            files.sort(null);
+            for (Path file : files) {
+                Segment segment = new Segment(file, Files.size(file));
+                segments.add(segment);
+                segment.load(segments.size() - 1);
+            }
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Unable to open the snapshot store in " + directory, e);
+        }
+    }
+
+    /**
+     * Capture an object and store its snapshot
+     *
+     * @param instance the object, which must be audited and have an affected id
+     */
+    public void put(Object instance) {
+        put(auditBuilder.snapshot(instance));
+    }
+
+    /**
+     * Store a snapshot, replacing any snapshot with the same affected id
+     *
+     * @param snapshot the snapshot, which must have an affected id
+     */
+    public void put(Snapshot snapshot) {
+        checkOpen();
+        Object affectedId = snapshot.getAffectedId();
+        if (affectedId == null) {
+            throw new IllegalArgumentException("Only a snapshot with an affected id can be stored, not " + snapshot.getPlan().getEntityName() + " " + snapshot.getEntityDescriptiveName());
+        }
+
+        ByteBuffer record = codec.encode(snapshot);
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.used + record.remaining() > segment.buffer.capacity()) {
+            segment = newSegment(record.remaining());
+        }
+        int offset = segment.used;
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(offset);
+        target.put(record);
+        segment.used += record.limit();
+        index.put(affectedId, position(segments.size() - 1, offset));
+    }
+
+    /**
+     * @param affectedId the affected id of the entity
+     * @return the snapshot of the entity, read from the mapped segment, or null if there isn't one
+     */
+    public Snapshot get(Object affectedId) {
+        checkOpen();
+        long position = index.get(affectedId);
+        return position < 0 ? null : MappedSnapshot.read(record(position), plans);
+    }
+
+    public boolean contains(Object affectedId) {
+        checkOpen();
+        return index.get(affectedId) >= 0;
+    }
+
+    /**
+     * @return the number of entities we have a snapshot for
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Write anything still in memory out to the segment files
+     */
+    public void force() {
+        checkOpen();
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            try {
+                if (segment.buffer != null) {
+                    segment.buffer.force();
+                }
+                segment.channel.close();
+            } catch (IOException e) {
+                log.warn("Unable to close snapshot segment " + segment.file, e);
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The snapshot store in " + directory + " has been closed");
+        }
+    }
+
+    private Segment newSegment(int recordSize) {
+        Path file = directory.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, segments.size(), SEGMENT_SUFFIX));
+        try {
+            Segment segment = new Segment(file, Math.max(segmentSize, recordSize));
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create snapshot segment " + file, e);
+        }
+    }
+
+    private static long position(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    // The record at a position, as a buffer of its own starting at 0
+    private ByteBuffer record(long position) {
+        MappedByteBuffer buffer = segments.get((int) (position >>> 32)).buffer;
+        int offset = (int) position;
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset);
+        record.limit(offset + buffer.getInt(offset));
+        return record.slice();
+    }
+
+    private Object readAffectedId(long position) {
+        return MappedSnapshot.readAffectedId(record(position));
+    }
+
+    private final class Segment {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int used;
+
+        private Segment(Path file, long size) throws IOException {
+            this.file = file;
+            this.channel = new RandomAccessFile(file.toFile(), "rw").getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        // Index the records that are already in the segment, the space after the last one is still zeros
+        private void load(int segmentIndex) {
+            while (used + 4 <= buffer.capacity()) {
+                int length = buffer.getInt(used);
+                if (length <= 0) {
+                    break;
+                }
+                index.put(readAffectedId(position(segmentIndex, used)), position(segmentIndex, used));
+                used += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.infobelt.differentia;
+
+/**
+ * Decides if two audit values of a type are equal, registered with {@link ValueTypes}
+ *
+ * @param <T> the type of the values
+ */
+@FunctionalInterface
+public interface ValueComparator<T> {
+
+    /**
+     * @param oldValue the old value, never null
+     * @param newValue the new value, never null
+     * @return true if the values are the same, so the field hasn't changed
+     */
+    boolean isEqual(T oldValue, T newValue);
+
+    /**
+     * Compares int (and short, byte) fields without boxing them
+     */
+    @FunctionalInterface
+    interface OfInt {
+        boolean isEqual(int oldValue, int newValue);
+    }
+
+    /**
+     * Compares long fields without boxing them
+     */
+    @FunctionalInterface
+    interface OfLong {
+        boolean isEqual(long oldValue, long newValue);
+    }
+
+    /**
+     * Compares double (and float) fields without boxing them
+     */
+    @FunctionalInterface
+    interface OfDouble {
+        boolean isEqual(double oldValue, double newValue);
+    }
+}
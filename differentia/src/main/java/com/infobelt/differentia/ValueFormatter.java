@@ -0,0 +1,16 @@
+package com.infobelt.differentia;
+
+/**
+ * Turns an audit value of a type into the string we report in a change, registered with {@link ValueTypes}
+ *
+ * @param <T> the type of the values
+ */
+@FunctionalInterface
+public interface ValueFormatter<T> {
+
+    /**
+     * @param value the value, never null
+     * @return the string for the change
+     */
+    String format(T value);
+}
@@ -0,0 +1,278 @@
+package com.infobelt.differentia;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of comparators and formatters for audit values.
+ * <p>
+ * We decide if a field has changed by comparing the raw values with the comparator for their type, and
+ * only format them as strings once we know they have changed. A comparator or formatter registered for a
+ * type is also used for its subclasses (and implementations if it is an interface).
+ * <p>
+ * Boxed primitives use the primitive comparators, other values without a comparator are equal if they are
+ * {@link Object#equals(Object) equal}, or have the same string, and values without a formatter use {@link String#valueOf(Object)}. Out of the box we compare
+ * {@link BigDecimal}s ignoring their scale and dates (including {@link Calendar}, {@link ZonedDateTime} and
+ * {@link OffsetDateTime}) on the instant they represent.
+ * <p>
+ * Register everything before the registry is used, the standard registry can't be changed
+ */
+public final class ValueTypes {
+
+    private static final ValueTypes STANDARD = new ValueTypes().lock();
+
+    private static final Object NONE = new Object();
+
+    private final ConcurrentMap<Class<?>, ValueComparator<?>> comparators = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ValueFormatter<?>> formatters = new ConcurrentHashMap<>();
+
+    // The comparator and formatter we found for each class we have seen (or NONE)
+    private final ConcurrentMap<Class<?>, Object> resolvedComparators = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Object> resolvedFormatters = new ConcurrentHashMap<>();
+
+    private volatile ValueComparator.OfInt intComparator = (oldValue, newValue) -> oldValue == newValue;
+    private volatile ValueComparator.OfLong longComparator = (oldValue, newValue) -> oldValue == newValue;
+
+    // We compare the bits so that we match the string comparison (-0.0 is a change, NaN isn't)
+    private volatile ValueComparator.OfDouble doubleComparator = (oldValue, newValue) -> Double.doubleToLongBits(oldValue) == Double.doubleToLongBits(newValue);
+
+    private boolean locked;
+
+    /**
+     * Create a registry with the standard comparators, that you can add to
+     */
+    public ValueTypes() {
+        registerComparator(BigDecimal.class, (oldValue, newValue) -> oldValue.compareTo(newValue) == 0);
+        registerComparator(Date.class, ValueTypes::isSameInstant);
+        registerComparator(Calendar.class, (oldValue, newValue) -> oldValue.getTimeInMillis() == newValue.getTimeInMillis());
+        registerComparator(ZonedDateTime.class, ZonedDateTime::isEqual);
+        registerComparator(OffsetDateTime.class, OffsetDateTime::isEqual);
+    }
+
+    /**
+     * @return the standard registry, this is shared and can't be changed
+     */
+    public static ValueTypes standard() {
+        return STANDARD;
+    }
+
+    public <T> ValueTypes registerComparator(Class<T> type, ValueComparator<? super T> comparator) {
+        checkUnlocked();
+        comparators.put(type, comparator);
+        resolvedComparators.clear();
+        return this;
+    }
+
+    public <T> ValueTypes registerFormatter(Class<T> type, ValueFormatter<? super T> formatter) {
+        checkUnlocked();
+        formatters.put(type, formatter);
+        resolvedFormatters.clear();
+        return this;
+    }
+
+    public ValueTypes registerIntComparator(ValueComparator.OfInt comparator) {
+        checkUnlocked();
+        this.intComparator = comparator;
+        return this;
+    }
+
+    public ValueTypes registerLongComparator(ValueComparator.OfLong comparator) {
+        checkUnlocked();
+        this.longComparator = comparator;
+        return this;
+    }
+
+    public ValueTypes registerDoubleComparator(ValueComparator.OfDouble comparator) {
+        checkUnlocked();
+        this.doubleComparator = comparator;
+        return this;
+    }
+
+    /**
+     * Are two audit values the same
+     *
+     * @param oldValue the old value
+     * @param newValue the new value
+     * @return true if the field hasn't changed
+     */
+    @SuppressWarnings("unchecked")
+    public boolean isEqual(Object oldValue, Object newValue) {
+        if (oldValue == newValue) {
+            return true;
+        }
+        if (oldValue == null || newValue == null) {
+            return false;
+        }
+
+        Object resolved = resolve(oldValue.getClass(), comparators, resolvedComparators);
+        if (resolved != NONE) {
+            Registered<ValueComparator<Object>> comparator = (Registered<ValueComparator<Object>>) resolved;
+            if (comparator.type.isInstance(newValue)) {
+                return comparator.value.isEqual(oldValue, newValue);
+            }
+        }
+
+        // Boxed primitives (for example read through reflection) use the primitive comparators
+        if (oldValue instanceof Integer || oldValue instanceof Short || oldValue instanceof Byte) {
+            if (newValue instanceof Integer || newValue instanceof Short || newValue instanceof Byte) {
+                return intComparator.isEqual(((Number) oldValue).intValue(), ((Number) newValue).intValue());
+            }
+        } else if (oldValue instanceof Long && newValue instanceof Long) {
+            return longComparator.isEqual((Long) oldValue, (Long) newValue);
+        } else if ((oldValue instanceof Double || oldValue instanceof Float) && oldValue.getClass() == newValue.getClass()) {
+            return doubleComparator.isEqual(((Number) oldValue).doubleValue(), ((Number) newValue).doubleValue());
+        }
+
+        // Without a comparator a value that looks the same isn't a change
+        return oldValue.equals(newValue) || Objects.equals(String.valueOf(oldValue), String.valueOf(newValue));
+    }
+
+    public boolean isEqual(int oldValue, int newValue) {
+        return intComparator.isEqual(oldValue, newValue);
+    }
+
+    public boolean isEqual(long oldValue, long newValue) {
+        return longComparator.isEqual(oldValue, newValue);
+    }
+
+    public boolean isEqual(double oldValue, double newValue) {
+        return doubleComparator.isEqual(oldValue, newValue);
+    }
+
+    /**
+     * Format an audit value for a change
+     *
+     * @param value the value
+     * @return the string, or null if the value is null
+     */
+    @SuppressWarnings("unchecked")
+    public String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Object resolved = resolve(value.getClass(), formatters, resolvedFormatters);
+        if (resolved == NONE) {
+            return String.valueOf(value);
+        }
+        return ((Registered<ValueFormatter<Object>>) resolved).value.format(value);
+    }
+
+    // The primitives are only boxed if there is a formatter for them
+
+    public String format(int value) {
+        return hasFormatter(Integer.class) ? format((Object) value) : String.valueOf(value);
+    }
+
+    public String format(long value) {
+        return hasFormatter(Long.class) ? format((Object) value) : String.valueOf(value);
+    }
+
+    public String format(double value) {
+        return hasFormatter(Double.class) ? format((Object) value) : String.valueOf(value);
+    }
+
+    public String format(float value) {
+        return hasFormatter(Float.class) ? format((Object) value) : String.valueOf(value);
+    }
+
+    public String format(char value) {
+        return hasFormatter(Character.class) ? format((Object) value) : String.valueOf(value);
+    }
+
+    public String format(boolean value) {
+        return hasFormatter(Boolean.class) ? format((Object) value) : String.valueOf(value);
+    }
+
+    /**
+     * @return true if there is a comparator or formatter for the type (or one it extends)
+     */
+    boolean isRegistered(Class<?> type) {
+        return resolve(type, comparators, resolvedComparators) != NONE || hasFormatter(type);
+    }
+
+    private boolean hasFormatter(Class<?> type) {
+        return !formatters.isEmpty() && resolve(type, formatters, resolvedFormatters) != NONE;
+    }
+
+    private static <V> Object resolve(Class<?> type, ConcurrentMap<Class<?>, V> registered, ConcurrentMap<Class<?>, Object> resolved) {
+        if (registered.isEmpty()) {
+            return NONE;
+        }
+        Object found = resolved.get(type);
+        if (found == null) {
+            found = find(type, registered);
+            resolved.putIfAbsent(type, found);
+        }
+        return found;
+    }
+
+    // Look through the class, then its super classes and then its interfaces
+    private static <V> Object find(Class<?> type, ConcurrentMap<Class<?>, V> registered) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            V value = registered.get(current);
+            if (value != null) {
+                return new Registered<>(current, value);
+            }
+        }
+
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        Set<Class<?>> seen = new HashSet<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            queue.add(current);
+        }
+        while (!queue.isEmpty()) {
+            for (Class<?> anInterface : queue.poll().getInterfaces()) {
+                if (seen.add(anInterface)) {
+                    V value = registered.get(anInterface);
+                    if (value != null) {
+                        return new Registered<>(anInterface, value);
+                    }
+                    queue.add(anInterface);
+                }
+            }
+        }
+        return NONE;
+    }
+
+    private static boolean isSameInstant(Date oldValue, Date newValue) {
+        if (oldValue instanceof Timestamp && newValue instanceof Timestamp) {
+            return oldValue.equals(newValue);
+        }
+        return oldValue.getTime() == newValue.getTime();
+    }
+
+    private ValueTypes lock() {
+        this.locked = true;
+        return this;
+    }
+
+    private void checkUnlocked() {
+        if (locked) {
+            throw new UnsupportedOperationException("The standard value types can't be changed, create a new ValueTypes instead");
+        }
+    }
+
+    /**
+     * A comparator or formatter with the type it was registered for
+     */
+    private static final class Registered<V> {
+        private final Class<?> type;
+        private final V value;
+
+        private Registered(Class<?> type, V value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Account;
+import com.infobelt.differentia.models.Employee;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AuditChangeCodecTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Test
+    public void batches() {
+        List<AuditChange> changes = changes();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AuditChangeEncoder encoder = new AuditChangeEncoder(bytes);
+        encoder.write(changes);
+        encoder.flush();
+        int first = bytes.size();
+        encoder.write(changes);
+        encoder.flush();
+        int second = bytes.size() - first;
+        encoder.write(changes.get(0));
+        encoder.close();
+
+        // The second time round the names come from the dictionary
+        assertThat(second < first - 4, equalTo(true));
+
+        AuditChangeDecoder decoder = new AuditChangeDecoder(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(decoder.readBatch(), equalTo(changes));
+        assertThat(decoder.read(), equalTo(changes.get(0)));
+        assertThat(decoder.readBatch(), equalTo(changes.subList(1, changes.size())));
+        assertThat(decoder.readBatch(), equalTo(changes.subList(0, 1)));
+        assertThat(decoder.read(), nullValue());
+        assertThat(decoder.readBatch(), nullValue());
+    }
+
+    @Test
+    public void ids() {
+        List<AuditChange> changes = new ArrayList<>();
+        for (Object id : Arrays.asList(null, 0L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 42, Integer.MIN_VALUE, "abc", "ünïcode")) {
+            AuditChange auditChange = new AuditChange();
+            auditChange.setAffectedId(id);
+            changes.add(auditChange);
+        }
+        assertThat(roundTrip(changes, AuditChangeEncoder.DEFAULT_DICTIONARY_SIZE), equalTo(changes));
+    }
+
+    @Test
+    public void fullDictionary() {
+        List<AuditChange> changes = changes();
+        assertThat(roundTrip(changes, 1), equalTo(changes));
+        assertThat(roundTrip(changes, 0), equalTo(changes));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void truncated() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AuditChangeEncoder encoder = new AuditChangeEncoder(bytes)) {
+            encoder.write(changes());
+        }
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+        new AuditChangeDecoder(new ByteArrayInputStream(truncated)).readBatch();
+    }
+
+    @Test
+    public void bigValues() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("valeur ").append(i).append(" é ");
+        }
+        AuditChange auditChange = new AuditChange();
+        auditChange.setNewValue(sb.toString());
+        assertThat(roundTrip(Arrays.asList(auditChange, auditChange), 16), equalTo(Arrays.asList(auditChange, auditChange)));
+    }
+
+    private List<AuditChange> roundTrip(List<AuditChange> changes, int dictionarySize) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AuditChangeEncoder encoder = new AuditChangeEncoder(bytes, dictionarySize)) {
+            changes.forEach(encoder::write);
+        }
+        List<AuditChange> read = new ArrayList<>();
+        AuditChangeDecoder decoder = new AuditChangeDecoder(new ByteArrayInputStream(bytes.toByteArray()));
+        AuditChange auditChange;
+        while ((auditChange = decoder.read()) != null) {
+            read.add(auditChange);
+        }
+        return read;
+    }
+
+    private List<AuditChange> changes() {
+        Account oldAccount = new Account();
+        oldAccount.setId(7L);
+        oldAccount.setName("Savings");
+        oldAccount.getHolders().add(new Employee(null, "1", "Bob"));
+
+        Account newAccount = new Account();
+        newAccount.setId(7L);
+        newAccount.setName("Épargne");
+        newAccount.setBalance(new BigDecimal("12.50"));
+        newAccount.getHolders().add(new Employee(null, "1", "Robert"));
+        newAccount.getHolders().add(new Employee(null, "2", "Jane"));
+        newAccount.getTags().add("gold");
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldAccount, newAccount);
+        changes.addAll(AUDIT_BUILDER.buildChanges(null, newAccount));
+        return changes;
+    }
+}
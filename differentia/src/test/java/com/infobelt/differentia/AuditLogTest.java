@@ -0,0 +1,146 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Account;
+import com.infobelt.differentia.models.Employee;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AuditLogTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndRead() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        List<AuditChange> changes = changes();
+
+        try (AuditLogSink sink = new AuditLogSink(directory)) {
+            sink.write(changes.subList(0, 2));
+            sink.write(changes.subList(2, changes.size()));
+        }
+
+        assertThat(read(directory), equalTo(changes));
+        assertThat(new AuditLogReader(directory).getSegments().size(), equalTo(1));
+
+        AtomicInteger records = new AtomicInteger();
+        new AuditLogReader(directory).forEachRecord(record -> records.incrementAndGet());
+        assertThat(records.get(), equalTo(changes.size()));
+    }
+
+    @Test
+    public void rollsSegments() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        List<AuditChange> changes = changes();
+
+        try (AuditLogSink sink = new AuditLogSink(directory)) {
+            sink.setSegmentSize(1);
+            sink.setFsyncPolicy(AuditLogSink.FsyncPolicy.NEVER);
+            for (AuditChange auditChange : changes) {
+                sink.write(Collections.singletonList(auditChange));
+            }
+        }
+
+        // Opening it again starts a new segment after the others
+        try (AuditLogSink sink = new AuditLogSink(directory)) {
+            sink.write(changes.subList(0, 1));
+        }
+
+        List<AuditChange> expected = new ArrayList<>(changes);
+        expected.add(changes.get(0));
+        assertThat(read(directory), equalTo(expected));
+        assertThat(new AuditLogReader(directory).getSegments().size(), equalTo(changes.size() + 1));
+    }
+
+    @Test
+    public void stopsAtATornRecord() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        List<AuditChange> changes = changes();
+        try (AuditLogSink sink = new AuditLogSink(directory)) {
+            sink.write(changes);
+        }
+
+        Path segment = new AuditLogReader(directory).getSegments().get(0);
+        ByteBuffer torn = ByteBuffer.allocate(12);
+        torn.putInt(100).putInt(42).putInt(7);
+        torn.flip();
+        Files.write(segment, torn.array(), StandardOpenOption.APPEND);
+
+        assertThat(read(directory), equalTo(changes));
+    }
+
+    @Test
+    public void groupCommit() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        List<AuditChange> changes = changes();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (AuditLogSink sink = new AuditLogSink(directory)) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                writers.add(executor.submit(() -> {
+                    for (int batch = 0; batch < 50; batch++) {
+                        sink.write(changes);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<AuditChange> read = read(directory);
+        assertThat(read.size(), equalTo(4 * 50 * changes.size()));
+
+        // Each batch is written whole
+        for (int i = 0; i < read.size(); i += changes.size()) {
+            assertThat(read.subList(i, i + changes.size()), equalTo(changes));
+        }
+    }
+
+    private List<AuditChange> read(Path directory) {
+        List<AuditChange> read = new ArrayList<>();
+        new AuditLogReader(directory).forEach(read::add);
+        return read;
+    }
+
+    private List<AuditChange> changes() {
+        Account oldAccount = new Account();
+        oldAccount.setId(7L);
+        oldAccount.setName("Savings");
+        oldAccount.getHolders().add(new Employee(null, "1", "Bob"));
+
+        Account newAccount = new Account();
+        newAccount.setId(7L);
+        newAccount.setName("Épargne");
+        newAccount.setBalance(new BigDecimal("12.50"));
+        newAccount.getHolders().add(new Employee(null, "1", "Robert"));
+        newAccount.getHolders().add(new Employee(null, "2", "Jane"));
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldAccount, newAccount);
+        changes.addAll(AUDIT_BUILDER.buildChanges(null, newAccount));
+        return changes;
+    }
+}
@@ -0,0 +1,193 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Account;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AuditPipelineTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void changesToAnEntityStayInOrder() {
+        List<AuditChange> changes = Collections.synchronizedList(new ArrayList<>());
+        AuditPipeline pipeline = new AuditPipeline(AUDIT_BUILDER, changes::addAll);
+        pipeline.setWorkers(3);
+        pipeline.setCapacity(4);
+        pipeline.setBatchSize(5);
+        pipeline.start();
+
+        for (int version = 0; version < 20; version++) {
+            for (long id = 0; id < 10; id++) {
+                submitRename(pipeline, id, version);
+            }
+        }
+        pipeline.close();
+
+        assertThat(changes.size(), equalTo(200));
+        assertThat(pipeline.getSubmitted(), equalTo(200L));
+        for (long id = 0; id < 10; id++) {
+            long affectedId = id;
+            List<String> names = changes.stream().filter(c -> c.getAffectedId().equals(affectedId)).map(AuditChange::getNewValue).collect(Collectors.toList());
+            for (int version = 0; version < 20; version++) {
+                assertThat(names.get(version), equalTo("v" + (version + 1)));
+            }
+        }
+    }
+
+    @Test
+    public void newEntity() {
+        List<AuditChange> changes = Collections.synchronizedList(new ArrayList<>());
+        try (AuditPipeline pipeline = new AuditPipeline(AUDIT_BUILDER, changes::addAll).start()) {
+            pipeline.submit(null, AUDIT_BUILDER.snapshot(account(1L, "Savings")));
+        }
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getMessage(), equalTo("New Account Savings"));
+    }
+
+    @Test
+    public void submitWhileClosing() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            List<AuditChange> changes = Collections.synchronizedList(new ArrayList<>());
+            AuditPipeline pipeline = new AuditPipeline(AUDIT_BUILDER, changes::addAll);
+            pipeline.setWorkers(2);
+            pipeline.setCapacity(2);
+            pipeline.setBatchSize(3);
+            pipeline.start();
+
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> submitters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                long id = i;
+                Thread submitter = new Thread(() -> {
+                    started.countDown();
+                    try {
+                        for (int version = 0; ; version++) {
+                            submitRename(pipeline, id, version);
+                        }
+                    } catch (IllegalStateException e) {
+                        // The pipeline has been closed
+                    }
+                });
+                submitter.start();
+                submitters.add(submitter);
+            }
+            started.await();
+            pipeline.close();
+            for (Thread submitter : submitters) {
+                submitter.join(TimeUnit.SECONDS.toMillis(10));
+                assertThat(submitter.isAlive(), equalTo(false));
+            }
+
+            // Everything that was taken was built
+            assertThat((long) changes.size(), equalTo(pipeline.getSubmitted()));
+        }
+    }
+
+    @Test
+    public void drop() throws InterruptedException {
+        BlockingSink sink = new BlockingSink();
+        AuditPipeline pipeline = new AuditPipeline(AUDIT_BUILDER, sink);
+        pipeline.setWorkers(1);
+        pipeline.setCapacity(1);
+        pipeline.setBackpressure(AuditPipeline.Backpressure.DROP);
+        pipeline.start();
+
+        assertThat(submitRename(pipeline, 1L, 0), equalTo(true));
+        sink.awaitBlocked();
+        assertThat(submitRename(pipeline, 1L, 1), equalTo(true));
+        assertThat(submitRename(pipeline, 1L, 2), equalTo(false));
+        sink.release();
+        pipeline.close();
+
+        assertThat(pipeline.getDropped(), equalTo(1L));
+        assertThat(sink.names(), equalTo(Arrays.asList("v1", "v2")));
+    }
+
+    @Test
+    public void spill() throws InterruptedException, IOException {
+        Path spillDirectory = folder.newFolder().toPath();
+        BlockingSink sink = new BlockingSink();
+        AuditPipeline pipeline = new AuditPipeline(AUDIT_BUILDER, sink);
+        pipeline.setWorkers(1);
+        pipeline.setCapacity(1);
+        pipeline.setBackpressure(AuditPipeline.Backpressure.SPILL);
+        pipeline.setSpillDirectory(spillDirectory);
+        pipeline.start();
+
+        submitRename(pipeline, 1L, 0);
+        sink.awaitBlocked();
+        for (int version = 1; version < 6; version++) {
+            assertThat(submitRename(pipeline, 1L, version), equalTo(true));
+        }
+        assertThat(pipeline.getSpilled(), equalTo(4L));
+        sink.release();
+        pipeline.close();
+
+        assertThat(sink.names(), equalTo(Arrays.asList("v1", "v2", "v3", "v4", "v5", "v6")));
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertThat(files.count(), equalTo(0L));
+        }
+    }
+
+    private boolean submitRename(AuditPipeline pipeline, long id, int version) {
+        return pipeline.submit(AUDIT_BUILDER.snapshot(account(id, "v" + version)), AUDIT_BUILDER.snapshot(account(id, "v" + (version + 1))));
+    }
+
+    private Account account(long id, String name) {
+        Account account = new Account();
+        account.setId(id);
+        account.setName(name);
+        return account;
+    }
+
+    // Holds up the worker on its first batch, so that its buffer fills up
+    private static class BlockingSink implements AuditSink {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final List<AuditChange> changes = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void write(List<AuditChange> batch) {
+            blocked.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            changes.addAll(batch);
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertThat(blocked.await(10, TimeUnit.SECONDS), equalTo(true));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        List<String> names() {
+            return changes.stream().map(AuditChange::getNewValue).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Graph;
+import com.infobelt.differentia.models.Node;
+import com.infobelt.differentia.models.SimpleExampleObject;
+import com.infobelt.differentia.models.Team;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BatchTest {
+
+    private static final int PAIRS = 1000;
+
+    private AuditBuilder auditBuilder;
+
+    private ForkJoinPool pool;
+
+    private List<AuditPair> pairs;
+
+    @Before
+    public void setup() {
+        pool = new ForkJoinPool(4);
+        auditBuilder = new AuditBuilder();
+        auditBuilder.setBatchExecutor(pool);
+        auditBuilder.setBatchSize(16);
+
+        pairs = new ArrayList<>();
+        for (int i = 0; i < PAIRS; i++) {
+            // Every third pair is unchanged
+            pairs.add(AuditPair.of(example("Bob" + i, "Old"), example("Bob" + i, i % 3 == 0 ? "Old" : "New")));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void resultsInOrder() {
+        List<List<AuditChange>> results = auditBuilder.buildChanges(pairs);
+
+        assertThat(results.size(), equalTo(PAIRS));
+        for (int i = 0; i < PAIRS; i++) {
+            AuditPair pair = pairs.get(i);
+            assertThat(results.get(i), equalTo(auditBuilder.buildChanges(pair.getOldInstance(), pair.getNewInstance())));
+            assertThat(results.get(i).size(), equalTo(i % 3 == 0 ? 0 : 1));
+        }
+    }
+
+    @Test
+    public void smallBatchOnCallingThread() {
+        List<List<AuditChange>> results = auditBuilder.buildChanges(pairs.subList(0, 3));
+        assertThat(results.size(), equalTo(3));
+        assertThat(results.get(1).get(0).getNewValue(), equalTo("New"));
+    }
+
+    @Test
+    public void streamAsTheyFinish() {
+        Map<AuditPair, List<AuditChange>> results = new ConcurrentHashMap<>();
+        auditBuilder.buildChanges(pairs.stream(), results::put);
+
+        assertThat(results.size(), equalTo(PAIRS));
+        for (AuditPair pair : pairs) {
+            assertThat(results.get(pair), equalTo(auditBuilder.buildChanges(pair)));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failurePropagates() {
+        auditBuilder.buildChanges(pairs.stream(), (pair, changes) -> {
+            throw new IllegalStateException("Failed on " + pair);
+        });
+    }
+
+    @Test
+    public void largeCollectionInParallel() {
+        Team oldTeam = new Team();
+        oldTeam.setName("Everyone");
+        Team newTeam = new Team();
+        newTeam.setName("Everyone");
+        for (int i = 0; i < PAIRS; i++) {
+            oldTeam.getMembers().add(new Employee(null, String.valueOf(i), "Bob" + i));
+            newTeam.getMembers().add(new Employee(null, String.valueOf(i), i % 3 == 0 ? "Bob" + i : "Robert" + i));
+        }
+        newTeam.getMembers().add(new Employee(null, "new", "Jane"));
+
+        List<AuditChange> sequential = auditBuilder.buildChanges(oldTeam, newTeam);
+
+        auditBuilder.setParallelTraversalThreshold(100);
+        DiffContext context = new DiffContext();
+        List<AuditChange> parallel = new ArrayList<>();
+        auditBuilder.buildChanges(oldTeam, newTeam, parallel::add, context);
+
+        assertThat(parallel, equalTo(sequential));
+        assertThat(parallel.size(), equalTo(PAIRS - PAIRS / 3 - 1 + 1));
+        assertThat(context.getVisitedPairs(), equalTo(PAIRS + 1L));
+
+        // Small collections stay on the calling thread
+        auditBuilder.setParallelTraversalThreshold(PAIRS + 1);
+        assertThat(auditBuilder.buildChanges(oldTeam, newTeam), equalTo(sequential));
+    }
+
+    @Test
+    public void sharedObjectsDiffedOnceInParallel() {
+        Node oldShared = new Node();
+        oldShared.setName("Shared");
+        Node newShared = new Node();
+        newShared.setName("Renamed");
+
+        Graph oldGraph = new Graph();
+        Graph newGraph = new Graph();
+        for (int i = 0; i < PAIRS; i++) {
+            Node oldNode = new Node();
+            oldNode.setName("Node" + i);
+            Node newNode = new Node();
+            newNode.setName("Node" + i);
+            // A few items in different slices share an object
+            if (i == 0 || i == PAIRS - 1 || i == PAIRS / 2) {
+                oldNode.setLeft(oldShared);
+                newNode.setLeft(newShared);
+            }
+            if (i % 100 == 0) {
+                newNode.setRight(new Node());
+            }
+            oldGraph.getNodes().add(oldNode);
+            newGraph.getNodes().add(newNode);
+        }
+
+        List<AuditChange> sequential = auditBuilder.buildChanges(oldGraph, newGraph);
+        assertThat(sequential.stream().filter(c -> "Renamed".equals(c.getNewValue())).count(), equalTo(1L));
+
+        auditBuilder.setParallelTraversalThreshold(100);
+        DiffContext context = new DiffContext();
+        List<AuditChange> parallel = new ArrayList<>();
+        auditBuilder.buildChanges(oldGraph, newGraph, parallel::add, context);
+
+        assertThat(parallel, equalTo(sequential));
+        assertThat(context.getSkippedDuplicates(), equalTo(2L));
+    }
+
+    @Test
+    public void parallelFailurePropagates() {
+        Team oldTeam = new Team();
+        Team newTeam = new Team();
+        for (int i = 0; i < PAIRS; i++) {
+            oldTeam.getMembers().add(new Employee(null, String.valueOf(i), "Bob" + i));
+            newTeam.getMembers().add(new Employee(null, String.valueOf(i), "Robert" + i));
+        }
+        auditBuilder.setParallelTraversalThreshold(100);
+        auditBuilder.setMetrics(new AuditMetrics() {
+            @Override
+            public void objectDiffed(ObjectMetadata om, long nanos, int fieldsVisited, int depth) {
+                if (depth > 1) {
+                    throw new IllegalStateException("Failed on " + om.getEntityName());
+                }
+            }
+        });
+        try {
+            auditBuilder.buildChanges(oldTeam, newTeam);
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e.getCause() instanceof IllegalStateException, equalTo(true));
+        }
+    }
+
+    private SimpleExampleObject example(String name, String description) {
+        SimpleExampleObject example = new SimpleExampleObject();
+        example.setName(name);
+        example.setDescription(description);
+        return example;
+    }
+}
@@ -0,0 +1,121 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Account;
+import com.infobelt.differentia.models.Employee;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChangeCoalescerTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    private List<AuditChange> written;
+
+    private ChangeCoalescer coalescer;
+
+    private AtomicLong now;
+
+    @Before
+    public void setup() {
+        written = new ArrayList<>();
+        coalescer = new ChangeCoalescer(AUDIT_BUILDER, written::addAll);
+        now = new AtomicLong();
+        coalescer.setClock(now::get);
+    }
+
+    @Test
+    public void netChange() {
+        Account first = account(1L, "Savings");
+        Account second = account(1L, "Holiday");
+        Account third = account(1L, "Rainy day");
+
+        coalescer.write(AUDIT_BUILDER.buildChanges(first, second));
+        coalescer.write(AUDIT_BUILDER.buildChanges(second, third));
+        assertThat(written.size(), equalTo(0));
+        coalescer.flush();
+
+        assertThat(written, equalTo(AUDIT_BUILDER.buildChanges(first, third)));
+        assertThat(written.get(0).getOldValue(), equalTo("Savings"));
+        assertThat(written.get(0).getNewValue(), equalTo("Rainy day"));
+        assertThat(coalescer.getCoalesced(), equalTo(1L));
+    }
+
+    @Test
+    public void revertedChangeDropped() {
+        Account first = account(1L, "Savings");
+        Account second = account(1L, "Holiday");
+        Account other = account(2L, "Savings");
+
+        coalescer.write(AUDIT_BUILDER.buildChanges(first, second));
+        coalescer.write(AUDIT_BUILDER.buildChanges(other, account(2L, "Current")));
+        coalescer.write(AUDIT_BUILDER.buildChanges(second, first));
+        coalescer.flush();
+
+        assertThat(written.size(), equalTo(1));
+        assertThat(written.get(0).getAffectedId(), equalTo(2L));
+        assertThat(coalescer.getReverted(), equalTo(1L));
+        assertThat(coalescer.getHeld(), equalTo(0));
+    }
+
+    @Test
+    public void otherChangesKeptInOrder() {
+        Account first = account(1L, "Savings");
+        Account second = account(1L, "Holiday");
+        second.getHolders().add(new Employee(null, "1", "Bob"));
+        Account third = account(1L, "Rainy day");
+        third.getHolders().add(new Employee(null, "1", "Bob"));
+        third.getHolders().add(new Employee(null, "2", "Jane"));
+
+        coalescer.write(AUDIT_BUILDER.buildChanges(first, second));
+        coalescer.write(AUDIT_BUILDER.buildChanges(second, third));
+        coalescer.flush();
+
+        assertThat(written.size(), equalTo(3));
+        assertThat(written.get(0).getNewValue(), equalTo("Rainy day"));
+        assertThat(written.get(1).getEventType(), equalTo(AuditEventType.ADD));
+        assertThat(written.get(2).getEventType(), equalTo(AuditEventType.ADD));
+    }
+
+    @Test
+    public void window() {
+        coalescer.setWindow(1000);
+        coalescer.write(AUDIT_BUILDER.buildChanges(account(1L, "Savings"), account(1L, "Holiday")));
+        now.set(500);
+        coalescer.write(AUDIT_BUILDER.buildChanges(account(2L, "Savings"), account(2L, "Current")));
+        coalescer.write(AUDIT_BUILDER.buildChanges(account(1L, "Holiday"), account(1L, "Rainy day")));
+        assertThat(written.size(), equalTo(0));
+
+        now.set(1000);
+        coalescer.flushExpired();
+        assertThat(written.size(), equalTo(1));
+        assertThat(written.get(0).getNewValue(), equalTo("Rainy day"));
+
+        // A change after the window starts a new one
+        coalescer.write(AUDIT_BUILDER.buildChanges(account(1L, "Rainy day"), account(1L, "Savings")));
+        assertThat(written.size(), equalTo(1));
+        now.set(1500);
+        coalescer.flushExpired();
+        assertThat(written.size(), equalTo(2));
+        assertThat(written.get(1).getAffectedId(), equalTo(2L));
+
+        coalescer.close();
+        assertThat(written.size(), equalTo(3));
+        assertThat(written.get(2).getOldValue(), equalTo("Rainy day"));
+    }
+
+    private Account account(Long id, String name) {
+        Account account = new Account();
+        account.setId(id);
+        account.setName(name);
+        account.setBalance(BigDecimal.TEN);
+        return account;
+    }
+}
@@ -0,0 +1,106 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Boss;
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.SimpleExampleObject;
+import com.infobelt.differentia.models.Team;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChangeSinkTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Test
+    public void sinkMatchesList() {
+        Boss oldBoss = boss("Alice", new Employee(null, "1", "Bob"), new Employee(null, "2", "Sally"));
+        Boss newBoss = boss("Alicia", new Employee(null, "1", "Robert"), new Employee(null, "3", "Jim"));
+
+        List<AuditChange> changes = new ArrayList<>();
+        AUDIT_BUILDER.buildChanges(oldBoss, newBoss, changes::add);
+
+        assertThat(changes.size(), equalTo(4));
+        assertThat(changes, equalTo(AUDIT_BUILDER.buildChanges(oldBoss, newBoss)));
+    }
+
+    @Test
+    public void isChanged() {
+        assertThat(AUDIT_BUILDER.isChanged(example("Bob", "Old", 1), example("Bob", "Old", 2)), equalTo(false));
+        assertThat(AUDIT_BUILDER.isChanged(example("Bob", "Old", 1), example("Bob", "New", 1)), equalTo(true));
+        assertThat(AUDIT_BUILDER.isChanged(null, example("Bob", "Old", 1)), equalTo(true));
+        assertThat(AUDIT_BUILDER.isChanged(example("Bob", "Old", 1), null), equalTo(true));
+    }
+
+    @Test
+    public void isChangedAgreesOnMissingCollections() {
+        Team oldTeam = new Team();
+        oldTeam.setName("Blue");
+        oldTeam.getTags().add("fast");
+        oldTeam.getMembers().add(new Employee(null, "1", "Bob"));
+
+        // Scalar items going away with the collection aren't reported
+        Team noTags = new Team();
+        noTags.setName("Blue");
+        noTags.setTags(null);
+        noTags.getMembers().add(new Employee(null, "1", "Bob"));
+        assertThat(AUDIT_BUILDER.buildChanges(oldTeam, noTags).size(), equalTo(0));
+        assertThat(AUDIT_BUILDER.isChanged(oldTeam, noTags), equalTo(false));
+        assertThat(AUDIT_BUILDER.isChanged(noTags, oldTeam), equalTo(false));
+
+        // Audited ones are
+        Team noMembers = new Team();
+        noMembers.setName("Blue");
+        noMembers.getTags().add("fast");
+        noMembers.setMembers(null);
+        assertThat(AUDIT_BUILDER.buildChanges(oldTeam, noMembers).isEmpty(), equalTo(false));
+        assertThat(AUDIT_BUILDER.isChanged(oldTeam, noMembers), equalTo(true));
+    }
+
+    @Test
+    public void isChangedThroughTraversal() {
+        Boss oldBoss = boss("Alice", new Employee(null, "1", "Bob"));
+
+        assertThat(AUDIT_BUILDER.isChanged(oldBoss, boss("Alice", new Employee(null, "1", "Bob"))), equalTo(false));
+        assertThat(AUDIT_BUILDER.isChanged(oldBoss, boss("Alice", new Employee(null, "1", "Robert"))), equalTo(true));
+        assertThat(AUDIT_BUILDER.isChanged(oldBoss, boss("Alice", new Employee(null, "1", "Bob"), new Employee(null, "2", "Sally"))), equalTo(true));
+        assertThat(AUDIT_BUILDER.isChanged(oldBoss, boss("Alice")), equalTo(true));
+    }
+
+    @Test
+    public void changedFields() {
+        BitSet changed = AUDIT_BUILDER.changedFields(example("Bob", "Old", 1), example("Robert", "Old", 2));
+        List<FieldMetadata> fields = ObjectMetadata.forClass(SimpleExampleObject.class).getFields();
+
+        assertThat(changed.cardinality(), equalTo(1));
+        assertThat(fields.get(changed.nextSetBit(0)).getFieldName(), equalTo("name"));
+
+        changed = AUDIT_BUILDER.changedFields(boss("Alice", new Employee(null, "1", "Bob")), boss("Alice", new Employee(null, "1", "Robert")));
+        fields = ObjectMetadata.forClass(Boss.class).getFields();
+
+        assertThat(changed.cardinality(), equalTo(1));
+        assertThat(fields.get(changed.nextSetBit(0)).getFieldName(), equalTo("employees"));
+    }
+
+    private Boss boss(String name, Employee... employees) {
+        Boss boss = new Boss();
+        boss.setName(name);
+        for (Employee employee : employees) {
+            boss.getEmployees().add(employee);
+        }
+        return boss;
+    }
+
+    private SimpleExampleObject example(String name, String description, int amount) {
+        SimpleExampleObject example = new SimpleExampleObject();
+        example.setName(name);
+        example.setDescription(description);
+        example.setAmount(amount);
+        return example;
+    }
+}
@@ -0,0 +1,110 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Course;
+import com.infobelt.differentia.models.Enrollment;
+import com.infobelt.differentia.models.Node;
+import com.infobelt.differentia.models.Student;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DiffContextTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Test
+    public void cyclesStop() {
+        Node oldNode = node("Root");
+        oldNode.setLeft(oldNode);
+        Node newNode = node("Renamed");
+        newNode.setLeft(newNode);
+
+        DiffContext context = new DiffContext();
+        List<AuditChange> changes = new ArrayList<>();
+        AUDIT_BUILDER.buildChanges(oldNode, newNode, changes::add, context);
+
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getNewValue(), equalTo("Renamed"));
+        assertThat(context.getVisitedPairs(), equalTo(1L));
+        assertThat(context.getSkippedCycles(), equalTo(1L));
+
+        assertThat(AUDIT_BUILDER.isChanged(oldNode, newNode), equalTo(true));
+    }
+
+    @Test
+    public void sharedReferencesOnlyDiffedOnce() {
+        Node oldChild = node("Child");
+        Node newChild = node("Renamed child");
+        Node oldNode = node("Root");
+        oldNode.setLeft(oldChild);
+        oldNode.setRight(oldChild);
+        Node newNode = node("Root");
+        newNode.setLeft(newChild);
+        newNode.setRight(newChild);
+
+        DiffContext context = new DiffContext();
+        List<AuditChange> changes = new ArrayList<>();
+        AUDIT_BUILDER.buildChanges(oldNode, newNode, changes::add, context);
+
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getOldValue(), equalTo("Child"));
+        assertThat(context.getSkippedDuplicates(), equalTo(1L));
+
+        // Both fields still see the change
+        assertThat(AUDIT_BUILDER.changedFields(oldNode, newNode).cardinality(), equalTo(2));
+    }
+
+    @Test
+    public void contextSharedAcrossDiffs() {
+        Node oldNode = node("Root");
+        Node newNode = node("Renamed");
+
+        DiffContext context = new DiffContext();
+        List<AuditChange> changes = new ArrayList<>();
+        AUDIT_BUILDER.buildChanges(oldNode, newNode, changes::add, context);
+        AUDIT_BUILDER.buildChanges(oldNode, newNode, changes::add, context);
+
+        assertThat(changes.size(), equalTo(1));
+        assertThat(context.getSkippedDuplicates(), equalTo(1L));
+    }
+
+    @Test
+    public void lookupsRemembered() {
+        Student student = new Student();
+        student.setName("Philip");
+        for (String name : new String[]{"Coding", "Drawing", "Singing"}) {
+            Course course = new Course();
+            course.setName(name);
+            Enrollment enrollment = new Enrollment();
+            enrollment.setCourse(course);
+            enrollment.setStudent(student);
+            student.getEnrollments().add(enrollment);
+        }
+
+        DiffContext context = new DiffContext();
+        List<AuditChange> changes = new ArrayList<>();
+        for (Enrollment enrollment : student.getEnrollments()) {
+            AUDIT_BUILDER.buildChanges(enrollment, null, changes::add, context);
+        }
+
+        List<AuditChange> expected = new ArrayList<>();
+        for (Enrollment enrollment : student.getEnrollments()) {
+            expected.addAll(AUDIT_BUILDER.buildChanges(enrollment, null));
+        }
+        assertThat(changes, equalTo(expected));
+        assertThat(changes.size(), equalTo(6));
+
+        // The student is the same in each enrollment, so its name and id are only looked up the first time
+        assertThat(context.getRepeatedLookups() >= 4, equalTo(true));
+    }
+
+    private Node node(String name) {
+        Node node = new Node();
+        node.setName(name);
+        return node;
+    }
+}
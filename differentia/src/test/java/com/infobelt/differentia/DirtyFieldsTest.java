@@ -0,0 +1,81 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Profile;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DirtyFieldsTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Test
+    public void everythingDirtyUntilCleared() {
+        Profile oldProfile = profile();
+        Profile newProfile = profile();
+        newProfile.setNotes("Changed");
+
+        assertThat(newProfile.getDirtyFields().isKnown(), equalTo(false));
+        assertThat(AUDIT_BUILDER.buildChanges(oldProfile, newProfile).size(), equalTo(1));
+    }
+
+    @Test
+    public void onlyDirtyFieldsVisited() {
+        Profile oldProfile = profile();
+        Profile newProfile = profile();
+        newProfile.getDirtyFields().clear();
+
+        newProfile.setEmail("bob@example.com");
+        newProfile.setNotes("Not marked");
+        newProfile.getTags().add("new");
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldProfile, newProfile);
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(0).getProperty(), equalTo("email"));
+        assertThat(changes.get(1).getProperty(), equalTo("tags"));
+
+        assertThat(AUDIT_BUILDER.changedFields(oldProfile, newProfile).cardinality(), equalTo(2));
+        assertThat(newProfile.getDirtyFields().isDirty("email"), equalTo(true));
+        assertThat(newProfile.getDirtyFields().isDirty("name"), equalTo(false));
+    }
+
+    @Test
+    public void snapshotClears() {
+        Profile profile = profile();
+        Snapshot snapshot = AUDIT_BUILDER.snapshot(profile);
+        assertThat(profile.getDirtyFields().isKnown(), equalTo(true));
+
+        profile.setAge(41);
+        profile.setNotes("Not marked");
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildSnapshotChanges(snapshot, profile);
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getOldValue(), equalTo("40"));
+        assertThat(changes.get(0).getNewValue(), equalTo("41"));
+
+        profile.getDirtyFields().markAll();
+        assertThat(AUDIT_BUILDER.buildSnapshotChanges(snapshot, profile).size(), equalTo(2));
+    }
+
+    @Test
+    public void notAudited() {
+        assertThat(ObjectMetadata.forClass(Profile.class).getField("dirtyFields").isTracked(), equalTo(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownField() {
+        profile().getDirtyFields().mark("missing");
+    }
+
+    private static Profile profile() {
+        Profile profile = new Profile();
+        profile.setName("Bob");
+        profile.setEmail("bob@example.org");
+        profile.setAge(40);
+        profile.setNotes("Notes");
+        return profile;
+    }
+}
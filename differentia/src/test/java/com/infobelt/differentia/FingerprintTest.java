@@ -0,0 +1,180 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Account;
+import com.infobelt.differentia.models.AssociatedBoss;
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Node;
+import com.infobelt.differentia.models.Portfolio;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FingerprintTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameContentSameFingerprint() {
+        assertThat(AUDIT_BUILDER.fingerprint(account()), equalTo(AUDIT_BUILDER.fingerprint(account())));
+
+        Account scaled = account();
+        scaled.setBalance(new BigDecimal("100.0"));
+        assertThat(AUDIT_BUILDER.fingerprint(scaled), equalTo(AUDIT_BUILDER.fingerprint(account())));
+
+        Account reordered = account();
+        reordered.getHolders().add(0, new Employee(null, "e2", "Bob"));
+        Account ordered = account();
+        ordered.getHolders().add(new Employee(null, "e2", "Bob"));
+        assertThat(AUDIT_BUILDER.fingerprint(reordered), equalTo(AUDIT_BUILDER.fingerprint(ordered)));
+    }
+
+    @Test
+    public void changesChangeTheFingerprint() {
+        long fingerprint = AUDIT_BUILDER.fingerprint(account());
+
+        Account renamed = account();
+        renamed.setName("Current");
+        assertThat(AUDIT_BUILDER.fingerprint(renamed), not(equalTo(fingerprint)));
+
+        Account rate = account();
+        rate.setRate(0.02);
+        assertThat(AUDIT_BUILDER.fingerprint(rate), not(equalTo(fingerprint)));
+
+        Account holder = account();
+        holder.getHolders().get(0).setName("Alicia");
+        assertThat(AUDIT_BUILDER.fingerprint(holder), not(equalTo(fingerprint)));
+
+        Account tags = account();
+        tags.getTags().clear();
+        assertThat(AUDIT_BUILDER.fingerprint(tags), not(equalTo(fingerprint)));
+    }
+
+    @Test
+    public void mapsAndArraysByContent() throws IOException {
+        assertThat(AUDIT_BUILDER.fingerprint(portfolio()), equalTo(AUDIT_BUILDER.fingerprint(portfolio())));
+
+        Portfolio reordered = new Portfolio();
+        reordered.setId(1L);
+        reordered.setName("Growth");
+        reordered.getLimits().put("silver", new BigDecimal("50"));
+        reordered.getLimits().put("gold", new BigDecimal("100"));
+        reordered.setScores(new int[]{1, 2, 3});
+        reordered.setCodes(new String[]{"A", "B"});
+        assertThat(AUDIT_BUILDER.fingerprint(reordered), equalTo(AUDIT_BUILDER.fingerprint(portfolio())));
+
+        Portfolio scores = portfolio();
+        scores.getScores()[1] = 20;
+        assertThat(AUDIT_BUILDER.fingerprint(scores), not(equalTo(AUDIT_BUILDER.fingerprint(portfolio()))));
+
+        Portfolio codes = portfolio();
+        codes.getCodes()[0] = "C";
+        assertThat(AUDIT_BUILDER.fingerprint(codes), not(equalTo(AUDIT_BUILDER.fingerprint(portfolio()))));
+
+        Portfolio limits = portfolio();
+        limits.getLimits().put("gold", new BigDecimal("200"));
+        assertThat(AUDIT_BUILDER.fingerprint(limits), not(equalTo(AUDIT_BUILDER.fingerprint(portfolio()))));
+
+        // And the same from a snapshot, stored or not
+        Portfolio portfolio = portfolio();
+        assertThat(AUDIT_BUILDER.fingerprint(AUDIT_BUILDER.snapshot(portfolio)), equalTo(AUDIT_BUILDER.fingerprint(portfolio)));
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, folder.newFolder().toPath())) {
+            store.put(portfolio);
+            assertThat(AUDIT_BUILDER.fingerprint(store.get(1L)), equalTo(AUDIT_BUILDER.fingerprint(portfolio)));
+        }
+    }
+
+    @Test
+    public void stableAcrossRuns() {
+        // If this changes then every stored fingerprint is out of date
+        assertThat(AUDIT_BUILDER.fingerprint(account()), equalTo(3971584383635514206L));
+    }
+
+    @Test
+    public void snapshotsMatch() throws IOException {
+        Account account = account();
+        long fingerprint = AUDIT_BUILDER.fingerprint(account);
+        assertThat(AUDIT_BUILDER.fingerprint(AUDIT_BUILDER.snapshot(account)), equalTo(fingerprint));
+
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, folder.newFolder().toPath())) {
+            store.put(account);
+            assertThat(AUDIT_BUILDER.fingerprint(store.get(1L)), equalTo(fingerprint));
+        }
+    }
+
+    @Test
+    public void cycles() {
+        Node node = new Node();
+        node.setName("Root");
+        node.setLeft(node);
+        assertThat(AUDIT_BUILDER.fingerprint(node), equalTo(AUDIT_BUILDER.fingerprint(node)));
+    }
+
+    @Test
+    public void pairsWithTheSameFingerprintAreSkipped() {
+        Account stored = account();
+        long fingerprint = AUDIT_BUILDER.fingerprint(stored);
+
+        // We don't look at the old instance at all when the fingerprints match
+        Account other = account();
+        other.setName("Something else");
+        assertThat(AUDIT_BUILDER.buildChanges(AuditPair.of(other, account(), fingerprint)).size(), equalTo(0));
+
+        Account changed = account();
+        changed.setName("Current");
+        assertThat(AUDIT_BUILDER.buildChanges(Collections.singletonList(AuditPair.of(stored, changed, fingerprint))).get(0).size(), equalTo(1));
+    }
+
+    @Test
+    public void relationshipsAreAlwaysDiffed() {
+        // Moving an employee to another boss doesn't change its fingerprint, but it is still a change
+        AssociatedBoss oldBoss = new AssociatedBoss();
+        oldBoss.setName("Phil");
+        AssociatedBoss newBoss = new AssociatedBoss();
+        newBoss.setName("Jane");
+        Employee oldEmployee = new Employee(oldBoss, "1", "Alice");
+        Employee newEmployee = new Employee(newBoss, "1", "Alice");
+        long fingerprint = AUDIT_BUILDER.fingerprint(oldEmployee);
+        assertThat(AUDIT_BUILDER.fingerprint(newEmployee), equalTo(fingerprint));
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldEmployee, newEmployee);
+        assertThat(changes.isEmpty(), equalTo(false));
+        assertThat(AUDIT_BUILDER.buildChanges(AuditPair.of(oldEmployee, newEmployee, fingerprint)), equalTo(changes));
+    }
+
+    private static Portfolio portfolio() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.setId(1L);
+        portfolio.setName("Growth");
+        portfolio.getLimits().put("gold", new BigDecimal("100"));
+        portfolio.getLimits().put("silver", new BigDecimal("50"));
+        portfolio.setScores(new int[]{1, 2, 3});
+        portfolio.setCodes(new String[]{"A", "B"});
+        return portfolio;
+    }
+
+    private static Account account() {
+        Account account = new Account();
+        account.setId(1L);
+        account.setName("Savings");
+        account.setBalance(new BigDecimal("100.00"));
+        account.setRate(0.01);
+        account.setActive(true);
+        account.setReference(new UUID(0L, 1L));
+        account.getHolders().add(new Employee(null, "e1", "Alice"));
+        account.getTags().add("gold");
+        return account;
+    }
+}
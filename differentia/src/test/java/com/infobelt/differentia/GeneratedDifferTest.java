@@ -0,0 +1,91 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Dog;
+import com.infobelt.differentia.models.Gauge;
+import com.infobelt.differentia.models.Ledger;
+import com.infobelt.differentia.models.Meter;
+import com.infobelt.differentia.models.Owner;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * The test models are run through the differentia-processor, so we can check the generated differs
+ * are registered and give the same answers as reflection
+ */
+public class GeneratedDifferTest {
+
+    private static final AuditBuilder GENERATED_BUILDER = new AuditBuilder();
+    private static final AuditBuilder REFLECTIVE_BUILDER = new AuditBuilder();
+
+    static {
+        REFLECTIVE_BUILDER.setUseGeneratedDiffers(false);
+    }
+
+    @Test
+    public void differsAreRegistered() {
+        Differ<Dog> differ = new ServiceLoaderDifferFactory().getDiffer(Dog.class);
+        assertThat(differ, notNullValue());
+        assertThat(differ.getClass().getSimpleName(), equalTo("Dog_AuditDiffer"));
+        assertThat(new ServiceLoaderDifferFactory().getDiffer(String.class), nullValue());
+    }
+
+    @Test
+    public void primitiveChanges() {
+        Gauge oldGauge = new Gauge();
+        oldGauge.setLabel("Pressure");
+        oldGauge.setWeight(0.1f);
+        oldGauge.setGrade('A');
+
+        Gauge newGauge = new Gauge();
+        newGauge.setLabel("Pressure");
+        newGauge.setCount(3);
+        newGauge.setWeight(0.2f);
+        newGauge.setActive(true);
+        newGauge.setGrade('A');
+
+        List<AuditChange> changes = GENERATED_BUILDER.buildChanges(oldGauge, newGauge);
+        assertThat(changes.size(), equalTo(3));
+        assertThat(changes, equalTo(REFLECTIVE_BUILDER.buildChanges(oldGauge, newGauge)));
+    }
+
+    @Test
+    public void descriptivePropertyChange() {
+        Owner owner1 = new Owner();
+        owner1.setName("Bob");
+        Dog dog1 = new Dog();
+        dog1.setOwner(owner1);
+
+        Dog dog2 = new Dog();
+
+        List<AuditChange> changes = GENERATED_BUILDER.buildChanges(dog1, dog2);
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getOldValue(), equalTo("Bob"));
+        assertThat(changes.get(0).getNewValue(), nullValue());
+        assertThat(changes, equalTo(REFLECTIVE_BUILDER.buildChanges(dog1, dog2)));
+    }
+
+    @Test
+    public void inaccessibleGettersUseReflection() {
+        DifferFactory factory = new ServiceLoaderDifferFactory();
+        assertThat(factory.getDiffer(Ledger.class), nullValue());
+        assertThat(factory.getDiffer(Meter.class), nullValue());
+
+        Ledger oldLedger = new Ledger();
+        oldLedger.setName("Sales");
+        oldLedger.setCode("S1");
+        Ledger newLedger = new Ledger();
+        newLedger.setName("Sales");
+        newLedger.setCode("S2");
+        assertThat(GENERATED_BUILDER.buildChanges(oldLedger, newLedger).size(), equalTo(1));
+
+        List<AuditChange> changes = GENERATED_BUILDER.buildChanges(new Meter().name("Gas").reading(1), new Meter().name("Gas").reading(2));
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getNewValue(), equalTo("2"));
+    }
+}
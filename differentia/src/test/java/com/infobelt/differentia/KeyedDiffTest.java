@@ -0,0 +1,175 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Portfolio;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class KeyedDiffTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+    private static final AuditBuilder REFLECTIVE_BUILDER = new AuditBuilder();
+
+    static {
+        REFLECTIVE_BUILDER.setUseGeneratedDiffers(false);
+    }
+
+    @Test
+    public void mapKeys() {
+        Portfolio oldPortfolio = portfolio();
+        oldPortfolio.getLimits().put("gold", new BigDecimal("100"));
+        oldPortfolio.getLimits().put("silver", new BigDecimal("50"));
+        oldPortfolio.getLimits().put("bronze", new BigDecimal("10"));
+        Portfolio newPortfolio = portfolio();
+        newPortfolio.getLimits().put("gold", new BigDecimal("100.00"));
+        newPortfolio.getLimits().put("silver", new BigDecimal("75"));
+        newPortfolio.getLimits().put("platinum", new BigDecimal("500"));
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldPortfolio, newPortfolio);
+
+        assertThat(changes.size(), equalTo(3));
+        assertThat(changes.get(0).getEventType(), equalTo(AuditEventType.CHANGE));
+        assertThat(changes.get(0).getProperty(), equalTo("limits[silver]"));
+        assertThat(changes.get(0).getOldValue(), equalTo("50"));
+        assertThat(changes.get(0).getNewValue(), equalTo("75"));
+        assertThat(changes.get(0).getMessage(), equalTo("Portfolio Growth changed"));
+        assertThat(changes.get(1).getEventType(), equalTo(AuditEventType.REMOVE));
+        assertThat(changes.get(1).getProperty(), equalTo("limits[bronze]"));
+        assertThat(changes.get(1).getOldValue(), equalTo("10"));
+        assertThat(changes.get(2).getEventType(), equalTo(AuditEventType.ADD));
+        assertThat(changes.get(2).getProperty(), equalTo("limits[platinum]"));
+        assertThat(changes.get(2).getNewValue(), equalTo("500"));
+
+        assertThat(REFLECTIVE_BUILDER.buildChanges(oldPortfolio, newPortfolio), equalTo(changes));
+        assertThat(AUDIT_BUILDER.isChanged(oldPortfolio, newPortfolio), equalTo(true));
+        assertThat(AUDIT_BUILDER.renderMessage(stored(changes.get(0))), equalTo(changes.get(0).getMessage()));
+    }
+
+    @Test
+    public void auditedValues() {
+        Portfolio oldPortfolio = portfolio();
+        oldPortfolio.getManagers().put("lead", new Employee(null, "1", "Bob"));
+        oldPortfolio.getManagers().put("backup", new Employee(null, "2", "Jane"));
+        Portfolio newPortfolio = portfolio();
+        newPortfolio.getManagers().put("lead", new Employee(null, "1", "Robert"));
+        newPortfolio.getManagers().put("analyst", new Employee(null, "3", "Sally"));
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldPortfolio, newPortfolio);
+
+        assertThat(changes.size(), equalTo(3));
+        assertThat(changes.get(0).getEntity(), equalTo("Employee"));
+        assertThat(changes.get(0).getProperty(), equalTo("name"));
+        assertThat(changes.get(0).getNewValue(), equalTo("Robert"));
+        assertThat(changes.get(1).getProperty(), equalTo("managers[backup]"));
+        assertThat(changes.get(1).getOldValue(), equalTo("Jane"));
+        assertThat(changes.get(2).getProperty(), equalTo("managers[analyst]"));
+        assertThat(changes.get(2).getNewValue(), equalTo("Sally"));
+        assertThat(changes.get(2).getRelatedEntity(), equalTo("Employee"));
+
+        assertThat(REFLECTIVE_BUILDER.buildChanges(oldPortfolio, newPortfolio), equalTo(changes));
+        assertThat(AUDIT_BUILDER.explain(oldPortfolio, newPortfolio).getRoot().getChildren().get(0).getPath(), equalTo("managers[lead]"));
+    }
+
+    @Test
+    public void primitiveArrays() {
+        Portfolio oldPortfolio = portfolio();
+        oldPortfolio.setScores(new int[]{1, 2, 3, 4, 5});
+        Portfolio newPortfolio = portfolio();
+        newPortfolio.setScores(new int[]{1, 2, 30, 4});
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldPortfolio, newPortfolio);
+
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(0).getProperty(), equalTo("scores[2]"));
+        assertThat(changes.get(0).getOldValue(), equalTo("3"));
+        assertThat(changes.get(0).getNewValue(), equalTo("30"));
+        assertThat(changes.get(1).getEventType(), equalTo(AuditEventType.REMOVE));
+        assertThat(changes.get(1).getProperty(), equalTo("scores[4]"));
+        assertThat(REFLECTIVE_BUILDER.buildChanges(oldPortfolio, newPortfolio), equalTo(changes));
+
+        // An array that is equal but not the same array isn't a change
+        Portfolio samePortfolio = portfolio();
+        samePortfolio.setScores(new int[]{1, 2, 3, 4, 5});
+        assertThat(AUDIT_BUILDER.buildChanges(oldPortfolio, samePortfolio).size(), equalTo(0));
+        assertThat(REFLECTIVE_BUILDER.buildChanges(oldPortfolio, samePortfolio).size(), equalTo(0));
+        assertThat(AUDIT_BUILDER.isChanged(oldPortfolio, samePortfolio), equalTo(false));
+        assertThat(AUDIT_BUILDER.isChanged(oldPortfolio, newPortfolio), equalTo(true));
+    }
+
+    @Test
+    public void objectArrays() {
+        Portfolio oldPortfolio = portfolio();
+        oldPortfolio.setCodes(null);
+        Portfolio newPortfolio = portfolio();
+        newPortfolio.setCodes(new String[]{"A", "B"});
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldPortfolio, newPortfolio);
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(1).getEventType(), equalTo(AuditEventType.ADD));
+        assertThat(changes.get(1).getProperty(), equalTo("codes[1]"));
+        assertThat(changes.get(1).getOldValue(), nullValue());
+        assertThat(changes.get(1).getNewValue(), equalTo("B"));
+
+        oldPortfolio.setCodes(new String[]{"A", "C"});
+        changes = AUDIT_BUILDER.buildChanges(oldPortfolio, newPortfolio);
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getProperty(), equalTo("codes[1]"));
+        assertThat(changes.get(0).getOldValue(), equalTo("C"));
+    }
+
+    @Test
+    public void snapshots() {
+        Portfolio oldPortfolio = portfolio();
+        oldPortfolio.getLimits().put("gold", new BigDecimal("100"));
+        oldPortfolio.getLimits().put("silver", new BigDecimal("50"));
+        oldPortfolio.getManagers().put("lead", new Employee(null, "1", "Bob"));
+        oldPortfolio.setScores(new int[]{1, 2, 3});
+        oldPortfolio.setCodes(new String[]{"A", "B"});
+        Portfolio newPortfolio = portfolio();
+        newPortfolio.getLimits().put("gold", new BigDecimal("100.00"));
+        newPortfolio.getLimits().put("platinum", new BigDecimal("500"));
+        newPortfolio.getManagers().put("lead", new Employee(null, "1", "Robert"));
+        newPortfolio.setScores(new int[]{1, 20, 3});
+        newPortfolio.setCodes(new String[]{"A", "B"});
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildSnapshotChanges(AUDIT_BUILDER.snapshot(oldPortfolio), newPortfolio);
+
+        assertThat(changes.size(), equalTo(4));
+        assertThat(changes.get(0).getProperty(), equalTo("limits[silver]"));
+        assertThat(changes.get(1).getProperty(), equalTo("limits[platinum]"));
+        assertThat(changes.get(2).getProperty(), equalTo("name"));
+        assertThat(changes.get(2).getNewValue(), equalTo("Robert"));
+        assertThat(changes.get(3).getProperty(), equalTo("scores[1]"));
+        assertThat(changes.get(3).getNewValue(), equalTo("20"));
+        assertThat(changes, equalTo(AUDIT_BUILDER.buildChanges(oldPortfolio, newPortfolio)));
+        assertThat(changes, equalTo(REFLECTIVE_BUILDER.buildChanges(oldPortfolio, newPortfolio)));
+        assertThat(AUDIT_BUILDER.buildSnapshotChanges(AUDIT_BUILDER.snapshot(oldPortfolio), AUDIT_BUILDER.snapshot(newPortfolio)), equalTo(changes));
+    }
+
+    private Portfolio portfolio() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.setId(1L);
+        portfolio.setName("Growth");
+        return portfolio;
+    }
+
+    // A copy of the change without its message, as if it had been stored and loaded
+    private AuditChange stored(AuditChange change) {
+        AuditChange stored = new AuditChange();
+        stored.setEntity(change.getEntity());
+        stored.setEntityDescriptiveName(change.getEntityDescriptiveName());
+        stored.setEventType(change.getEventType());
+        stored.setProperty(change.getProperty());
+        stored.setDescriptiveName(change.getDescriptiveName());
+        stored.setOldValue(change.getOldValue());
+        stored.setNewValue(change.getNewValue());
+        stored.setAffectedId(change.getAffectedId());
+        return stored;
+    }
+}
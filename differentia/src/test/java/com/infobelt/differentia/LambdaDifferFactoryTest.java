@@ -0,0 +1,102 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Boss;
+import com.infobelt.differentia.models.Dog;
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Gauge;
+import com.infobelt.differentia.models.Owner;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LambdaDifferFactoryTest {
+
+    private static final AuditBuilder REFLECTIVE_BUILDER = new AuditBuilder();
+    private static final AuditBuilder COMPILED_BUILDER = new AuditBuilder();
+
+    static {
+        REFLECTIVE_BUILDER.setUseGeneratedDiffers(false);
+        COMPILED_BUILDER.setUseGeneratedDiffers(false);
+        COMPILED_BUILDER.setDifferFactory(new LambdaDifferFactory());
+    }
+
+    @Test
+    public void compilesPublicClasses() {
+        assertThat(new LambdaDifferFactory().getDiffer(Gauge.class), notNullValue());
+        assertThat(new LambdaDifferFactory().getDiffer(String.class), nullValue());
+    }
+
+    @Test
+    public void primitiveChanges() {
+        Gauge oldGauge = gauge();
+        Gauge newGauge = gauge();
+        newGauge.setCount(2);
+        newGauge.setTotal(20L);
+        newGauge.setRatio(-0.0);
+        newGauge.setWeight(0.2f);
+        newGauge.setActive(false);
+        newGauge.setGrade('B');
+
+        List<AuditChange> changes = COMPILED_BUILDER.buildChanges(oldGauge, newGauge);
+        assertThat(changes.size(), equalTo(6));
+        assertThat(changes, equalTo(REFLECTIVE_BUILDER.buildChanges(oldGauge, newGauge)));
+        assertThat(changes.get(3).getNewValue(), equalTo("0.2"));
+        assertThat(changes.get(5).getOldValue(), equalTo("A"));
+    }
+
+    @Test
+    public void noChanges() {
+        assertThat(COMPILED_BUILDER.buildChanges(gauge(), gauge()).size(), equalTo(0));
+    }
+
+    @Test
+    public void descriptivePropertyChange() {
+        Owner owner1 = new Owner();
+        owner1.setName("Bob");
+        Owner owner2 = new Owner();
+        owner2.setName("Sally");
+
+        Dog dog1 = new Dog();
+        dog1.setName("Fluffy");
+        dog1.setOwner(owner1);
+        Dog dog2 = new Dog();
+        dog2.setName("Fluffy");
+        dog2.setOwner(owner2);
+
+        assertThat(COMPILED_BUILDER.buildChanges(dog1, dog2), equalTo(REFLECTIVE_BUILDER.buildChanges(dog1, dog2)));
+    }
+
+    @Test
+    public void traversal() {
+        Boss oldBoss = new Boss();
+        oldBoss.setName("Phil");
+        oldBoss.getEmployees().add(new Employee(null, "1", "Thing1"));
+        oldBoss.getEmployees().add(new Employee(null, "2", "Thing2"));
+
+        Boss newBoss = new Boss();
+        newBoss.setName("Philip");
+        newBoss.getEmployees().add(new Employee(null, "2", "Thing3"));
+        newBoss.getEmployees().add(new Employee(null, "3", "Thing4"));
+
+        List<AuditChange> changes = COMPILED_BUILDER.buildChanges(oldBoss, newBoss);
+        assertThat(changes.size(), equalTo(4));
+        assertThat(changes, equalTo(REFLECTIVE_BUILDER.buildChanges(oldBoss, newBoss)));
+    }
+
+    private Gauge gauge() {
+        Gauge gauge = new Gauge();
+        gauge.setLabel("Pressure");
+        gauge.setCount(1);
+        gauge.setTotal(10L);
+        gauge.setRatio(0.0);
+        gauge.setWeight(0.1f);
+        gauge.setActive(true);
+        gauge.setGrade('A');
+        return gauge;
+    }
+}
@@ -0,0 +1,134 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Boss;
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.SimpleExampleObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LazyMessageTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    private final AtomicInteger rendered = new AtomicInteger();
+
+    private AuditBuilder lazyBuilder;
+
+    @Before
+    public void setup() {
+        lazyBuilder = new AuditBuilder(new DefaultMessageBuilder() {
+            @Override
+            public String buildChangeMessage(AuditBuilder builder, ObjectMetadata om, AuditChange auditChange) {
+                rendered.incrementAndGet();
+                return super.buildChangeMessage(builder, om, auditChange);
+            }
+        });
+        lazyBuilder.setLazyMessages(true);
+    }
+
+    @Test
+    public void notRenderedUntilRead() {
+        List<AuditChange> changes = lazyBuilder.buildChanges(boss("Alice", "Bob"), boss("Alicia", "Robert"));
+
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(0).getNewValue(), equalTo("Alicia"));
+        assertThat(rendered.get(), equalTo(0));
+
+        assertThat(changes.get(0).getMessage(), equalTo("Bossing Alice changed"));
+        assertThat(changes.get(0).getMessage(), equalTo("Bossing Alice changed"));
+        assertThat(rendered.get(), equalTo(1));
+    }
+
+    @Test
+    public void sameAsEager() {
+        Boss oldBoss = boss("Alice", "Bob", "Sally");
+        Boss newBoss = boss("Alicia", "Robert", "Jim");
+
+        assertThat(lazyBuilder.buildChanges(oldBoss, newBoss), equalTo(AUDIT_BUILDER.buildChanges(oldBoss, newBoss)));
+        assertThat(lazyBuilder.buildChanges(null, newBoss), equalTo(AUDIT_BUILDER.buildChanges(null, newBoss)));
+        assertThat(lazyBuilder.buildChanges(oldBoss, null), equalTo(AUDIT_BUILDER.buildChanges(oldBoss, null)));
+    }
+
+    @Test
+    public void newAndDeletedUseTheEntityAsItWas() {
+        Boss boss = boss("before");
+        String created = AUDIT_BUILDER.buildChanges(null, boss).get(0).getMessage();
+        String deleted = AUDIT_BUILDER.buildChanges(boss, null).get(0).getMessage();
+
+        AuditChange create = lazyBuilder.buildChanges(null, boss).get(0);
+        AuditChange delete = lazyBuilder.buildChanges(boss, null).get(0);
+        boss.setName("after");
+
+        assertThat(create.getMessage(), equalTo(created));
+        assertThat(delete.getMessage(), equalTo(deleted));
+        assertThat(create.getEntityDescriptiveName(), equalTo("before"));
+    }
+
+    @Test
+    public void readFromManyThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 100; round++) {
+                AuditChange change = lazyBuilder.buildChanges(boss("Alice"), boss("Alicia")).get(0);
+                List<Future<String>> messages = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    messages.add(executor.submit(change::getMessage));
+                }
+                for (Future<String> message : messages) {
+                    assertThat(message.get(), equalTo("Bossing Alice changed"));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void renderFromStoredChange() {
+        SimpleExampleObject example = new SimpleExampleObject();
+        example.setName("Bob");
+        example.setDescription("Thing");
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(null, example);
+        changes.addAll(AUDIT_BUILDER.buildChanges(boss("Alice", "Bob"), boss("Alicia", "Bob", "Sally")));
+
+        for (AuditChange change : changes) {
+            assertThat(AUDIT_BUILDER.renderMessage(stored(change)), equalTo(change.getMessage()));
+        }
+    }
+
+    // A copy of the change without its message, as if it had been stored and loaded
+    private AuditChange stored(AuditChange change) {
+        AuditChange stored = new AuditChange();
+        stored.setEntity(change.getEntity());
+        stored.setRelatedEntity(change.getRelatedEntity());
+        stored.setEntityDescriptiveName(change.getEntityDescriptiveName());
+        stored.setDescriptive(change.isDescriptive());
+        stored.setEventType(change.getEventType());
+        stored.setProperty(change.getProperty());
+        stored.setDescriptiveName(change.getDescriptiveName());
+        stored.setOldValue(change.getOldValue());
+        stored.setNewValue(change.getNewValue());
+        stored.setAffectedId(change.getAffectedId());
+        return stored;
+    }
+
+    private Boss boss(String name, String... employees) {
+        Boss boss = new Boss();
+        boss.setName(name);
+        for (int i = 0; i < employees.length; i++) {
+            boss.getEmployees().add(new Employee(null, String.valueOf(i), employees[i]));
+        }
+        return boss;
+    }
+}
@@ -0,0 +1,123 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Archive;
+import com.infobelt.differentia.models.Folder;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.StringSubstitutor;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MessageTemplateTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    private static final String[] TEMPLATES = {
+            "New ${entity} has been added",
+            "${entity_caps} ${entityDescriptiveName} changed",
+            "${relatedEntity_caps} has been associated with ${entity_nocaps}",
+            "  ${descriptiveName} from ${oldValue} to ${newValue}  ",
+            "${unknown} and ${newValue_caps} stay, $${entity} is escaped",
+            "No placeholders at all",
+            "Unclosed ${entity"
+    };
+
+    @Test
+    public void sameAsSubstitutor() {
+        AuditChange change = new AuditChange();
+        change.setEntity("bossing");
+        change.setEntityDescriptiveName("Alice  Smith");
+        change.setDescriptiveName("Name");
+        change.setOldValue(" Bob\t");
+        change.setNewValue("Robert");
+
+        AuditChange nulls = new AuditChange();
+        nulls.setEntity("Bossing");
+
+        for (String template : TEMPLATES) {
+            assertThat(template, MessageTemplate.compile(template).render(change), equalTo(substitute(template, change)));
+            assertThat(template, MessageTemplate.compile(template).render(nulls), equalTo(substitute(template, nulls)));
+        }
+    }
+
+    @Test
+    public void renderToAppendable() throws IOException {
+        AuditChange change = new AuditChange();
+        change.setEntity("bossing");
+        change.setEntityDescriptiveName("Alice");
+
+        StringBuilder sb = new StringBuilder("> ");
+        MessageTemplate.compile("${entity_caps} ${entityDescriptiveName} changed").render(change, sb);
+        assertThat(sb.toString(), equalTo("> Bossing Alice changed"));
+    }
+
+    @Test
+    public void templatesFromAnnotations() {
+        Folder oldFolder = new Folder();
+        oldFolder.setName("Invoices");
+        Folder newFolder = new Folder();
+        newFolder.setName("Receipts");
+        newFolder.getLabels().add("Urgent");
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldFolder, newFolder);
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(0).getMessage(), equalTo("Folder Invoices was edited"));
+        assertThat(changes.get(1).getMessage(), equalTo("New Folder has labels"));
+
+        // And the same when rendered from the stored change by a builder that has the class registered
+        assertThat(new AuditBuilder().registerEntities(Folder.class).renderMessage(stored(changes.get(1))), equalTo("New Folder has labels"));
+    }
+
+    @Test
+    public void storedChangesUseRegisteredTemplates() {
+        AuditChange change = new AuditChange();
+        change.setEntity("Folder");
+        change.setEntityDescriptiveName("Invoices");
+        change.setProperty("name");
+        change.setEventType(AuditEventType.CHANGE);
+
+        // As if we had restarted, nothing has been diffed with these builders
+        assertThat(new AuditBuilder().renderMessage(stored(change)), equalTo("Folder Invoices changed"));
+        assertThat(new AuditBuilder().registerEntities(Folder.class).renderMessage(stored(change)), equalTo("Folder Invoices was edited"));
+        assertThat(new AuditBuilder().registerEntities(Archive.class).renderMessage(stored(change)), equalTo("Folder Invoices changed"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void entityNamesAreRegisteredOnce() {
+        new AuditBuilder().registerEntities(Folder.class, Archive.class);
+    }
+
+    private AuditChange stored(AuditChange change) {
+        AuditChange stored = new AuditChange();
+        stored.setEntity(change.getEntity());
+        stored.setEntityDescriptiveName(change.getEntityDescriptiveName());
+        stored.setProperty(change.getProperty());
+        stored.setEventType(change.getEventType());
+        stored.setDescriptiveName(change.getDescriptiveName());
+        return stored;
+    }
+
+    // This is how the default message builder used to render the messages
+    private String substitute(String template, AuditChange auditChange) {
+        Map<String, String> valuesMap = new HashMap<>();
+        addEntry("entity", auditChange.getEntity(), valuesMap);
+        addEntry("entityDescriptiveName", auditChange.getEntityDescriptiveName(), valuesMap);
+        addEntry("descriptiveName", auditChange.getDescriptiveName(), valuesMap);
+        valuesMap.put("newValue", auditChange.getNewValue());
+        valuesMap.put("oldValue", auditChange.getOldValue());
+        addEntry("relatedEntity", auditChange.getRelatedEntity(), valuesMap);
+        return StringUtils.normalizeSpace(new StringSubstitutor(valuesMap).replace(template));
+    }
+
+    private void addEntry(String key, String value, Map<String, String> valuesMap) {
+        valuesMap.put(key, value);
+        valuesMap.put(key + "_caps", StringUtils.capitalize(value));
+        valuesMap.put(key + "_nocaps", StringUtils.lowerCase(value));
+    }
+}
@@ -0,0 +1,125 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Account;
+import com.infobelt.differentia.models.Employee;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MetricsTest {
+
+    @Test
+    public void metrics() {
+        InMemoryAuditMetrics metrics = new InMemoryAuditMetrics();
+        AuditBuilder auditBuilder = new AuditBuilder();
+        auditBuilder.setMetrics(metrics);
+
+        List<AuditChange> changes = auditBuilder.buildChanges(oldAccount(), newAccount());
+        assertThat(changes.size(), equalTo(4));
+
+        InMemoryAuditMetrics.EntityMetrics account = metrics.getEntity("Account");
+        assertThat(account.getLatency().getCount(), equalTo(1L));
+        assertThat(account.getFieldsVisited(), equalTo(8L));
+        assertThat(account.getMaxDepth(), equalTo(1L));
+        assertThat(account.getChanges(), equalTo(3L));
+        assertThat(account.getMessages(), equalTo(3L));
+
+        // Bob was matched and renamed, Jane was added
+        InMemoryAuditMetrics.EntityMetrics employee = metrics.getEntity("Employee");
+        assertThat(employee.getLatency().getCount(), equalTo(1L));
+        assertThat(employee.getMaxDepth(), equalTo(2L));
+        assertThat(employee.getChanges(), equalTo(1L));
+        assertThat(employee.getCharacters() > 0, equalTo(true));
+
+        assertThat(account.getLatency().getPercentile(100) >= account.getLatency().getPercentile(50), equalTo(true));
+
+        metrics.reset();
+        assertThat(metrics.getEntity("Account"), nullValue());
+    }
+
+    @Test
+    public void lazyMessagesAreMeasuredWhenRendered() {
+        InMemoryAuditMetrics metrics = new InMemoryAuditMetrics();
+        AuditBuilder auditBuilder = new AuditBuilder();
+        auditBuilder.setMetrics(metrics);
+        auditBuilder.setLazyMessages(true);
+
+        List<AuditChange> changes = auditBuilder.buildChanges(oldAccount(), newAccount());
+        assertThat(metrics.getEntity("Account").getMessages(), equalTo(0L));
+
+        changes.forEach(AuditChange::getMessage);
+        assertThat(metrics.getEntity("Account").getMessages(), equalTo(3L));
+    }
+
+    @Test
+    public void traceUnwindsOnFailure() {
+        AuditBuilder auditBuilder = new AuditBuilder();
+        auditBuilder.setMetrics(new AuditMetrics() {
+            @Override
+            public void objectDiffed(ObjectMetadata om, long nanos, int fieldsVisited, int depth) {
+                if (depth > 1) {
+                    throw new IllegalStateException("Failed on " + om.getEntityName());
+                }
+            }
+        });
+        AuditTrace trace = new AuditTrace();
+        try {
+            auditBuilder.buildChanges(oldAccount(), newAccount(), trace::addChange, new DiffContext(trace));
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(trace.getPath(), equalTo(""));
+        }
+    }
+
+    @Test
+    public void explain() {
+        AuditBuilder auditBuilder = new AuditBuilder();
+        AuditTrace trace = auditBuilder.explain(oldAccount(), newAccount());
+
+        assertThat(trace.getChanges(), equalTo(auditBuilder.buildChanges(oldAccount(), newAccount())));
+
+        AuditTrace.ObjectTrace root = trace.getRoot();
+        assertThat(root.getEntity(), equalTo("Account"));
+        assertThat(root.getPath(), equalTo(""));
+        assertThat(root.getFields().size(), equalTo(8));
+
+        AuditTrace.FieldTrace name = root.getFields().get(1);
+        assertThat(name.getPath(), equalTo("name"));
+        assertThat(name.getChanges(), equalTo(0));
+
+        AuditTrace.FieldTrace holders = root.getFields().get(6);
+        assertThat(holders.getPath(), equalTo("holders"));
+        assertThat(holders.isTraversed(), equalTo(true));
+        assertThat(holders.getChanges(), equalTo(2));
+
+        AuditTrace.ObjectTrace bob = root.getChildren().get(0);
+        assertThat(bob.getEntity(), equalTo("Employee"));
+        assertThat(bob.getPath(), equalTo("holders[1]"));
+        assertThat(bob.getFields().get(1).getPath(), equalTo("holders[1].name"));
+        assertThat(bob.getFields().get(1).getChanges(), equalTo(1));
+        assertThat(trace.toString(), notNullValue());
+    }
+
+    private Account oldAccount() {
+        Account account = new Account();
+        account.setId(1L);
+        account.setName("Savings");
+        account.getHolders().add(new Employee(null, "1", "Bob"));
+        account.getTags().add("gold");
+        return account;
+    }
+
+    private Account newAccount() {
+        Account account = oldAccount();
+        account.getHolders().get(0).setName("Robert");
+        account.getHolders().add(new Employee(null, "2", "Jane"));
+        account.getTags().set(0, "silver");
+        return account;
+    }
+}
@@ -0,0 +1,51 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Enrollment;
+import com.infobelt.differentia.models.SimpleExampleObject;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ObjectMetadataTest {
+
+    @Test
+    public void planIsCachedPerClass() {
+        assertThat(ObjectMetadata.of(new SimpleExampleObject()), sameInstance(ObjectMetadata.forClass(SimpleExampleObject.class)));
+    }
+
+    @Test
+    public void planResolvesFields() {
+        ObjectMetadata om = ObjectMetadata.forClass(SimpleExampleObject.class);
+        assertThat(om.isTracked(), equalTo(true));
+        assertThat(om.getEntityName(), equalTo("example"));
+        assertThat(om.getField("name").isTracked(), equalTo(true));
+        assertThat(om.getField("name").isDescriptiveField(), equalTo(true));
+        assertThat(om.getField("name").getPropertyDescriptiveName(), equalTo("First name"));
+        assertThat(om.getField("amount").isTracked(), equalTo(false));
+    }
+
+    @Test
+    public void planResolvesLayout() {
+        ObjectMetadata employee = ObjectMetadata.forClass(Employee.class);
+        assertThat(employee.getParents(), equalTo(Collections.singletonList("boss")));
+        assertThat(employee.getMappedBy(), equalTo("employees"));
+        assertThat(employee.isJoin(), equalTo(false));
+
+        ObjectMetadata enrollment = ObjectMetadata.forClass(Enrollment.class);
+        assertThat(enrollment.isJoin(), equalTo(true));
+        assertThat(enrollment.getField("course").getEvent(AuditEventType.REMOVE), equalTo(AuditEventType.DISASSOCIATE));
+    }
+
+    @Test
+    public void untrackedClass() {
+        ObjectMetadata om = ObjectMetadata.forClass(String.class);
+        assertThat(om.isTracked(), equalTo(false));
+        assertThat(om.getFields().size(), equalTo(0));
+        assertThat(om.getEntityName(), equalTo("String"));
+    }
+}
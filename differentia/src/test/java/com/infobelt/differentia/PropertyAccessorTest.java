@@ -0,0 +1,50 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Dog;
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Owner;
+import com.infobelt.differentia.models.SimpleExampleObject;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PropertyAccessorTest {
+
+    @Test
+    public void readsGetter() {
+        SimpleExampleObject obj = new SimpleExampleObject();
+        obj.setName("Cheese");
+        obj.setAmount(3);
+        assertThat(PropertyAccessor.forProperty(SimpleExampleObject.class, "name").get(obj), equalTo("Cheese"));
+        assertThat(PropertyAccessor.forProperty(SimpleExampleObject.class, "amount").get(obj), equalTo(3));
+    }
+
+    @Test
+    public void accessorIsResolvedOnce() {
+        assertThat(PropertyAccessor.forProperty(Employee.class, "id"), sameInstance(PropertyAccessor.forProperty(Employee.class, "id")));
+    }
+
+    @Test
+    public void missingProperty() {
+        assertThat(PropertyAccessor.forProperty(Owner.class, "id"), nullValue());
+        assertThat(ObjectMetadata.forClass(Owner.class).isHasId(), equalTo(false));
+        assertThat(ObjectMetadata.forClass(Employee.class).isHasId(), equalTo(true));
+    }
+
+    @Test
+    public void nestedPath() {
+        Owner owner = new Owner();
+        owner.setName("Bob");
+        Dog dog = new Dog();
+        dog.setOwner(owner);
+        assertThat(PropertyPath.compile("owner.name").get(dog), equalTo("Bob"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nestedPathWithNull() {
+        PropertyPath.compile("owner.name").get(new Dog());
+    }
+}
@@ -0,0 +1,112 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Account;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ReconcilerTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sortedMerge() {
+        List<AuditChange> changes = reconcile(sorted(), yesterday(), today());
+
+        // 0 and 1 were removed, 2 renamed, 20 and 21 added
+        assertThat(changes.size(), equalTo(5));
+        assertThat(changes.get(0).getEventType(), equalTo(AuditEventType.REMOVE));
+        assertThat(changes.get(0).getMessage(), equalTo("Deleted Account Account 0"));
+        assertThat(changes.get(1).getAffectedId(), equalTo(1L));
+        assertThat(changes.get(2).getEventType(), equalTo(AuditEventType.CHANGE));
+        assertThat(changes.get(2).getNewValue(), equalTo("Renamed"));
+        assertThat(changes.get(3).getEventType(), equalTo(AuditEventType.ADD));
+        assertThat(changes.get(3).getMessage(), equalTo("New Account Account 20"));
+        assertThat(changes.get(4).getAffectedId(), equalTo(21L));
+    }
+
+    @Test
+    public void externalSort() throws IOException {
+        Path temp = folder.newFolder().toPath();
+        Reconciler reconciler = new Reconciler(AUDIT_BUILDER);
+        reconciler.setRunSize(3);
+        reconciler.setTempDirectory(temp);
+
+        List<Account> yesterday = yesterday();
+        List<Account> today = today();
+        Collections.shuffle(yesterday, new Random(1));
+        Collections.shuffle(today, new Random(2));
+
+        assertThat(reconcile(reconciler, yesterday, today), equalTo(reconcile(sorted(), yesterday(), today())));
+        try (Stream<Path> files = Files.list(temp)) {
+            assertThat(files.count(), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void sortedInMemory() {
+        List<Account> today = today();
+        Collections.reverse(today);
+        assertThat(reconcile(new Reconciler(AUDIT_BUILDER), yesterday(), today), equalTo(reconcile(sorted(), yesterday(), today())));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notSorted() {
+        List<Account> today = today();
+        Collections.reverse(today);
+        reconcile(sorted(), yesterday(), today);
+    }
+
+    private static Reconciler sorted() {
+        Reconciler reconciler = new Reconciler(AUDIT_BUILDER);
+        reconciler.setSorted(true);
+        return reconciler;
+    }
+
+    private static List<AuditChange> reconcile(Reconciler reconciler, List<Account> oldAccounts, List<Account> newAccounts) {
+        List<AuditChange> changes = new ArrayList<>();
+        reconciler.reconcile(oldAccounts.spliterator(), newAccounts.spliterator(), changes::add);
+        return changes;
+    }
+
+    private static List<Account> yesterday() {
+        List<Account> accounts = new ArrayList<>();
+        for (long id = 0; id < 20; id++) {
+            accounts.add(account(id, "Account " + id));
+        }
+        return accounts;
+    }
+
+    private static List<Account> today() {
+        List<Account> accounts = new ArrayList<>();
+        for (long id = 2; id < 22; id++) {
+            accounts.add(account(id, id == 2 ? "Renamed" : "Account " + id));
+        }
+        return accounts;
+    }
+
+    private static Account account(long id, String name) {
+        Account account = new Account();
+        account.setId(id);
+        account.setName(name);
+        account.setBalance(new BigDecimal("100.00"));
+        account.getTags().add("gold");
+        return account;
+    }
+}
@@ -0,0 +1,178 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Account;
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Node;
+import com.infobelt.differentia.models.Portfolio;
+import com.infobelt.differentia.models.Shipment;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SnapshotStoreTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void diffAgainstStoredSnapshot() throws IOException {
+        Account before = account(1L, "Savings");
+        Account after = account(1L, "Savings");
+        after.setBalance(new BigDecimal("250.00"));
+        after.setRate(0.02);
+        after.setActive(false);
+        after.getHolders().get(0).setName("Alicia");
+        after.getHolders().add(new Employee(null, "e2", "Bob"));
+        after.getTags().remove("gold");
+
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, folder.newFolder().toPath())) {
+            store.put(before);
+            Snapshot snapshot = store.get(1L);
+
+            assertThat(snapshot.getAffectedId(), equalTo(1L));
+            assertThat(snapshot.getEntityDescriptiveName(), equalTo("Savings"));
+
+            List<AuditChange> expected = AUDIT_BUILDER.buildChanges(before, after);
+            assertThat(expected.size(), equalTo(6));
+            assertThat(AUDIT_BUILDER.buildSnapshotChanges(snapshot, after), equalTo(expected));
+            assertThat(AUDIT_BUILDER.buildSnapshotChanges(snapshot, before).size(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void reopen() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Account account = account(7L, "Current");
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, directory)) {
+            store.put(account);
+        }
+
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, directory)) {
+            assertThat(store.size(), equalTo(1));
+            assertThat(AUDIT_BUILDER.buildSnapshotChanges(store.get(7L), account).size(), equalTo(0));
+            assertThat(store.get(8L), nullValue());
+        }
+    }
+
+    @Test
+    public void replaceAndRollSegments() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, directory, 1024)) {
+            for (long id = 0; id < 100; id++) {
+                store.put(account(id, "Account " + id));
+            }
+            store.put(account(42L, "Renamed"));
+
+            assertThat(store.size(), equalTo(100));
+            assertThat(store.get(42L).getEntityDescriptiveName(), equalTo("Renamed"));
+            assertThat(store.get(41L).getEntityDescriptiveName(), equalTo("Account 41"));
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.collect(Collectors.toList()).size() > 1, equalTo(true));
+        }
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, directory, 1024)) {
+            assertThat(store.size(), equalTo(100));
+            assertThat(store.get(42L).getEntityDescriptiveName(), equalTo("Renamed"));
+        }
+    }
+
+    @Test
+    public void cycles() {
+        Node root = new Node();
+        root.setName("Root");
+        root.setLeft(root);
+
+        // A node has no id to store it under, so we just read back the record
+        Snapshot snapshot = MappedSnapshot.read(new SnapshotCodec().encode(AUDIT_BUILDER.snapshot(root)), (className, signature) -> ObjectMetadata.forClass(Node.class));
+        assertThat(snapshot.getChild(1), equalTo(snapshot));
+
+        root.setName("Renamed");
+        assertThat(AUDIT_BUILDER.buildSnapshotChanges(snapshot, root).size(), equalTo(1));
+    }
+
+    @Test
+    public void valuesKeepTheirTypes() throws IOException {
+        Portfolio portfolio = new Portfolio();
+        portfolio.setId(3L);
+        portfolio.setName("Growth");
+        portfolio.getLimits().put("gold", new BigDecimal("100"));
+        portfolio.getLimits().put("silver", new BigDecimal("50"));
+        portfolio.setScores(new int[]{1, 2, 3});
+        portfolio.setCodes(new String[]{"A", "B"});
+        Shipment shipment = new Shipment();
+        shipment.setId(4L);
+        shipment.setReference("SH-1");
+        shipment.setTracking(UUID.randomUUID());
+        shipment.setStatus(Shipment.Status.PACKED);
+        shipment.setDue(LocalDate.of(2020, 1, 31));
+        shipment.setDispatched(Instant.ofEpochSecond(1000L, 5L));
+        Timestamp loaded = new Timestamp(2000L);
+        loaded.setNanos(123456789);
+        shipment.setLoaded(loaded);
+
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, folder.newFolder().toPath())) {
+            Portfolio before = new Portfolio();
+            before.setId(3L);
+            before.setName("Growth");
+            before.getLimits().putAll(portfolio.getLimits());
+            before.setScores(portfolio.getScores().clone());
+            before.setCodes(portfolio.getCodes().clone());
+            store.put(portfolio);
+            store.put(shipment);
+
+            Snapshot snapshot = store.get(4L);
+            assertThat(snapshot.getValue(2), equalTo(shipment.getTracking()));
+            assertThat(snapshot.getValue(3), equalTo(Shipment.Status.PACKED));
+            assertThat(snapshot.getValue(6), equalTo(loaded));
+            assertThat(AUDIT_BUILDER.buildSnapshotChanges(snapshot, shipment).size(), equalTo(0));
+            assertThat(AUDIT_BUILDER.buildSnapshotChanges(store.get(3L), portfolio).size(), equalTo(0));
+
+            // The changes are the same as the live ones, a key (or index) at a time
+            portfolio.getLimits().put("silver", new BigDecimal("75"));
+            portfolio.getScores()[2] = 30;
+            shipment.setStatus(Shipment.Status.SHIPPED);
+            assertThat(AUDIT_BUILDER.buildSnapshotChanges(store.get(3L), portfolio), equalTo(AUDIT_BUILDER.buildChanges(before, portfolio)));
+            assertThat(AUDIT_BUILDER.buildSnapshotChanges(store.get(3L), portfolio).size(), equalTo(2));
+            assertThat(AUDIT_BUILDER.buildSnapshotChanges(store.get(4L), shipment).size(), equalTo(1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsAnId() throws IOException {
+        try (SnapshotStore store = new SnapshotStore(AUDIT_BUILDER, folder.newFolder().toPath())) {
+            store.put(account(null, "No id"));
+        }
+    }
+
+    private static Account account(Long id, String name) {
+        Account account = new Account();
+        account.setId(id);
+        account.setName(name);
+        account.setBalance(new BigDecimal("100.00"));
+        account.setRate(0.01);
+        account.setActive(true);
+        account.setReference(new UUID(0L, id == null ? 0L : id));
+        account.getHolders().add(new Employee(null, "e1", "Alice"));
+        account.getTags().add("gold");
+        return account;
+    }
+}
@@ -0,0 +1,181 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Gauge;
+import com.infobelt.differentia.models.Invoice;
+import com.infobelt.differentia.models.Node;
+import com.infobelt.differentia.models.Owner;
+import com.infobelt.differentia.models.Portfolio;
+import com.infobelt.differentia.models.Team;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SnapshotTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    @Test
+    public void primitives() {
+        Gauge gauge = gauge();
+        Gauge before = gauge();
+        Snapshot snapshot = AUDIT_BUILDER.snapshot(gauge);
+
+        gauge.setCount(2);
+        gauge.setTotal(200L);
+        gauge.setRatio(0.75);
+        gauge.setWeight(2.5f);
+        gauge.setActive(false);
+        gauge.setGrade('B');
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildSnapshotChanges(snapshot, gauge);
+        assertThat(changes.size(), equalTo(6));
+        assertThat(changes, equalTo(AUDIT_BUILDER.buildChanges(before, gauge)));
+        assertThat(changes.get(3).getOldValue(), equalTo("1.5"));
+        assertThat(changes.get(3).getNewValue(), equalTo("2.5"));
+
+        assertThat(snapshot.getLong(1), equalTo(1L));
+        assertThat(snapshot.getValue(6), equalTo('A'));
+    }
+
+    @Test
+    public void valuesAreCopied() {
+        Invoice invoice = new Invoice();
+        invoice.setNumber("INV-1");
+        invoice.setAmount(new BigDecimal("10.00"));
+        invoice.setIssued(new Date(1000L));
+        Snapshot snapshot = AUDIT_BUILDER.snapshot(invoice);
+
+        // The date is changed in place, the snapshot still has the old one
+        invoice.getIssued().setTime(2000L);
+        invoice.setAmount(new BigDecimal("10.0"));
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildSnapshotChanges(snapshot, invoice);
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getProperty(), equalTo("issued"));
+        assertThat(changes.get(0).getOldValue(), equalTo(new Date(1000L).toString()));
+    }
+
+    @Test
+    public void mapsAndArraysAreCopied() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.setId(1L);
+        portfolio.setName("Growth");
+        portfolio.getLimits().put("silver", BigDecimal.ONE);
+        portfolio.setScores(new int[]{1, 2});
+        portfolio.setCodes(new String[]{"A"});
+        Snapshot snapshot = AUDIT_BUILDER.snapshot(portfolio);
+        assertThat(AUDIT_BUILDER.buildSnapshotChanges(snapshot, portfolio).size(), equalTo(0));
+
+        // Changed in place, the snapshot still has the old values
+        portfolio.getLimits().put("gold", BigDecimal.TEN);
+        portfolio.getScores()[1] = 20;
+        portfolio.getCodes()[0] = "B";
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildSnapshotChanges(snapshot, portfolio);
+        assertThat(changes.size(), equalTo(3));
+        assertThat(changes.get(0).getProperty(), equalTo("limits[gold]"));
+        assertThat(changes.get(0).getNewValue(), equalTo("10"));
+        assertThat(changes.get(1).getProperty(), equalTo("scores[1]"));
+        assertThat(changes.get(1).getOldValue(), equalTo("2"));
+        assertThat(changes.get(2).getProperty(), equalTo("codes[0]"));
+        assertThat(changes.get(2).getOldValue(), equalTo("A"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void snapshotsAreNotObjects() {
+        Invoice invoice = new Invoice();
+        invoice.setNumber("INV-1");
+        AUDIT_BUILDER.buildChanges(AUDIT_BUILDER.snapshot(invoice), invoice);
+    }
+
+    @Test
+    public void collections() {
+        Team oldTeam = new Team();
+        oldTeam.setName("Blue");
+        oldTeam.getMembers().add(new Employee(null, "1", "Thing1"));
+        oldTeam.getSponsors().add(owner("Bob"));
+        oldTeam.getSponsors().add(owner("Sally"));
+        oldTeam.getTags().add("fast");
+
+        Team newTeam = new Team();
+        newTeam.setName("Blue");
+        newTeam.getMembers().add(new Employee(null, "1", "Thing2"));
+        newTeam.getMembers().add(new Employee(null, null, "Thing3"));
+        newTeam.getSponsors().add(owner("Sally"));
+        newTeam.getSponsors().add(owner("Jim"));
+        newTeam.getTags().add("slow");
+
+        List<AuditChange> expected = AUDIT_BUILDER.buildChanges(oldTeam, newTeam);
+        assertThat(expected.size(), equalTo(6));
+        assertThat(AUDIT_BUILDER.buildSnapshotChanges(AUDIT_BUILDER.snapshot(oldTeam), newTeam), equalTo(expected));
+        assertThat(AUDIT_BUILDER.buildSnapshotChanges(AUDIT_BUILDER.snapshot(oldTeam), AUDIT_BUILDER.snapshot(newTeam)), equalTo(expected));
+    }
+
+    @Test
+    public void unchanged() {
+        Team team = new Team();
+        team.setName("Blue");
+        team.getMembers().add(new Employee(null, "1", "Thing1"));
+        Snapshot snapshot = AUDIT_BUILDER.snapshot(team);
+
+        assertThat(AUDIT_BUILDER.buildSnapshotChanges(snapshot, team).size(), equalTo(0));
+        assertThat(AUDIT_BUILDER.buildSnapshotChanges(snapshot, snapshot).size(), equalTo(0));
+    }
+
+    @Test
+    public void childrenAndCycles() {
+        Node root = node("Root");
+        Node child = node("Child");
+        root.setLeft(child);
+        child.setLeft(root);
+        Snapshot snapshot = AUDIT_BUILDER.snapshot(root);
+
+        // The cycle is captured once
+        assertThat(snapshot.getChild(1).getChild(1), equalTo(snapshot));
+
+        child.setName("Renamed");
+        root.setRight(node("New"));
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildSnapshotChanges(snapshot, root);
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(0).getOldValue(), equalTo("Child"));
+        assertThat(changes.get(0).getNewValue(), equalTo("Renamed"));
+        assertThat(changes.get(1).getEventType(), equalTo(AuditEventType.ADD));
+        assertThat(changes.get(1).getMessage(), equalTo("New Node New"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyAuditedObjects() {
+        AUDIT_BUILDER.snapshot("Not audited");
+    }
+
+    private static Gauge gauge() {
+        Gauge gauge = new Gauge();
+        gauge.setLabel("Pressure");
+        gauge.setCount(1);
+        gauge.setTotal(100L);
+        gauge.setRatio(0.5);
+        gauge.setWeight(1.5f);
+        gauge.setActive(true);
+        gauge.setGrade('A');
+        return gauge;
+    }
+
+    private static Node node(String name) {
+        Node node = new Node();
+        node.setName(name);
+        return node;
+    }
+
+    private static Owner owner(String name) {
+        Owner owner = new Owner();
+        owner.setName(name);
+        return owner;
+    }
+}
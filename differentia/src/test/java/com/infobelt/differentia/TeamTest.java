@@ -0,0 +1,93 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Employee;
+import com.infobelt.differentia.models.Owner;
+import com.infobelt.differentia.models.Team;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TeamTest {
+
+    private static final AuditBuilder AUDIT_BUILDER = new AuditBuilder();
+
+    private Team oldTeam;
+    private Team newTeam;
+
+    @Before
+    public void setup() {
+        oldTeam = new Team();
+        oldTeam.setName("Blue");
+        newTeam = new Team();
+        newTeam.setName("Blue");
+    }
+
+    @Test
+    public void matchOnId() {
+        oldTeam.getMembers().add(new Employee(null, "1", "Thing1"));
+        newTeam.getMembers().add(new Employee(null, "1", "Thing2"));
+        newTeam.getMembers().add(new Employee(null, null, "Thing3"));
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldTeam, newTeam);
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(0).getEventType(), equalTo(AuditEventType.CHANGE));
+        assertThat(changes.get(0).getOldValue(), equalTo("Thing1"));
+        assertThat(changes.get(0).getNewValue(), equalTo("Thing2"));
+        assertThat(changes.get(1).getEventType(), equalTo(AuditEventType.ADD));
+        assertThat(changes.get(1).getNewValue(), equalTo("Thing3"));
+    }
+
+    @Test
+    public void matchOnKey() {
+        oldTeam.getSponsors().add(owner("Bob"));
+        oldTeam.getSponsors().add(owner("Sally"));
+        newTeam.getSponsors().add(owner("Sally"));
+        newTeam.getSponsors().add(owner("Jim"));
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldTeam, newTeam);
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(0).getEventType(), equalTo(AuditEventType.REMOVE));
+        assertThat(changes.get(0).getOldValue(), equalTo("Bob"));
+        assertThat(changes.get(1).getEventType(), equalTo(AuditEventType.ADD));
+        assertThat(changes.get(1).getNewValue(), equalTo("Jim"));
+    }
+
+    @Test
+    public void scalarCollection() {
+        oldTeam.getTags().add("red");
+        oldTeam.getTags().add("green");
+        newTeam.getTags().add("green");
+        newTeam.getTags().add("yellow");
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldTeam, newTeam);
+        assertThat(changes.size(), equalTo(2));
+        assertThat(changes.get(0).getEventType(), equalTo(AuditEventType.REMOVE));
+        assertThat(changes.get(0).getProperty(), equalTo("tags"));
+        assertThat(changes.get(0).getOldValue(), equalTo("red"));
+        assertThat(changes.get(1).getEventType(), equalTo(AuditEventType.ADD));
+        assertThat(changes.get(1).getNewValue(), equalTo("yellow"));
+    }
+
+    @Test
+    public void largeCollection() {
+        for (int i = 0; i < 20000; i++) {
+            oldTeam.getMembers().add(new Employee(null, String.valueOf(i), "Thing" + i));
+            newTeam.getMembers().add(new Employee(null, String.valueOf(i), "Thing" + i));
+        }
+        newTeam.getMembers().get(100).setName("Changed");
+
+        List<AuditChange> changes = AUDIT_BUILDER.buildChanges(oldTeam, newTeam);
+        assertThat(changes.size(), equalTo(1));
+        assertThat(changes.get(0).getNewValue(), equalTo("Changed"));
+    }
+
+    private Owner owner(String name) {
+        Owner owner = new Owner();
+        owner.setName(name);
+        return owner;
+    }
+}
@@ -0,0 +1,102 @@
+package com.infobelt.differentia;
+
+import com.infobelt.differentia.models.Invoice;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ValueTypesTest {
+
+    @Test
+    public void bigDecimalIgnoresScale() {
+        for (AuditBuilder auditBuilder : builders(ValueTypes.standard())) {
+            assertThat(auditBuilder.buildChanges(invoice("1.0", 1000L, 1), invoice("1.00", 1000L, 1)).size(), equalTo(0));
+
+            List<AuditChange> changes = auditBuilder.buildChanges(invoice("1.0", 1000L, 1), invoice("2.50", 1000L, 1));
+            assertThat(changes.size(), equalTo(1));
+            assertThat(changes.get(0).getOldValue(), equalTo("1.0"));
+            assertThat(changes.get(0).getNewValue(), equalTo("2.50"));
+        }
+    }
+
+    @Test
+    public void datesCompareOnTheInstant() {
+        Invoice timestamped = invoice("1.0", 1000L, 1);
+        timestamped.setIssued(new Timestamp(1000L));
+
+        for (AuditBuilder auditBuilder : builders(ValueTypes.standard())) {
+            assertThat(auditBuilder.buildChanges(invoice("1.0", 1000L, 1), timestamped).size(), equalTo(0));
+            assertThat(auditBuilder.buildChanges(invoice("1.0", 1000L, 1), invoice("1.0", 2000L, 1)).size(), equalTo(1));
+        }
+    }
+
+    @Test
+    public void customComparatorsAndFormatters() {
+        ValueTypes valueTypes = new ValueTypes()
+                .registerFormatter(BigDecimal.class, value -> value.setScale(2).toPlainString())
+                .registerFormatter(Integer.class, value -> value + " items")
+                .registerIntComparator((oldValue, newValue) -> Math.abs(oldValue - newValue) < 5);
+
+        for (AuditBuilder auditBuilder : builders(valueTypes)) {
+            assertThat(auditBuilder.buildChanges(invoice("1.0", 1000L, 1), invoice("1.0", 1000L, 3)).size(), equalTo(0));
+
+            List<AuditChange> changes = auditBuilder.buildChanges(invoice("1", 1000L, 1), invoice("2", 1000L, 10));
+            assertThat(changes.size(), equalTo(2));
+            assertThat(changes.get(0).getOldValue(), equalTo("1.00"));
+            assertThat(changes.get(0).getNewValue(), equalTo("2.00"));
+            assertThat(changes.get(1).getOldValue(), equalTo("1 items"));
+            assertThat(changes.get(1).getNewValue(), equalTo("10 items"));
+        }
+    }
+
+    @Test
+    public void registeredTypesCoverSubclasses() {
+        ValueTypes valueTypes = new ValueTypes().registerFormatter(Number.class, value -> "#" + value);
+        assertThat(valueTypes.format(12L), equalTo("#12"));
+        assertThat(valueTypes.format(1.5), equalTo("#1.5"));
+        assertThat(valueTypes.format("text"), equalTo("text"));
+        assertThat(valueTypes.format((Object) null), equalTo(null));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void standardCantChange() {
+        ValueTypes.standard().registerFormatter(String.class, String::trim);
+    }
+
+    // The reflective, compiled and generated engines
+    private List<AuditBuilder> builders(ValueTypes valueTypes) {
+        List<AuditBuilder> builders = new ArrayList<>();
+
+        AuditBuilder reflective = new AuditBuilder();
+        reflective.setUseGeneratedDiffers(false);
+        builders.add(reflective);
+
+        AuditBuilder compiled = new AuditBuilder();
+        compiled.setUseGeneratedDiffers(false);
+        compiled.setDifferFactory(new LambdaDifferFactory());
+        builders.add(compiled);
+
+        builders.add(new AuditBuilder());
+
+        for (AuditBuilder builder : builders) {
+            builder.setValueTypes(valueTypes);
+        }
+        return builders;
+    }
+
+    private Invoice invoice(String amount, long issued, int quantity) {
+        Invoice invoice = new Invoice();
+        invoice.setNumber("INV-1");
+        invoice.setAmount(new BigDecimal(amount));
+        invoice.setIssued(new Date(issued));
+        invoice.setQuantity(quantity);
+        return invoice;
+    }
+}
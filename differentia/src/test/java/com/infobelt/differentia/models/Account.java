@@ -0,0 +1,34 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import com.infobelt.differentia.CollectionMatch;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@AuditMetadata(name = "Account", id = "id", descriptiveProperty = "name")
+public class Account {
+
+    private Long id;
+
+    private String name;
+
+    private BigDecimal balance;
+
+    private double rate;
+
+    private boolean active;
+
+    private UUID reference;
+
+    @AuditMetadata(traverse = true, descriptiveProperty = "name", match = CollectionMatch.ID)
+    private List<Employee> holders = new ArrayList<>();
+
+    @AuditMetadata(traverse = true)
+    private List<String> tags = new ArrayList<>();
+
+}
@@ -0,0 +1,12 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.Data;
+
+@Data
+@AuditMetadata(name = "Folder", descriptiveProperty = "name")
+public class Archive {
+
+    private String name;
+
+}
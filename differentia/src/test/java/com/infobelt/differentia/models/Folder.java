@@ -0,0 +1,18 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AuditMetadata(name = "Folder", descriptiveProperty = "name", changeTemplate = "${entity_caps} ${entityDescriptiveName} was edited")
+public class Folder {
+
+    private String name;
+
+    @AuditMetadata(name = "Labels", traverse = true, addTemplate = "New ${entity} has ${descriptiveName_nocaps}")
+    private List<String> labels = new ArrayList<>();
+
+}
@@ -0,0 +1,24 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.Data;
+
+@Data
+@AuditMetadata(name = "Gauge", descriptiveProperty = "label")
+public class Gauge {
+
+    private String label;
+
+    private int count;
+
+    private long total;
+
+    private double ratio;
+
+    private float weight;
+
+    private boolean active;
+
+    private char grade;
+
+}
@@ -0,0 +1,19 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import com.infobelt.differentia.CollectionMatch;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AuditMetadata(name = "Graph", descriptiveProperty = "name")
+public class Graph {
+
+    private String name;
+
+    @AuditMetadata(traverse = true, descriptiveProperty = "name", match = CollectionMatch.KEY, key = "name")
+    private List<Node> nodes = new ArrayList<>();
+
+}
@@ -0,0 +1,21 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+@Data
+@AuditMetadata(name = "Invoice", descriptiveProperty = "number")
+public class Invoice {
+
+    private String number;
+
+    private BigDecimal amount;
+
+    private Date issued;
+
+    private int quantity;
+
+}
@@ -0,0 +1,17 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+
+@Data
+@AuditMetadata(name = "Ledger", descriptiveProperty = "name")
+public class Ledger {
+
+    private String name;
+
+    @Getter(AccessLevel.PRIVATE)
+    private String code;
+
+}
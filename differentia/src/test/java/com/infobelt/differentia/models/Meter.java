@@ -0,0 +1,18 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Setter
+@Accessors(fluent = true)
+@AuditMetadata(name = "Meter", descriptiveProperty = "name")
+public class Meter {
+
+    private String name;
+
+    private int reading;
+
+}
@@ -0,0 +1,20 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AuditMetadata(name = "Node", descriptiveProperty = "name")
+public class Node {
+
+    private String name;
+
+    @AuditMetadata(traverse = true)
+    private Node left;
+
+    @AuditMetadata(traverse = true)
+    private Node right;
+
+}
@@ -0,0 +1,26 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@AuditMetadata(name = "Portfolio", id = "id", descriptiveProperty = "name")
+public class Portfolio {
+
+    private Long id;
+
+    private String name;
+
+    private Map<String, BigDecimal> limits = new LinkedHashMap<>();
+
+    private Map<String, Employee> managers = new LinkedHashMap<>();
+
+    private int[] scores = new int[0];
+
+    private String[] codes = new String[0];
+
+}
@@ -0,0 +1,48 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import com.infobelt.differentia.DirtyFields;
+import com.infobelt.differentia.DirtyTracking;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@AuditMetadata(name = "Profile", descriptiveProperty = "name")
+public class Profile implements DirtyTracking {
+
+    private final DirtyFields dirtyFields = new DirtyFields(Profile.class);
+
+    private String name;
+
+    private String email;
+
+    private int age;
+
+    /**
+     * Setting this doesn't mark it as dirty
+     */
+    @Setter
+    private String notes;
+
+    @AuditMetadata(traverse = true)
+    private List<String> tags = new ArrayList<>();
+
+    public void setName(String name) {
+        this.name = name;
+        dirtyFields.mark("name");
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+        dirtyFields.mark("email");
+    }
+
+    public void setAge(int age) {
+        this.age = age;
+        dirtyFields.mark("age");
+    }
+
+}
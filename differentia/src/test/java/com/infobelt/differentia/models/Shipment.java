@@ -0,0 +1,33 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import lombok.Data;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+@AuditMetadata(name = "Shipment", id = "id", descriptiveProperty = "reference")
+public class Shipment {
+
+    public enum Status {
+        PACKED, SHIPPED
+    }
+
+    private Long id;
+
+    private String reference;
+
+    private UUID tracking;
+
+    private Status status;
+
+    private LocalDate due;
+
+    private Instant dispatched;
+
+    private Timestamp loaded;
+
+}
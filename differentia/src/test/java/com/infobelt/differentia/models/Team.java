@@ -0,0 +1,26 @@
+package com.infobelt.differentia.models;
+
+import com.infobelt.differentia.AuditMetadata;
+import com.infobelt.differentia.CollectionMatch;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@AuditMetadata(name = "Team", descriptiveProperty = "name")
+@Data
+public class Team {
+
+    @AuditMetadata
+    private String name;
+
+    @AuditMetadata(traverse = true, descriptiveProperty = "name", match = CollectionMatch.ID)
+    private List<Employee> members = new ArrayList<>();
+
+    @AuditMetadata(traverse = true, descriptiveProperty = "name", match = CollectionMatch.KEY, key = "name")
+    private List<Owner> sponsors = new ArrayList<>();
+
+    @AuditMetadata(traverse = true)
+    private List<String> tags = new ArrayList<>();
+
+}